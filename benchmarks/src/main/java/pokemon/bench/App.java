@@ -0,0 +1,183 @@
+package pokemon.bench;
+
+import javax.swing.table.TableModel;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Access to the application classes
+ * The application lives in the unnamed package, which JMH benchmarks (and any named package) cannot import,
+ * so its methods are bound once through method handles. After warm-up the JIT inlines the constant handles,
+ * the measured cost is that of the application code.
+ */
+final class App {
+
+    private static final MethodHandle NEW_POKEMON_REPOSITORY;
+    private static final MethodHandle NEW_TRAINER_REPOSITORY;
+    private static final MethodHandle NEW_TYPE_REPOSITORY;
+    private static final MethodHandle NEW_MEMORY_STORE;
+    private static final MethodHandle NEW_MEMORY_POKEMON_REPOSITORY;
+    private static final MethodHandle NEW_MEMORY_TRAINER_REPOSITORY;
+    private static final MethodHandle NEW_MEMORY_TYPE_REPOSITORY;
+    private static final MethodHandle STORE_ADD_TRAINER;
+    private static final MethodHandle STORE_ADD_POKEMON;
+    private static final MethodHandle NEW_POKEMON;
+    private static final MethodHandle CATCH_NEW_POKEMON;
+    private static final MethodHandle UPDATE_POKEMON;
+    private static final MethodHandle UPDATE_POKEMON_TYPES;
+    private static final MethodHandle IMPORT_POKEMONS;
+    private static final MethodHandle IMPORT_TRAINERS;
+    private static final MethodHandle GET_ALL_TYPES;
+    private static final MethodHandle GET_ALL_TRAINERS;
+    private static final MethodHandle BUILD_TABLE_MODEL;
+    private static final MethodHandle GET_DATABASE_CONFIG;
+    private static final MethodHandle SHUTDOWN;
+    private static final Class<?> IMPORT_MODE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> pokemon = Class.forName("Pokemon");
+            Class<?> pokemonRepo = Class.forName("PokemonRepository");
+            Class<?> trainerRepo = Class.forName("TrainerRepository");
+            Class<?> typeRepo = Class.forName("TypeRepository");
+            Class<?> importResult = Class.forName("ImportResult");
+            Class<?> listener = Class.forName("ImportProgressListener");
+            Class<?> databaseConfig = Class.forName("DatabaseConfig");
+            Class<?> store = Class.forName("InMemoryStore");
+            IMPORT_MODE = Class.forName("ImportMode");
+
+            NEW_POKEMON_REPOSITORY = lookup.findConstructor(Class.forName("MySQLPokemonRepository"), MethodType.methodType(void.class));
+            NEW_TRAINER_REPOSITORY = lookup.findConstructor(Class.forName("MySQLTrainerRepository"), MethodType.methodType(void.class));
+            NEW_TYPE_REPOSITORY = lookup.findConstructor(Class.forName("MySQLTypeRepository"), MethodType.methodType(void.class));
+            NEW_MEMORY_STORE = lookup.findStatic(store, "withSampleData", MethodType.methodType(store));
+            NEW_MEMORY_POKEMON_REPOSITORY = lookup.findConstructor(Class.forName("InMemoryPokemonRepository"),
+                    MethodType.methodType(void.class, store));
+            NEW_MEMORY_TRAINER_REPOSITORY = lookup.findConstructor(Class.forName("InMemoryTrainerRepository"),
+                    MethodType.methodType(void.class, store));
+            NEW_MEMORY_TYPE_REPOSITORY = lookup.findConstructor(Class.forName("InMemoryTypeRepository"),
+                    MethodType.methodType(void.class, store));
+            STORE_ADD_TRAINER = lookup.findVirtual(store, "addTrainer",
+                    MethodType.methodType(int.class, String.class, float.class, boolean.class));
+            STORE_ADD_POKEMON = lookup.findVirtual(store, "addPokemon",
+                    MethodType.methodType(int.class, int.class, String.class, String.class, int.class, int.class, int.class, long.class));
+            NEW_POKEMON = lookup.findConstructor(pokemon, MethodType.methodType(void.class, int.class, String.class, String.class));
+            CATCH_NEW_POKEMON = lookup.findVirtual(pokemonRepo, "catchNewPokemon",
+                    MethodType.methodType(int.class, pokemon, int.class, int.class, int.class));
+            UPDATE_POKEMON = lookup.findVirtual(pokemonRepo, "updatePokemon",
+                    MethodType.methodType(void.class, int.class, String.class, String.class, int.class, int.class, int.class));
+            UPDATE_POKEMON_TYPES = lookup.findVirtual(pokemonRepo, "updatePokemonTypes",
+                    MethodType.methodType(void.class, int.class, Integer.class, Integer.class));
+            IMPORT_POKEMONS = lookup.findVirtual(pokemonRepo, "importPokemonsFromCSV",
+                    MethodType.methodType(importResult, String.class, IMPORT_MODE));
+            IMPORT_TRAINERS = lookup.findVirtual(trainerRepo, "importTrainersFromCSV",
+                    MethodType.methodType(importResult, String.class, IMPORT_MODE, listener));
+            GET_ALL_TYPES = lookup.findVirtual(typeRepo, "getAllTypes", MethodType.methodType(List.class));
+            GET_ALL_TRAINERS = lookup.findVirtual(trainerRepo, "getAllTrainers", MethodType.methodType(List.class));
+            BUILD_TABLE_MODEL = lookup.findStatic(Class.forName("PokemonGUI"), "buildTableModel",
+                    MethodType.methodType(Class.forName("javax.swing.table.DefaultTableModel"), String.class));
+            GET_DATABASE_CONFIG = lookup.findStatic(databaseConfig, "getInstance", MethodType.methodType(databaseConfig));
+            SHUTDOWN = lookup.findVirtual(databaseConfig, "shutdown", MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() {
+    }
+
+    static Object pokemonRepository() throws Throwable {
+        return NEW_POKEMON_REPOSITORY.invoke();
+    }
+
+    static Object trainerRepository() throws Throwable {
+        return NEW_TRAINER_REPOSITORY.invoke();
+    }
+
+    static Object typeRepository() throws Throwable {
+        return NEW_TYPE_REPOSITORY.invoke();
+    }
+
+    /**
+     * @return In-memory store holding the sample data of bin/db_export.sql
+     */
+    static Object memoryStore() throws Throwable {
+        return NEW_MEMORY_STORE.invoke();
+    }
+
+    static Object memoryPokemonRepository(Object store) throws Throwable {
+        return NEW_MEMORY_POKEMON_REPOSITORY.invoke(store);
+    }
+
+    static Object memoryTrainerRepository(Object store) throws Throwable {
+        return NEW_MEMORY_TRAINER_REPOSITORY.invoke(store);
+    }
+
+    static Object memoryTypeRepository(Object store) throws Throwable {
+        return NEW_MEMORY_TYPE_REPOSITORY.invoke(store);
+    }
+
+    static int addTrainer(Object store, String name, float xp, boolean gymLeader) throws Throwable {
+        return (int) STORE_ADD_TRAINER.invoke(store, name, xp, gymLeader);
+    }
+
+    static int addPokemon(Object store, int trainerId, String nickname, String rarity,
+                          int hp, int attack, int defense, long typeMask) throws Throwable {
+        return (int) STORE_ADD_POKEMON.invoke(store, trainerId, nickname, rarity, hp, attack, defense, typeMask);
+    }
+
+    static int catchNewPokemon(Object repo, int trainerId, String nickname, String rarity,
+                               int hp, int attack, int defense) throws Throwable {
+        Object pokemon = NEW_POKEMON.invoke(trainerId, nickname, rarity);
+        return (int) CATCH_NEW_POKEMON.invoke(repo, pokemon, hp, attack, defense);
+    }
+
+    static void updatePokemon(Object repo, int id, String nickname, String rarity,
+                              int hp, int attack, int defense) throws Throwable {
+        UPDATE_POKEMON.invoke(repo, id, nickname, rarity, hp, attack, defense);
+    }
+
+    static void updatePokemonTypes(Object repo, int id, Integer type1Id, Integer type2Id) throws Throwable {
+        UPDATE_POKEMON_TYPES.invoke(repo, id, type1Id, type2Id);
+    }
+
+    /**
+     * @param mode Name of an ImportMode constant
+     */
+    static Object importPokemons(Object repo, String path, String mode) throws Throwable {
+        return IMPORT_POKEMONS.invoke(repo, path, importMode(mode));
+    }
+
+    /**
+     * @param mode Name of an ImportMode constant
+     */
+    static Object importTrainers(Object repo, String path, String mode) throws Throwable {
+        return IMPORT_TRAINERS.invoke(repo, path, importMode(mode), null);
+    }
+
+    static List<?> getAllTypes(Object repo) throws Throwable {
+        return (List<?>) GET_ALL_TYPES.invoke(repo);
+    }
+
+    static List<?> getAllTrainers(Object repo) throws Throwable {
+        return (List<?>) GET_ALL_TRAINERS.invoke(repo);
+    }
+
+    static TableModel buildTableModel(String query) throws Throwable {
+        return (TableModel) BUILD_TABLE_MODEL.invoke(query);
+    }
+
+    /**
+     * Closes the connection pool of the application
+     */
+    static void shutdown() throws Throwable {
+        SHUTDOWN.invoke(GET_DATABASE_CONFIG.invoke());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object importMode(String name) {
+        return Enum.valueOf((Class) IMPORT_MODE, name);
+    }
+}
@@ -0,0 +1,263 @@
+package pokemon.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Disposable benchmark database
+ * It is dropped and recreated from bin/db_export.sql and filled with a generated dataset,
+ * then the application is pointed at it through the pokemon.config system property.
+ * Connection settings come from the system properties bench.host, bench.port, bench.user,
+ * bench.password and bench.database (default pokemon_bench, never the real pokemon database).
+ */
+final class BenchDatabase {
+
+    static final String[] RARITIES = {"Common", "Rare", "Legendary"};
+    static final int TYPE_COUNT = 18;
+
+    private static final int BATCH = 5000;
+    private static final long SEED = 42;
+
+    private static final String HOST = System.getProperty("bench.host", "localhost");
+    private static final String PORT = System.getProperty("bench.port", "3306");
+    private static final String USER = System.getProperty("bench.user", "root");
+    private static final String PASSWORD = System.getProperty("bench.password", "");
+    private static final String DATABASE = System.getProperty("bench.database", "pokemon_bench");
+
+    private BenchDatabase() {
+    }
+
+    /**
+     * Recreates the database with the given number of Pokémon and configures the application to use it
+     * @param pokemonCount Generated Pokémon, one trainer is generated per ten Pokémon
+     * @return Number of trainers in the database
+     */
+    static int prepare(int pokemonCount) throws IOException, SQLException {
+        if (DATABASE.equals("pokemon")) throw new IllegalStateException("Refusing to overwrite the pokemon database.");
+
+        try (Connection conn = DriverManager.getConnection(serverUrl(""), USER, PASSWORD)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP DATABASE IF EXISTS `" + DATABASE + "`");
+            }
+            runScript(conn, findDump());
+        }
+
+        int trainerCount = Math.max(1, pokemonCount / 10);
+        try (Connection conn = DriverManager.getConnection(serverUrl(DATABASE), USER, PASSWORD)) {
+            conn.setAutoCommit(false);
+            int firstTrainer = insertTrainers(conn, trainerCount);
+            insertPokemons(conn, pokemonCount, firstTrainer, trainerCount);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM trainer_pokemon_stats");
+                stmt.executeUpdate("INSERT INTO trainer_pokemon_stats (trainer_id, pokemon_count, attack_sum)"
+                        + " SELECT p.trainer_id, COUNT(*), SUM(ps.attack) FROM pokemons p"
+                        + " JOIN pokemon_stats ps ON ps.pokemon_id = p.id WHERE p.trainer_id IS NOT NULL GROUP BY p.trainer_id");
+                stmt.execute("ANALYZE TABLE pokemons, pokemon_stats, pokemon_types, trainers, trainer_pokemon_stats");
+            }
+            conn.commit();
+        }
+
+        configureApplication();
+        return trainerCount + 3;
+    }
+
+    /**
+     * Fills an in-memory store with the same dataset prepare writes into the database
+     * The store starts with the sample data, so the generated trainers and Pokémon get the same ids as in the database
+     * @param store InMemoryStore created by App.memoryStore
+     * @param pokemonCount Generated Pokémon, one trainer is generated per ten Pokémon
+     * @return Number of trainers in the store
+     */
+    static int fill(Object store, int pokemonCount) throws Throwable {
+        int trainerCount = Math.max(1, pokemonCount / 10);
+        SplittableRandom trainerRandom = new SplittableRandom(SEED);
+        int firstTrainer = 0;
+        for (int i = 0; i < trainerCount; i++) {
+            int id = App.addTrainer(store, "Trainer" + i, trainerRandom.nextInt(100_000) / 10f, trainerRandom.nextInt(20) == 0);
+            if (i == 0) firstTrainer = id;
+        }
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < pokemonCount; i++) {
+            int type1 = 1 + random.nextInt(TYPE_COUNT);
+            int type2 = random.nextBoolean() ? 1 + random.nextInt(TYPE_COUNT) : type1;
+            int trainer = firstTrainer + random.nextInt(trainerCount);
+            String rarity = RARITIES[random.nextInt(3)];
+            App.addPokemon(store, trainer, "Pokemon" + i, rarity,
+                    random.nextInt(1, 256), random.nextInt(1, 256), random.nextInt(1, 256),
+                    (1L << (type1 - 1)) | (1L << (type2 - 1)));
+        }
+        return trainerCount + 3;
+    }
+
+    /**
+     * Writes a Pokémon CSV in the import format with random owners among the existing trainers
+     * @param rows Data lines
+     * @param trainerCount Trainers in the database, ids 1..trainerCount
+     * @return Temporary file, deleted on exit
+     */
+    static Path writePokemonCsv(int rows, int trainerCount) throws IOException {
+        Path file = Files.createTempFile("bench-pokemons", ".csv");
+        file.toFile().deleteOnExit();
+        SplittableRandom random = new SplittableRandom(SEED);
+        try (Writer w = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            w.write("trainer_id;nickname;rarity;hp;attack;defense\n");
+            for (int i = 0; i < rows; i++) {
+                w.write((1 + random.nextInt(trainerCount)) + ";Imported" + i + ";" + RARITIES[random.nextInt(3)] + ";"
+                        + random.nextInt(1, 256) + ";" + random.nextInt(1, 256) + ";" + random.nextInt(1, 256) + "\n");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes a trainer CSV in the import format
+     * @param rows Data lines
+     * @return Temporary file, deleted on exit
+     */
+    static Path writeTrainerCsv(int rows) throws IOException {
+        Path file = Files.createTempFile("bench-trainers", ".csv");
+        file.toFile().deleteOnExit();
+        SplittableRandom random = new SplittableRandom(SEED);
+        try (Writer w = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            w.write("name;experience_points;is_gym_leader\n");
+            for (int i = 0; i < rows; i++) {
+                w.write("Trainer" + i + ";" + random.nextInt(100_000) / 10.0 + ";" + (random.nextInt(20) == 0) + "\n");
+            }
+        }
+        return file;
+    }
+
+    private static int insertTrainers(Connection conn, int count) throws SQLException {
+        String sql = "INSERT INTO trainers (id, name, experience_points, is_gym_leader) VALUES (?, ?, ?, ?)";
+        int first = 4;
+        SplittableRandom random = new SplittableRandom(SEED);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < count; i++) {
+                ps.setInt(1, first + i);
+                ps.setString(2, "Trainer" + i);
+                ps.setFloat(3, random.nextInt(100_000) / 10f);
+                ps.setBoolean(4, random.nextInt(20) == 0);
+                ps.addBatch();
+                if ((i + 1) % BATCH == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        return first;
+    }
+
+    private static void insertPokemons(Connection conn, int count, int firstTrainer, int trainerCount) throws SQLException {
+        String pokemonSql = "INSERT INTO pokemons (id, trainer_id, nickname, rarity, type_mask) VALUES (?, ?, ?, ?, ?)";
+        String statsSql = "INSERT INTO pokemon_stats (pokemon_id, hp, attack, defense) VALUES (?, ?, ?, ?)";
+        String typeSql = "INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)";
+        SplittableRandom random = new SplittableRandom(SEED);
+        try (PreparedStatement pokemons = conn.prepareStatement(pokemonSql);
+             PreparedStatement stats = conn.prepareStatement(statsSql);
+             PreparedStatement types = conn.prepareStatement(typeSql)) {
+            for (int i = 0; i < count; i++) {
+                int id = 4 + i;
+                int type1 = 1 + random.nextInt(TYPE_COUNT);
+                int type2 = random.nextBoolean() ? 1 + random.nextInt(TYPE_COUNT) : type1;
+
+                pokemons.setInt(1, id);
+                pokemons.setInt(2, firstTrainer + random.nextInt(trainerCount));
+                pokemons.setString(3, "Pokemon" + i);
+                pokemons.setString(4, RARITIES[random.nextInt(3)]);
+                pokemons.setLong(5, (1L << (type1 - 1)) | (1L << (type2 - 1)));
+                pokemons.addBatch();
+
+                stats.setInt(1, id);
+                stats.setInt(2, random.nextInt(1, 256));
+                stats.setInt(3, random.nextInt(1, 256));
+                stats.setInt(4, random.nextInt(1, 256));
+                stats.addBatch();
+
+                types.setInt(1, id);
+                types.setInt(2, type1);
+                types.addBatch();
+                if (type2 != type1) {
+                    types.setInt(1, id);
+                    types.setInt(2, type2);
+                    types.addBatch();
+                }
+
+                if ((i + 1) % BATCH == 0) {
+                    pokemons.executeBatch();
+                    stats.executeBatch();
+                    types.executeBatch();
+                    conn.commit();
+                }
+            }
+            pokemons.executeBatch();
+            stats.executeBatch();
+            types.executeBatch();
+        }
+    }
+
+    /**
+     * Runs a mysqldump script statement by statement against the benchmark database
+     */
+    private static void runScript(Connection conn, Path script) throws IOException, SQLException {
+        List<String> lines = Files.readAllLines(script, StandardCharsets.UTF_8);
+        StringBuilder statement = new StringBuilder();
+        try (Statement stmt = conn.createStatement()) {
+            for (String line : lines) {
+                String trimmed = line.trim();
+                if (statement.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("--"))) continue;
+                statement.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    String sql = statement.toString()
+                            .replace("`pokemon`", "`" + DATABASE + "`")
+                            .replaceAll("/\\*!50013 DEFINER=[^*]*\\*/", "");
+                    stmt.execute(sql);
+                    statement.setLength(0);
+                }
+            }
+        }
+    }
+
+    private static Path findDump() {
+        Path configured = Paths.get(System.getProperty("bench.dump", "bin/db_export.sql"));
+        if (Files.exists(configured)) return configured;
+        Path parent = Paths.get("..").resolve(configured);
+        if (Files.exists(parent)) return parent;
+        throw new IllegalStateException("Couldn't find " + configured + ", set -Dbench.dump to the database script.");
+    }
+
+    /**
+     * Writes a config file for the benchmark database and makes DatabaseConfig read it
+     */
+    private static void configureApplication() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("host", HOST);
+        props.setProperty("port", PORT);
+        props.setProperty("dbname", DATABASE);
+        props.setProperty("user", USER);
+        props.setProperty("password", PASSWORD);
+        props.setProperty("import.allowLoadLocalInfile", "true");
+        Path file = Files.createTempFile("bench-config", ".properties");
+        file.toFile().deleteOnExit();
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            props.store(w, "Generated by the benchmarks");
+        }
+        System.setProperty("pokemon.config", file.toString());
+    }
+
+    private static String serverUrl(String database) {
+        return "jdbc:mysql://" + HOST + ":" + PORT + "/" + database
+                + "?rewriteBatchedStatements=true";
+    }
+}
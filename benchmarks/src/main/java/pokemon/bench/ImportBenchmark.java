@@ -0,0 +1,74 @@
+package pokemon.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both CSV importers, one file of the given size per invocation
+ * The database is recreated before every iteration so each import starts from the same table sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    /**
+     * Name of the ImportMode constant
+     */
+    @Param({"JDBC", "BULK_LOAD"})
+    public String mode;
+
+    private Object pokemonRepo;
+    private Object trainerRepo;
+    private Path pokemonFile;
+    private Path trainerFile;
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws Throwable {
+        pokemonRepo = App.pokemonRepository();
+        trainerRepo = App.trainerRepository();
+        trainerFile = BenchDatabase.writeTrainerCsv(rows);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetDatabase() throws Throwable {
+        int trainerCount = BenchDatabase.prepare(1000);
+        App.shutdown();
+        if (pokemonFile == null) pokemonFile = BenchDatabase.writePokemonCsv(rows, trainerCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        App.shutdown();
+    }
+
+    @Benchmark
+    public Object importPokemons() throws Throwable {
+        return App.importPokemons(pokemonRepo, pokemonFile.toString(), mode);
+    }
+
+    @Benchmark
+    public Object importTrainers() throws Throwable {
+        return App.importTrainers(trainerRepo, trainerFile.toString(), mode);
+    }
+}
@@ -0,0 +1,102 @@
+package pokemon.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single row mutations and the small lookup queries of the repositories
+ * Every mutation targets a random existing Pokémon, catchNewPokemon grows the table during the run
+ * The memory backend runs the same calls against the in-memory repositories as the baseline without a database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"mysql", "memory"})
+    public String backend;
+
+    private Object pokemonRepo;
+    private Object trainerRepo;
+    private Object typeRepo;
+    private int trainerCount;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        if (backend.equals("memory")) {
+            Object store = App.memoryStore();
+            trainerCount = BenchDatabase.fill(store, rows);
+            pokemonRepo = App.memoryPokemonRepository(store);
+            trainerRepo = App.memoryTrainerRepository(store);
+            typeRepo = App.memoryTypeRepository(store);
+            return;
+        }
+        trainerCount = BenchDatabase.prepare(rows);
+        pokemonRepo = App.pokemonRepository();
+        trainerRepo = App.trainerRepository();
+        typeRepo = App.typeRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        if (backend.equals("mysql")) App.shutdown();
+    }
+
+    @Benchmark
+    public int catchNewPokemon() throws Throwable {
+        return App.catchNewPokemon(pokemonRepo, 1 + random.nextInt(trainerCount), "Caught",
+                BenchDatabase.RARITIES[random.nextInt(3)], random.nextInt(1, 256), random.nextInt(1, 256), random.nextInt(1, 256));
+    }
+
+    @Benchmark
+    public void updatePokemon() throws Throwable {
+        App.updatePokemon(pokemonRepo, randomPokemonId(), "Updated",
+                BenchDatabase.RARITIES[random.nextInt(3)], random.nextInt(1, 256), random.nextInt(1, 256), random.nextInt(1, 256));
+    }
+
+    @Benchmark
+    public void updatePokemonTypes() throws Throwable {
+        int type1 = 1 + random.nextInt(BenchDatabase.TYPE_COUNT);
+        Integer type2 = random.nextBoolean() ? 1 + random.nextInt(BenchDatabase.TYPE_COUNT) : null;
+        App.updatePokemonTypes(pokemonRepo, randomPokemonId(), type1, type2);
+    }
+
+    @Benchmark
+    public List<?> getAllTypes() throws Throwable {
+        return App.getAllTypes(typeRepo);
+    }
+
+    /**
+     * Reads one trainer per ten Pokémon, so this one scales with the dataset as well
+     */
+    @Benchmark
+    public List<?> getAllTrainers() throws Throwable {
+        return App.getAllTrainers(trainerRepo);
+    }
+
+    private int randomPokemonId() {
+        return 4 + random.nextInt(rows);
+    }
+}
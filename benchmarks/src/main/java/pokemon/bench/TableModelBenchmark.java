@@ -0,0 +1,51 @@
+package pokemon.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.table.TableModel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PokemonGUI.buildTableModel, which still loads the Types, Stats and Links tabs completely
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TableModelBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"SELECT * FROM pokemon_stats", "SELECT * FROM pokemon_types", "SELECT * FROM view_detailed_pokemons"})
+    public String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        BenchDatabase.prepare(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        App.shutdown();
+    }
+
+    @Benchmark
+    public TableModel buildTableModel() throws Throwable {
+        return App.buildTableModel(query);
+    }
+}
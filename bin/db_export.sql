@@ -17,6 +17,24 @@ USE `pokemon`;
 /*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;
 /*!40111 SET @OLD_SQL_NOTES=@@SQL_NOTES, SQL_NOTES=0 */;
 
+--
+-- Table structure for table `change_log`
+--
+
+DROP TABLE IF EXISTS `change_log`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `change_log` (
+  `id` bigint NOT NULL AUTO_INCREMENT,
+  `client_id` bigint NOT NULL,
+  `table_name` varchar(20) NOT NULL,
+  `row_id` int DEFAULT NULL,
+  `changed_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `changed_at` (`changed_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `pokemon_stats`
 --
@@ -32,6 +50,9 @@ CREATE TABLE `pokemon_stats` (
   `defense` int NOT NULL,
   PRIMARY KEY (`id`),
   UNIQUE KEY `pokemon_id` (`pokemon_id`),
+  KEY `hp_pokemon` (`hp`,`pokemon_id`),
+  KEY `attack_pokemon` (`attack`,`pokemon_id`),
+  KEY `defense_pokemon` (`defense`,`pokemon_id`),
   CONSTRAINT `pokemon_stats_ibfk_1` FOREIGN KEY (`pokemon_id`) REFERENCES `pokemons` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
@@ -59,7 +80,7 @@ CREATE TABLE `pokemon_types` (
   `type_id` int DEFAULT NULL,
   PRIMARY KEY (`id`),
   KEY `pokemon_id` (`pokemon_id`),
-  KEY `type_id` (`type_id`),
+  KEY `type_pokemon` (`type_id`,`pokemon_id`),
   CONSTRAINT `pokemon_types_ibfk_1` FOREIGN KEY (`pokemon_id`) REFERENCES `pokemons` (`id`) ON DELETE CASCADE,
   CONSTRAINT `pokemon_types_ibfk_2` FOREIGN KEY (`type_id`) REFERENCES `types` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=5 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
@@ -87,8 +108,12 @@ CREATE TABLE `pokemons` (
   `trainer_id` int DEFAULT NULL,
   `nickname` varchar(100) DEFAULT NULL,
   `rarity` enum('Common','Rare','Legendary') DEFAULT NULL,
+  `type_mask` bigint NOT NULL DEFAULT '0',
+  `version` int NOT NULL DEFAULT '0',
   PRIMARY KEY (`id`),
-  KEY `trainer_id` (`trainer_id`),
+  KEY `trainer_rarity` (`trainer_id`,`rarity`),
+  KEY `nickname` (`nickname`),
+  KEY `rarity_nickname` (`rarity`,`nickname`),
   CONSTRAINT `pokemons_ibfk_1` FOREIGN KEY (`trainer_id`) REFERENCES `trainers` (`id`) ON DELETE SET NULL
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
@@ -99,10 +124,36 @@ CREATE TABLE `pokemons` (
 
 LOCK TABLES `pokemons` WRITE;
 /*!40000 ALTER TABLE `pokemons` DISABLE KEYS */;
-INSERT INTO `pokemons` VALUES (1,1,'Pikachu','Rare'),(2,1,'Charizard','Legendary'),(3,2,'Onix','Common');
+INSERT INTO `pokemons` VALUES (1,1,'Pikachu','Rare',1,0),(2,1,'Charizard','Legendary',10,0),(3,2,'Onix','Common',16,0);
 /*!40000 ALTER TABLE `pokemons` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `trainer_pokemon_stats`
+--
+
+DROP TABLE IF EXISTS `trainer_pokemon_stats`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `trainer_pokemon_stats` (
+  `trainer_id` int NOT NULL,
+  `pokemon_count` int NOT NULL DEFAULT '0',
+  `attack_sum` bigint NOT NULL DEFAULT '0',
+  PRIMARY KEY (`trainer_id`),
+  CONSTRAINT `trainer_pokemon_stats_ibfk_1` FOREIGN KEY (`trainer_id`) REFERENCES `trainers` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `trainer_pokemon_stats`
+--
+
+LOCK TABLES `trainer_pokemon_stats` WRITE;
+/*!40000 ALTER TABLE `trainer_pokemon_stats` DISABLE KEYS */;
+INSERT INTO `trainer_pokemon_stats` VALUES (1,2,139),(2,1,45);
+/*!40000 ALTER TABLE `trainer_pokemon_stats` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `trainers`
 --
@@ -116,6 +167,7 @@ CREATE TABLE `trainers` (
   `experience_points` float DEFAULT '0',
   `is_gym_leader` tinyint(1) DEFAULT '0',
   `created_at` datetime DEFAULT CURRENT_TIMESTAMP,
+  `version` int NOT NULL DEFAULT '0',
   PRIMARY KEY (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=4 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
@@ -126,7 +178,7 @@ CREATE TABLE `trainers` (
 
 LOCK TABLES `trainers` WRITE;
 /*!40000 ALTER TABLE `trainers` DISABLE KEYS */;
-INSERT INTO `trainers` VALUES (1,'Ash Ketchum',1500.5,0,'2026-01-09 00:20:22'),(2,'Brock',5000,1,'2026-01-09 00:20:22'),(3,'Misty',4200.75,1,'2026-01-09 00:20:22');
+INSERT INTO `trainers` VALUES (1,'Ash Ketchum',1500.5,0,'2026-01-09 00:20:22',0),(2,'Brock',5000,1,'2026-01-09 00:20:22',0),(3,'Misty',4200.75,1,'2026-01-09 00:20:22',0);
 /*!40000 ALTER TABLE `trainers` ENABLE KEYS */;
 UNLOCK TABLES;
 
@@ -208,7 +260,7 @@ SET character_set_client = @saved_cs_client;
 /*!50001 SET collation_connection      = utf8mb4_0900_ai_ci */;
 /*!50001 CREATE ALGORITHM=UNDEFINED */
 /*!50013 DEFINER=`root`@`localhost` SQL SECURITY DEFINER */
-/*!50001 VIEW `view_detailed_pokemons` AS select `p`.`id` AS `id`,`p`.`nickname` AS `nickname`,`p`.`rarity` AS `rarity`,`t`.`name` AS `trainer_name`,`ps`.`hp` AS `hp`,`ps`.`attack` AS `attack`,`ps`.`defense` AS `defense`,group_concat(distinct `tp`.`type_name` separator ', ') AS `types` from ((((`pokemons` `p` join `trainers` `t` on((`p`.`trainer_id` = `t`.`id`))) join `pokemon_stats` `ps` on((`p`.`id` = `ps`.`pokemon_id`))) left join `pokemon_types` `pt` on((`p`.`id` = `pt`.`pokemon_id`))) left join `types` `tp` on((`pt`.`type_id` = `tp`.`id`))) group by `p`.`id` */;
+/*!50001 VIEW `view_detailed_pokemons` AS select `p`.`id` AS `id`,`p`.`nickname` AS `nickname`,`p`.`rarity` AS `rarity`,`t`.`name` AS `trainer_name`,`ps`.`hp` AS `hp`,`ps`.`attack` AS `attack`,`ps`.`defense` AS `defense`,`p`.`type_mask` AS `types` from ((`pokemons` `p` join `trainers` `t` on((`p`.`trainer_id` = `t`.`id`))) join `pokemon_stats` `ps` on((`p`.`id` = `ps`.`pokemon_id`))) */;
 /*!50001 SET character_set_client      = @saved_cs_client */;
 /*!50001 SET character_set_results     = @saved_cs_results */;
 /*!50001 SET collation_connection      = @saved_col_connection */;
@@ -226,7 +278,7 @@ SET character_set_client = @saved_cs_client;
 /*!50001 SET collation_connection      = utf8mb4_0900_ai_ci */;
 /*!50001 CREATE ALGORITHM=UNDEFINED */
 /*!50013 DEFINER=`root`@`localhost` SQL SECURITY DEFINER */
-/*!50001 VIEW `view_trainer_performance` AS select `t`.`id` AS `id`,`t`.`name` AS `name`,`t`.`is_gym_leader` AS `is_gym_leader`,`t`.`created_at` AS `start_of_journey`,count(`p`.`id`) AS `count_of_pokemon`,ifnull(avg(`ps`.`attack`),0) AS `average_attack` from ((`trainers` `t` left join `pokemons` `p` on((`t`.`id` = `p`.`trainer_id`))) left join `pokemon_stats` `ps` on((`p`.`id` = `ps`.`pokemon_id`))) group by `t`.`id` */;
+/*!50001 VIEW `view_trainer_performance` AS select `t`.`id` AS `id`,`t`.`name` AS `name`,`t`.`is_gym_leader` AS `is_gym_leader`,`t`.`created_at` AS `start_of_journey`,ifnull(`a`.`pokemon_count`,0) AS `count_of_pokemon`,ifnull((`a`.`attack_sum` / nullif(`a`.`pokemon_count`,0)),0) AS `average_attack` from (`trainers` `t` left join `trainer_pokemon_stats` `a` on((`t`.`id` = `a`.`trainer_id`))) */;
 /*!50001 SET character_set_client      = @saved_cs_client */;
 /*!50001 SET character_set_results     = @saved_cs_results */;
 /*!50001 SET collation_connection      = @saved_col_connection */;
@@ -0,0 +1,199 @@
+import java.io.File;
+import java.sql.*;
+
+/**
+ * Fast import path for large CSV files using LOAD DATA LOCAL INFILE
+ * The file is streamed by the driver into a temporary staging table, validated there
+ * and moved into the real tables with set-based INSERT ... SELECT in one transaction
+ */
+public class BulkLoader {
+
+    /**
+     * MySQL error codes returned when LOCAL INFILE is disabled on the server or in the driver
+     */
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+    private static final int ER_LOAD_INFILE_CAPABILITY_DISABLED = 3950;
+
+    private static final String NUMBER = "'^ *-?[0-9]+(\\\\.[0-9]+)? *$'";
+    private static final String INTEGER = "'^ *-?[0-9]+ *$'";
+
+    /**
+     * Every table and alias used while moving the staging rows and recording the change, temporary tables need no lock
+     */
+    private static final String LOCK_POKEMON_TABLES = "LOCK TABLES pokemons WRITE, pokemons AS p READ,"
+            + " pokemon_stats WRITE, pokemon_stats AS ps READ, pokemon_types WRITE,"
+            + " types READ, types AS t1 READ, types AS t2 READ, trainers READ,"
+            + " trainer_pokemon_stats WRITE, change_log WRITE";
+
+    private BulkLoader() {
+    }
+
+    /**
+     * Checks if the driver config and the server accept LOAD DATA LOCAL INFILE
+     * @param conn Open connection
+     * @return True if local infile is enabled
+     * @throws SQLException If the query execution fails
+     */
+    public static boolean isLocalInfileEnabled(Connection conn) throws SQLException {
+        if (!DatabaseConfig.getInstance().getBooleanProperty("import.allowLoadLocalInfile", true)) return false;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.local_infile")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /**
+     * Checks if the error means the server or driver refused the local file
+     * @param e Error from a LOAD DATA statement
+     * @return True if the import should fall back to the JDBC path
+     */
+    public static boolean isLocalInfileRejected(SQLException e) {
+        int code = e.getErrorCode();
+        return code == ER_NOT_ALLOWED_COMMAND || code == ER_CLIENT_LOCAL_FILES_DISABLED || code == ER_LOAD_INFILE_CAPABILITY_DISABLED;
+    }
+
+    /**
+     * Loads trainers in the format name;experience_points;is_gym_leader
+     * @param conn Connection with autocommit disabled, the caller commits
+     * @param file CSV file with a header line
+     * @return Number of inserted trainers
+     * @throws SQLException If loading fails or the file contains invalid data
+     */
+    public static int loadTrainers(Connection conn, File file) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TEMPORARY TABLE IF EXISTS staging_trainers");
+            stmt.execute("CREATE TEMPORARY TABLE staging_trainers ("
+                    + "seq INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(100), xp VARCHAR(64), is_gym_leader VARCHAR(16))");
+            stmt.execute("LOAD DATA LOCAL INFILE " + quote(file.getAbsolutePath()) + " INTO TABLE staging_trainers"
+                    + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ';' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                    + " LINES TERMINATED BY '\\n' IGNORE 1 LINES"
+                    + " (@name, @xp, @leader)"
+                    + " SET name = TRIM(@name), xp = @xp, is_gym_leader = TRIM(TRAILING '\\r' FROM @leader)");
+
+            failOnInvalidRows(stmt, "SELECT MIN(seq) FROM staging_trainers"
+                    + " WHERE is_gym_leader IS NOT NULL AND xp NOT REGEXP " + NUMBER,
+                    "XP format error on line %d: Please ensure experience is a number.");
+
+            return stmt.executeUpdate("INSERT INTO trainers (name, experience_points, is_gym_leader)"
+                    + " SELECT name, TRIM(xp) + 0, LOWER(TRIM(is_gym_leader)) = 'true'"
+                    + " FROM staging_trainers WHERE is_gym_leader IS NOT NULL ORDER BY seq");
+        }
+    }
+
+    /**
+     * Loads Pokémon in the format trainer_id;nickname;rarity;hp;attack;defense[;type1;type2]
+     * The staging rows are moved while the written tables are locked with LOCK TABLES, so no other connection
+     * can take an AUTO_INCREMENT id in between and the new ids are the consecutive range starting at LAST_INSERT_ID()
+     * (in steps of auto_increment_increment).
+     * That way the stats rows, type links and trainer aggregates can be inserted with a single INSERT ... SELECT as well.
+     * Type names are resolved against the types table and stored both as links and in the type mask
+     * @param conn Connection with autocommit disabled, the caller commits and then calls unlockTables
+     * @param file CSV file with a header line
+     * @return Number of inserted Pokémon
+     * @throws SQLException If loading fails or the file contains invalid data
+     */
+    public static int loadPokemons(Connection conn, File file) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TEMPORARY TABLE IF EXISTS staging_pokemons");
+            stmt.execute("CREATE TEMPORARY TABLE staging_pokemons ("
+                    + "seq INT AUTO_INCREMENT PRIMARY KEY, trainer_id VARCHAR(16), nickname VARCHAR(100), rarity VARCHAR(16),"
+                    + " hp VARCHAR(16), attack VARCHAR(16), defense VARCHAR(16), type1 VARCHAR(50), type2 VARCHAR(50), pokemon_id INT)");
+            stmt.execute("LOAD DATA LOCAL INFILE " + quote(file.getAbsolutePath()) + " INTO TABLE staging_pokemons"
+                    + " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ';' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''"
+                    + " LINES TERMINATED BY '\\n' IGNORE 1 LINES"
+                    + " (@trainer, @nick, @rarity, @hp, @atk, @def, @t1, @t2)"
+                    + " SET trainer_id = @trainer, nickname = @nick, rarity = @rarity, hp = @hp, attack = @atk,"
+                    + " defense = TRIM(TRAILING '\\r' FROM @def),"
+                    + " type1 = NULLIF(TRIM(TRIM(TRAILING '\\r' FROM @t1)), ''), type2 = NULLIF(TRIM(TRIM(TRAILING '\\r' FROM @t2)), '')");
+
+            failOnInvalidRows(stmt, "SELECT MIN(seq) FROM staging_pokemons WHERE defense IS NOT NULL"
+                    + " AND NOT (trainer_id REGEXP " + INTEGER + " AND hp REGEXP " + INTEGER
+                    + " AND attack REGEXP " + INTEGER + " AND defense REGEXP " + INTEGER + ")",
+                    "Data format error on line %d: Check if all numbers are valid.");
+            failOnInvalidRows(stmt, "SELECT MIN(s.seq) FROM staging_pokemons s"
+                    + " LEFT JOIN types t1 ON t1.type_name = s.type1 LEFT JOIN types t2 ON t2.type_name = s.type2"
+                    + " WHERE s.defense IS NOT NULL AND ((s.type1 IS NOT NULL AND (t1.id IS NULL OR t1.id > " + TypeDictionary.MAX_MASK_TYPE_ID + "))"
+                    + " OR (s.type2 IS NOT NULL AND (t2.id IS NULL OR t2.id > " + TypeDictionary.MAX_MASK_TYPE_ID + ")))",
+                    "Type error on line %d: Unknown type.");
+
+            // numbers the valid rows 1, 2, ... in file order
+            stmt.execute("DROP TEMPORARY TABLE IF EXISTS staging_pokemon_ids");
+            stmt.execute("CREATE TEMPORARY TABLE staging_pokemon_ids (n INT AUTO_INCREMENT PRIMARY KEY, seq INT)");
+            stmt.executeUpdate("INSERT INTO staging_pokemon_ids (seq) SELECT seq FROM staging_pokemons"
+                    + " WHERE defense IS NOT NULL ORDER BY seq");
+
+            // LOCK TABLES commits implicitly, the staging table is temporary and not affected
+            stmt.execute(LOCK_POKEMON_TABLES);
+            int inserted = stmt.executeUpdate("INSERT INTO pokemons (trainer_id, nickname, rarity, type_mask)"
+                    + " SELECT TRIM(s.trainer_id), s.nickname, s.rarity,"
+                    + " COALESCE(1 << (t1.id - 1), 0) | COALESCE(1 << (t2.id - 1), 0)"
+                    + " FROM staging_pokemons s"
+                    + " LEFT JOIN types t1 ON t1.type_name = s.type1 LEFT JOIN types t2 ON t2.type_name = s.type2"
+                    + " WHERE s.defense IS NOT NULL ORDER BY s.seq");
+            if (inserted == 0) return 0;
+            long first;
+            long step;
+            try (ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID(), @@auto_increment_increment")) {
+                rs.next();
+                first = rs.getLong(1);
+                step = rs.getLong(2);
+            }
+            // the valid rows got the ids first, first + step, ... in file order
+            stmt.executeUpdate("UPDATE staging_pokemons s JOIN staging_pokemon_ids i ON i.seq = s.seq"
+                    + " SET s.pokemon_id = " + first + " + (i.n - 1) * " + step);
+            long last = first + (inserted - 1) * step;
+
+            stmt.executeUpdate("INSERT INTO pokemon_stats (pokemon_id, hp, attack, defense)"
+                    + " SELECT pokemon_id, TRIM(hp), TRIM(attack), TRIM(defense)"
+                    + " FROM staging_pokemons WHERE defense IS NOT NULL ORDER BY seq");
+            // a temporary table can be used only once per statement, so each type column gets its own INSERT
+            stmt.executeUpdate("INSERT INTO pokemon_types (pokemon_id, type_id)"
+                    + " SELECT s.pokemon_id, t1.id FROM staging_pokemons s JOIN types t1 ON t1.type_name = s.type1"
+                    + " WHERE s.defense IS NOT NULL ORDER BY s.seq");
+            stmt.executeUpdate("INSERT INTO pokemon_types (pokemon_id, type_id)"
+                    + " SELECT s.pokemon_id, t2.id FROM staging_pokemons s JOIN types t2 ON t2.type_name = s.type2"
+                    + " LEFT JOIN types t1 ON t1.type_name = s.type1"
+                    + " WHERE s.defense IS NOT NULL AND (t1.id IS NULL OR t1.id <> t2.id) ORDER BY s.seq");
+            TrainerAggregates.adjustFrom(conn, "pokemons p JOIN pokemon_stats ps ON ps.pokemon_id = p.id"
+                    + " WHERE p.id BETWEEN " + first + " AND " + last + " AND p.trainer_id IS NOT NULL");
+            return inserted;
+        }
+    }
+
+    /**
+     * Releases the locks taken by loadPokemons, call it after the commit or rollback
+     * @param conn Connection passed to loadPokemons
+     * @throws SQLException If the query execution fails
+     */
+    public static void unlockTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UNLOCK TABLES");
+        }
+    }
+
+    /**
+     * Throws if the validation query finds an invalid staging row
+     * @param stmt Statement to run the query with
+     * @param minSeqQuery Query returning the smallest invalid sequence number or NULL
+     * @param message Error message with a %d placeholder for the line number
+     * @throws SQLException If an invalid row exists
+     */
+    private static void failOnInvalidRows(Statement stmt, String minSeqQuery, String message) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(minSeqQuery)) {
+            if (rs.next()) {
+                int seq = rs.getInt(1);
+                if (!rs.wasNull()) throw new SQLException(String.format(message, seq + 1));
+            }
+        }
+    }
+
+    /**
+     * Quotes a file path as a SQL string literal
+     * @param path File path
+     * @return Quoted literal
+     */
+    private static String quote(String path) {
+        return "'" + path.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+}
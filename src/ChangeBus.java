@@ -0,0 +1,49 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Singleton class distributing the keys changed by the repositories to interested views
+ */
+public class ChangeBus {
+
+    /**
+     * Receives change sets after the changing transaction was committed
+     */
+    public interface Listener {
+        void dataChanged(ChangeSet changes);
+    }
+
+    private static ChangeBus instance;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private ChangeBus() {
+    }
+
+    /**
+     * Returns the single instance of the bus
+     * @return Instance of the bus
+     */
+    public static synchronized ChangeBus getInstance() {
+        if (instance == null) {
+            instance = new ChangeBus();
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all listeners on the calling thread
+     * @param changes Changed keys, empty sets are not published
+     */
+    public void publish(ChangeSet changes) {
+        if (changes.isEmpty()) return;
+        for (Listener listener : listeners) listener.dataChanged(changes);
+    }
+}
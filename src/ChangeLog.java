@@ -0,0 +1,86 @@
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Maintains the change_log table (one row per changed key and transaction)
+ * The MySQL repositories call it inside their own transactions before the commit, so an entry becomes visible
+ * together with the change it describes and ChangeLogPoller of the other clients can reload just those rows.
+ * A row without row_id means the whole table changed, for imports and rebuilds.
+ */
+public final class ChangeLog {
+
+    public static final String POKEMONS = "pokemons";
+    public static final String TRAINERS = "trainers";
+    public static final String TYPES = "types";
+
+    /**
+     * Identifies the entries written by this process, its own changes are already published on the ChangeBus
+     */
+    public static final long CLIENT_ID = new SecureRandom().nextLong();
+
+    private static final String INSERT_SQL = "INSERT INTO change_log (client_id, table_name, row_id) VALUES (?, ?, ?)";
+    private static final int BATCH_SIZE = 1000;
+
+    private ChangeLog() {
+    }
+
+    /**
+     * Writes one entry per changed key, the batch is sent as multi-row inserts
+     * @param conn Connection of the running transaction
+     * @param changes Keys changed by the transaction, nothing is written for an empty set
+     * @throws SQLException If the query execution fails
+     */
+    public static void record(Connection conn, ChangeSet changes) throws SQLException {
+        if (changes.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            int pending = addKeys(ps, POKEMONS, changes.getPokemonIds(), 0);
+            pending = addKeys(ps, TRAINERS, changes.getTrainerIds(), pending);
+            pending = addKeys(ps, TYPES, changes.getTypeIds(), pending);
+            if (pending > 0) ps.executeBatch();
+        }
+    }
+
+    /**
+     * Writes one entry per table telling the other clients to reload the whole table
+     * @param conn Connection of the running transaction
+     * @param tables Some of POKEMONS, TRAINERS or TYPES
+     * @throws SQLException If the query execution fails
+     */
+    public static void recordTables(Connection conn, String... tables) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            for (String table : tables) {
+                ps.setLong(1, CLIENT_ID);
+                ps.setString(2, table);
+                ps.setNull(3, java.sql.Types.INTEGER);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Adds the keys of one table to the batch and sends it every BATCH_SIZE rows
+     * @param ps Insert statement
+     * @param table Table name written into the entries
+     * @param keys Changed keys
+     * @param pending Rows already in the batch
+     * @return Rows in the batch afterwards
+     * @throws SQLException If the query execution fails
+     */
+    private static int addKeys(PreparedStatement ps, String table, Set<Integer> keys, int pending) throws SQLException {
+        for (int key : keys) {
+            ps.setLong(1, CLIENT_ID);
+            ps.setString(2, table);
+            ps.setInt(3, key);
+            ps.addBatch();
+            if (++pending == BATCH_SIZE) {
+                ps.executeBatch();
+                pending = 0;
+            }
+        }
+        return pending;
+    }
+}
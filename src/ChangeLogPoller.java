@@ -0,0 +1,242 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows the change_log entries written by other clients and publishes their keys on the ChangeBus
+ * Every poll is one range scan over the primary key starting at the last entry seen, so an idle database
+ * costs one tiny query per interval. The views then reload just the changed rows.
+ * Entry IDs are taken at insert time but become visible at commit, so entries younger than SETTLE_SECONDS
+ * are read again by the next polls until they settled, which catches transactions committing out of order.
+ * A full reload is requested instead of a delta when a table changed as a whole, when the delta is larger
+ * than changeLog.maxDelta keys, or when the last successful poll is older than the retention of the log.
+ */
+public class ChangeLogPoller {
+
+    /**
+     * Longest transaction whose entries are still found, older unseen entries are given up
+     */
+    private static final int SETTLE_SECONDS = 60;
+    private static final int PAGE_SIZE = 1000;
+    private static final int PURGE_LIMIT = 10000;
+
+    private static final String START_SQL = "SELECT COALESCE(MAX(id), 0) FROM change_log"
+            + " WHERE changed_at < NOW() - INTERVAL ? SECOND";
+    private static final String POLL_SQL = "SELECT id, client_id, table_name, row_id, changed_at < NOW() - INTERVAL ? SECOND"
+            + " FROM change_log WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PURGE_SQL = "DELETE FROM change_log WHERE changed_at < NOW() - INTERVAL ? MINUTE LIMIT ?";
+
+    private final long intervalMillis;
+    private final int retentionMinutes;
+    private final int maxDelta;
+    private final Runnable reloadAll;
+    private final ScheduledExecutorService scheduler;
+
+    // only touched by the scheduler thread
+    private long settledId = -1;
+    private final TreeSet<Long> seenIds = new TreeSet<>();
+    private long lastPollMillis;
+    private long lastPurgeMillis;
+    private boolean failing;
+
+    /**
+     * Creates a poller, nothing is read before start
+     * @param intervalMillis Pause between two polls
+     * @param retentionMinutes Age after which entries are deleted
+     * @param maxDelta Most keys published as a delta, more changes reload everything
+     * @param reloadAll Called on the poller thread when the views have to reload everything
+     */
+    public ChangeLogPoller(long intervalMillis, int retentionMinutes, int maxDelta, Runnable reloadAll) {
+        this.intervalMillis = intervalMillis;
+        this.retentionMinutes = retentionMinutes;
+        this.maxDelta = maxDelta;
+        this.reloadAll = reloadAll;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-log-poller");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates a poller from changeLog.pollMillis, changeLog.retentionMinutes and changeLog.maxDelta
+     * @param reloadAll Called on the poller thread when the views have to reload everything
+     * @return Poller or null if polling is disabled
+     */
+    public static ChangeLogPoller fromConfig(Runnable reloadAll) {
+        DatabaseConfig config = DatabaseConfig.getInstance();
+        int interval = config.getIntProperty("changeLog.pollMillis", 2000);
+        if (interval <= 0) return null;
+        return new ChangeLogPoller(interval,
+                Math.max(1, config.getIntProperty("changeLog.retentionMinutes", 1440)),
+                Math.max(1, config.getIntProperty("changeLog.maxDelta", 5000)),
+                reloadAll);
+    }
+
+    /**
+     * Starts polling in the background, changes committed before are expected to be loaded already
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::poll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Polls right away instead of waiting for the interval
+     */
+    public void pollNow() {
+        scheduler.execute(this::poll);
+    }
+
+    /**
+     * Stops polling
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Reads the new entries and publishes them, timed as "ChangeLogPoller.poll"
+     */
+    private void poll() {
+        long start = System.nanoTime();
+        boolean failed = false;
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            if (settledId < 0) {
+                settledId = startId(conn);
+            } else if (System.currentTimeMillis() - lastPollMillis > retentionMinutes * 60_000L) {
+                // entries may have been purged while this client could not poll
+                settledId = startId(conn);
+                seenIds.clear();
+                reload();
+            } else {
+                readEntries(conn);
+            }
+            lastPollMillis = System.currentTimeMillis();
+            if (lastPollMillis - lastPurgeMillis > 60_000L) {
+                purge(conn);
+                lastPurgeMillis = lastPollMillis;
+            }
+            if (failing) System.err.println("The change log can be read again");
+            failing = false;
+        } catch (SQLException e) {
+            failed = true;
+            if (!failing) System.err.println("Couldn't read the change log: " + e.getMessage());
+            failing = true;
+        } catch (RuntimeException e) {
+            // a listener failed, keep polling
+            failed = true;
+            System.err.println("Couldn't apply the changes of other clients: " + e);
+        } finally {
+            Metrics.getInstance().record("ChangeLogPoller.poll", System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Finds the last entry which settled, the entries after it are delivered by the next poll
+     * @param conn Open connection
+     * @return Entry ID
+     * @throws SQLException If the query execution fails
+     */
+    private long startId(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(START_SQL)) {
+            ps.setInt(1, SETTLE_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Pages through the entries after the last settled one and publishes those not seen yet
+     * @param conn Open connection
+     * @throws SQLException If the query execution fails
+     */
+    private void readEntries(Connection conn) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        Set<String> reloadTables = new HashSet<>();
+        int keys = 0;
+        long cursor = settledId;
+        long newSettledId = settledId;
+        boolean settledPrefix = true;
+        int rows;
+        try (PreparedStatement ps = conn.prepareStatement(POLL_SQL)) {
+            do {
+                ps.setInt(1, SETTLE_SECONDS);
+                ps.setLong(2, cursor);
+                ps.setInt(3, PAGE_SIZE);
+                rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        long id = rs.getLong(1);
+                        cursor = id;
+                        if (settledPrefix && rs.getBoolean(5)) {
+                            newSettledId = id;
+                        } else {
+                            settledPrefix = false;
+                        }
+                        if (!seenIds.add(id) || rs.getLong(2) == ChangeLog.CLIENT_ID) continue;
+
+                        String table = rs.getString(3);
+                        int rowId = rs.getInt(4);
+                        if (rs.wasNull()) {
+                            reloadTables.add(table);
+                            continue;
+                        }
+                        keys++;
+                        switch (table) {
+                            case ChangeLog.POKEMONS:
+                                changes.pokemon(rowId);
+                                break;
+                            case ChangeLog.TRAINERS:
+                                changes.trainer(rowId);
+                                break;
+                            case ChangeLog.TYPES:
+                                changes.type(rowId);
+                                break;
+                            default:
+                                reloadTables.add(table);
+                        }
+                    }
+                }
+            } while (rows == PAGE_SIZE);
+        }
+        settledId = newSettledId;
+        seenIds.headSet(newSettledId, true).clear();
+
+        if (!reloadTables.isEmpty() || keys > maxDelta) {
+            reload();
+        } else if (!changes.isEmpty()) {
+            if (!changes.getTypeIds().isEmpty()) TypeDictionary.invalidate();
+            ChangeBus.getInstance().publish(changes);
+        }
+    }
+
+    /**
+     * Lets the views load everything again
+     */
+    private void reload() {
+        TypeDictionary.invalidate();
+        reloadAll.run();
+    }
+
+    /**
+     * Deletes entries older than the retention, in small steps so the table is never locked for long
+     * @param conn Open connection
+     * @throws SQLException If the query execution fails
+     */
+    private void purge(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(PURGE_SQL)) {
+            ps.setInt(1, retentionMinutes);
+            ps.setInt(2, PURGE_LIMIT);
+            ps.executeUpdate();
+        }
+    }
+}
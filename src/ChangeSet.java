@@ -0,0 +1,65 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Keys of the rows changed by one repository operation
+ * Views showing these rows only have to reload them instead of whole tables
+ */
+public class ChangeSet {
+    private final Set<Integer> pokemonIds = new LinkedHashSet<>();
+    private final Set<Integer> trainerIds = new LinkedHashSet<>();
+    private final Set<Integer> typeIds = new LinkedHashSet<>();
+
+    public ChangeSet pokemon(int id) {
+        pokemonIds.add(id);
+        return this;
+    }
+
+    public ChangeSet pokemons(Collection<Integer> ids) {
+        pokemonIds.addAll(ids);
+        return this;
+    }
+
+    /**
+     * Adds a trainer, null is ignored so nullable trainer_id values can be passed directly
+     * @param id Trainer ID or null
+     * @return This change set
+     */
+    public ChangeSet trainer(Integer id) {
+        if (id != null) trainerIds.add(id);
+        return this;
+    }
+
+    public ChangeSet trainers(Collection<Integer> ids) {
+        trainerIds.addAll(ids);
+        return this;
+    }
+
+    public ChangeSet type(int id) {
+        typeIds.add(id);
+        return this;
+    }
+
+    public Set<Integer> getPokemonIds() {
+        return Collections.unmodifiableSet(pokemonIds);
+    }
+
+    public Set<Integer> getTrainerIds() {
+        return Collections.unmodifiableSet(trainerIds);
+    }
+
+    public Set<Integer> getTypeIds() {
+        return Collections.unmodifiableSet(typeIds);
+    }
+
+    public boolean isEmpty() {
+        return pokemonIds.isEmpty() && trainerIds.isEmpty() && typeIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "pokemons=" + pokemonIds + " trainers=" + trainerIds + " types=" + typeIds;
+    }
+}
@@ -0,0 +1,428 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe pool of MySQL connections
+ * Borrowed connections are handed out as proxies whose close() returns the physical connection to the pool
+ * Each physical connection keeps its own cache of prepared statements, see StatementCache
+ */
+public class ConnectionPool {
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final boolean validateOnBorrow;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LatencyHistogram borrowLatency = Metrics.getInstance().histogram("ConnectionPool.borrow");
+    private final ScheduledExecutorService evictor;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates the pool and opens the minimum number of connections
+     * @param url JDBC url
+     * @param user Database user
+     * @param password Database password
+     * @param minSize Connections kept open even when idle
+     * @param maxSize Upper bound of open connections
+     * @param borrowTimeoutMillis How long a caller waits for a free connection
+     * @param idleTimeoutMillis How long a connection above minSize may stay idle before it is closed
+     * @param validateOnBorrow If idle connections are checked before they are handed out
+     * @param validationTimeoutSeconds Timeout of the validation check
+     * @param statementCacheSize Prepared statements cached per connection, 0 disables the cache
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis,
+                          boolean validateOnBorrow, int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validateOnBorrow = validateOnBorrow;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+
+        fillToMinimum();
+    }
+
+    /**
+     * Borrows a connection, waiting at most the borrow timeout for one to become free
+     * @return Connection which goes back to the pool when closed
+     * @throws SQLException If the pool is exhausted or a new connection cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) throw new SQLException("Connection pool is shut down.");
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Connection connection = acquire(start);
+            failed = false;
+            return connection;
+        } finally {
+            borrowLatency.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Waits for a permit and leases an idle or new connection
+     * @param start When the caller started waiting
+     * @return Leased connection
+     * @throws SQLException If the pool is exhausted or a new connection cannot be opened
+     */
+    private Connection acquire(long start) throws SQLException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.");
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        borrowCount.increment();
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) pooled = open();
+            active.incrementAndGet();
+            return pooled.lease(this);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool counters
+     * @return Pool statistics
+     */
+    public PoolStats getStats() {
+        long borrows = borrowCount.sum();
+        return new PoolStats(active.get(), idle.size(), total.get(), maxSize, borrows, timeoutCount.sum(),
+                borrows == 0 ? 0 : totalWaitNanos.sum() / borrows / 1_000_000.0,
+                maxWaitNanos.get() / 1_000_000.0);
+    }
+
+    /**
+     * Closes all idle connections and refuses further borrows
+     * Connections still in use are closed when they are given back
+     */
+    public void shutdown() {
+        shutdown = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) discard(pooled);
+    }
+
+    /**
+     * Takes the most recently used idle connection which is still valid
+     * @return Idle connection or null if there is none
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (!validateOnBorrow || pooled.isValid(validationTimeoutSeconds)) return pooled;
+            discard(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Opens a new physical connection
+     * @return New pooled connection
+     * @throws SQLException If the connection cannot be opened
+     */
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        PooledConnection pooled;
+        try {
+            pooled = new PooledConnection(physical, statementCacheSize);
+        } catch (SQLException e) {
+            physical.close();
+            throw e;
+        }
+        total.incrementAndGet();
+        return pooled;
+    }
+
+    /**
+     * Takes a connection back after its proxy was closed
+     * @param pooled Returned connection
+     */
+    void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (shutdown || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes idle connections over the idle timeout while keeping the minimum size
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && total.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsed > idleTimeoutMillis && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+        fillToMinimum();
+    }
+
+    /**
+     * Opens connections until the pool holds at least the minimum size
+     */
+    private void fillToMinimum() {
+        while (!shutdown && total.get() < minSize) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                System.err.println("Couldn't open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the physical connection and forgets it
+     * @param pooled Connection to close
+     */
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        pooled.statements.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // the connection is thrown away anyway
+        }
+    }
+
+    /**
+     * Physical connection together with its pool bookkeeping
+     */
+    static class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        final int defaultIsolation;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical, int statementCacheSize) throws SQLException {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, statementCacheSize);
+            this.defaultIsolation = physical.getTransactionIsolation();
+        }
+
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back unfinished work and restores the default connection state
+         * Besides autocommit, the isolation level and read-only flag a borrower changed are set back
+         * @return False if the connection is broken and should be discarded
+         */
+        boolean reset() {
+            statements.closeLeaked();
+            try {
+                if (physical.isClosed()) return false;
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.getTransactionIsolation() != defaultIsolation) {
+                    physical.setTransactionIsolation(defaultIsolation);
+                }
+                if (physical.isReadOnly()) physical.setReadOnly(false);
+                physical.clearWarnings();
+                lastUsed = System.currentTimeMillis();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        Connection lease(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(pool, this));
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the lease is closed
+     */
+    private static class LeaseHandler implements InvocationHandler {
+        private final ConnectionPool pool;
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        LeaseHandler(ConnectionPool pool, PooledConnection pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "prepareStatement":
+                    if (closed) throw new SQLException("Connection was already returned to the pool.");
+                    if (args.length == 1) {
+                        return pooled.statements.prepare((Connection) proxy, (String) args[0], Statement.NO_GENERATED_KEYS);
+                    }
+                    if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                        return pooled.statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                    }
+                    return forward(method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    if (closed) throw new SQLException("Connection was already returned to the pool.");
+                    return forward(method, args);
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the pool counters used for sizing the pool
+     */
+    public static class PoolStats {
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int maxSize;
+        private final long borrowCount;
+        private final long timeoutCount;
+        private final double averageWaitMillis;
+        private final double maxWaitMillis;
+
+        public PoolStats(int active, int idle, int total, int maxSize, long borrowCount, long timeoutCount,
+                         double averageWaitMillis, double maxWaitMillis) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.maxSize = maxSize;
+            this.borrowCount = borrowCount;
+            this.timeoutCount = timeoutCount;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public double getAverageWaitMillis() {
+            return averageWaitMillis;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d total=%d/%d borrows=%d timeouts=%d avgWait=%.2fms maxWait=%.2fms",
+                    active, idle, total, maxSize, borrowCount, timeoutCount, averageWaitMillis, maxWaitMillis);
+        }
+    }
+}
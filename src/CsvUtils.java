@@ -0,0 +1,50 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the ';' separated files the importers read and TableExporter writes
+ * A field starting with a quote is quoted, it may contain ';' and doubled quotes stand for one quote.
+ */
+public final class CsvUtils {
+
+    private CsvUtils() {
+    }
+
+    /**
+     * Splits a line into fields like String.split(";"), empty trailing fields are dropped
+     * @param line Line without the line break
+     * @return Fields with the quotes removed
+     */
+    public static String[] split(String line) {
+        if (line.indexOf('"') < 0) return line.split(";");
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (i <= line.length()) {
+            field.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (i < line.length()) {
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            int end = line.indexOf(';', i);
+            if (end < 0) end = line.length();
+            field.append(line, i, end);
+            fields.add(field.toString());
+            i = end + 1;
+        }
+        int size = fields.size();
+        while (size > 0 && fields.get(size - 1).isEmpty()) size--;
+        return fields.subList(0, size).toArray(new String[0]);
+    }
+}
@@ -2,25 +2,27 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
 /**
- * Singleton class for managing MySQL database connection
+ * Singleton class for managing MySQL database connections through a connection pool
  */
 public class DatabaseConfig {
 
     private static DatabaseConfig instance;
-    private Connection connection;
+    private ConnectionPool pool;
+    private SqlTracer tracer;
     private final Properties configProps = new Properties();
 
     /**
      * Loads the database config from properties file
+     * The file is res/config.properties unless the pokemon.config system property names another one
      */
     private DatabaseConfig() {
-        try (FileInputStream fis = new FileInputStream("res/config.properties");
+        try (FileInputStream fis = new FileInputStream(System.getProperty("pokemon.config", "res/config.properties"));
              InputStreamReader reader = new InputStreamReader(fis, StandardCharsets.UTF_8)) {
             configProps.load(reader);
         }
@@ -41,19 +43,124 @@ public class DatabaseConfig {
     }
 
     /**
-     * Establishes and returns a connection to the MySQL database using config
+     * Borrows a connection to the MySQL database from the pool
+     * Closing the returned connection gives it back to the pool
+     * With trace.enabled the statements of the connection are timed by the SqlTracer
      * @return Link to connection
-     * @throws SQLException If a database access error occurs
+     * @throws SQLException If a database access error occurs or no connection is free in time
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            String url = "jdbc:mysql://" + configProps.getProperty("host") +":"+ configProps.getProperty("port")+ "/" + configProps.getProperty("dbname");
-            connection = DriverManager.getConnection(
+        Connection connection = getPool().borrow();
+        SqlTracer sqlTracer = getTracer();
+        return sqlTracer == null ? connection : sqlTracer.wrap(connection);
+    }
+
+    /**
+     * Returns the current counters of the connection pool without opening it
+     * @return Pool statistics or null if no connection was requested yet
+     */
+    public synchronized ConnectionPool.PoolStats getPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+
+    /**
+     * Returns the hit and miss counters of the prepared statement caches
+     * @return Statement cache statistics
+     */
+    public StatementCache.CacheStats getStatementCacheStats() {
+        return StatementCache.getStats();
+    }
+
+    /**
+     * Closes all pooled connections
+     */
+    public synchronized void shutdown() {
+        if (tracer != null) {
+            tracer.shutdown();
+            tracer = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * Returns a config value
+     * @param key Property name
+     * @param defaultValue Value used when the property is missing
+     * @return Config value
+     */
+    public String getProperty(String key, String defaultValue) {
+        return configProps.getProperty(key, defaultValue).trim();
+    }
+
+    /**
+     * Returns a numeric config value
+     * @param key Property name
+     * @param defaultValue Value used when the property is missing or invalid
+     * @return Config value
+     */
+    public int getIntProperty(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getProperty(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a boolean config value
+     * @param key Property name
+     * @param defaultValue Value used when the property is missing
+     * @return Config value
+     */
+    public boolean getBooleanProperty(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getProperty(key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Creates the SQL tracer on first use if tracing is enabled
+     * @return Tracer or null when tracing is off
+     */
+    private synchronized SqlTracer getTracer() {
+        if (tracer == null && getBooleanProperty("trace.enabled", false)) {
+            RollingLogFile log = new RollingLogFile(
+                    Path.of(getProperty("trace.logFile", "logs/sql-trace.log")),
+                    getIntProperty("trace.maxFileKB", 5120) * 1024L,
+                    getIntProperty("trace.maxFiles", 5));
+            tracer = new SqlTracer(
+                    getBooleanProperty("trace.explain", true) ? () -> getPool().borrow() : null,
+                    getIntProperty("trace.slowQueryMillis", 200),
+                    getBooleanProperty("trace.logAll", false),
+                    log);
+        }
+        return tracer;
+    }
+
+    /**
+     * Creates the connection pool on first use
+     * @return Connection pool
+     */
+    private synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            String url = "jdbc:mysql://" + configProps.getProperty("host") +":"+ configProps.getProperty("port")+ "/" + configProps.getProperty("dbname")
+                    + "?rewriteBatchedStatements=true&useServerPrepStmts=true"
+                    + "&allowLoadLocalInfile=" + getBooleanProperty("import.allowLoadLocalInfile", true);
+            pool = new ConnectionPool(
                     url,
                     configProps.getProperty("user"),
-                    configProps.getProperty("password")
+                    configProps.getProperty("password"),
+                    getIntProperty("pool.minSize", 2),
+                    getIntProperty("pool.maxSize", 10),
+                    getIntProperty("pool.borrowTimeoutMillis", 5000),
+                    getIntProperty("pool.idleTimeoutMillis", 300000),
+                    getBooleanProperty("pool.validateOnBorrow", true),
+                    getIntProperty("pool.validationTimeoutSeconds", 2),
+                    getIntProperty("pool.statementCacheSize", 64)
             );
         }
-        return connection;
+        return pool;
     }
-}
\ No newline at end of file
+}
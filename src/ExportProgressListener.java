@@ -0,0 +1,12 @@
+/**
+ * Callback for reporting the progress of a long running export
+ */
+public interface ExportProgressListener {
+    /**
+     * Called every few thousand rows
+     * @param rowCount Rows written so far
+     * @param totalRows Rows expected, counted before the export started
+     * @param bytesWritten Bytes of the file written so far
+     */
+    void onProgress(long rowCount, long totalRows, long bytesWritten);
+}
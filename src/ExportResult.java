@@ -0,0 +1,40 @@
+/**
+ * Represents the outcome of an export
+ */
+public class ExportResult {
+    private final long rowCount;
+    private final long byteCount;
+    private final long elapsedMillis;
+
+    public ExportResult(long rowCount, long byteCount, long elapsedMillis) {
+        this.rowCount = rowCount;
+        this.byteCount = byteCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Computes the export throughput
+     * @return Written rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowCount : rowCount * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%.1f MB) exported in %.1f s (%.0f rows/s)",
+                rowCount, byteCount / (1024.0 * 1024.0), elapsedMillis / 1000.0, getRowsPerSecond());
+    }
+}
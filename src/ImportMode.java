@@ -0,0 +1,13 @@
+/**
+ * Selects how a CSV file is written into the database
+ */
+public enum ImportMode {
+    /**
+     * Batched INSERT statements sent over JDBC
+     */
+    JDBC,
+    /**
+     * LOAD DATA LOCAL INFILE into a staging table, falls back to JDBC when the server does not allow it
+     */
+    BULK_LOAD
+}
@@ -0,0 +1,13 @@
+/**
+ * Callback for reporting the progress of a long running import
+ */
+public interface ImportProgressListener {
+    /**
+     * Called after each committed batch
+     * @param bytesProcessed Bytes of the file already imported
+     * @param totalBytes Size of the file
+     * @param rowCount Rows imported so far
+     * @param rowsPerSecond Current throughput
+     */
+    void onProgress(long bytesProcessed, long totalBytes, int rowCount, double rowsPerSecond);
+}
@@ -0,0 +1,33 @@
+/**
+ * Represents the outcome of a CSV import
+ */
+public class ImportResult {
+    private final int rowCount;
+    private final long elapsedMillis;
+
+    public ImportResult(int rowCount, long elapsedMillis) {
+        this.rowCount = rowCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Computes the import throughput
+     * @return Imported rows per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? rowCount : rowCount * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows imported in %.1f s (%.0f rows/s)", rowCount, elapsedMillis / 1000.0, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementation of the PokemonRepository interface backed by an InMemoryStore
+ * Used as offline mode and as a baseline without database round trips
+ */
+public class InMemoryPokemonRepository implements PokemonRepository {
+
+    private final InMemoryStore store;
+
+    public InMemoryPokemonRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Adds a new Pokémon with its stats
+     * @param p Model containing trainer ID, nickname, and rarity
+     * @param hp HP value
+     * @param attack Attack value
+     * @param defense Defense value
+     * @return New ID
+     * @throws SQLException If the trainer does not exist or the rarity is invalid
+     */
+    @Override
+    public int catchNewPokemon(Pokemon p, int hp, int attack, int defense) throws SQLException {
+        return catchNewPokemon(p, hp, attack, defense, List.of());
+    }
+
+    /**
+     * Adds a new Pokémon with its stats and types, nothing is added if a type does not exist
+     * @param p Model containing trainer ID, nickname, and rarity
+     * @param hp HP value
+     * @param attack Attack value
+     * @param defense Defense value
+     * @param typeIds IDs of the types, duplicates are ignored
+     * @return New ID
+     * @throws SQLException If the trainer or a type does not exist or the rarity is invalid
+     */
+    @Override
+    public int catchNewPokemon(Pokemon p, int hp, int attack, int defense, List<Integer> typeIds) throws SQLException {
+        long mask = MySQLPokemonRepository.typeMask(typeIds);
+        int id = store.addPokemon(p.getTrainerId(), p.getNickname(), p.getRarity(), hp, attack, defense, mask);
+        ChangeBus.getInstance().publish(new ChangeSet().pokemon(id).trainer(p.getTrainerId()));
+        return id;
+    }
+
+    /**
+     * Add type to pokémon
+     * @param pokemonId ID of the pokémon
+     * @param typeId ID of the type we want to assign
+     * @throws SQLException If the pokémon or the type does not exist
+     */
+    @Override
+    public void addTypeToPokemon(int pokemonId, int typeId) throws SQLException {
+        store.addTypeToPokemon(pokemonId, typeId);
+        ChangeBus.getInstance().publish(new ChangeSet().pokemon(pokemonId));
+    }
+
+    /**
+     * Removes a Pokémon
+     * @param id ID of the pokémon we want to remove
+     */
+    @Override
+    public void deletePokemon(int id) {
+        Integer trainerId = store.deletePokemon(id);
+        ChangeBus.getInstance().publish(new ChangeSet().pokemon(id).trainer(trainerId));
+    }
+
+    /**
+     * Removes many Pokémon at once
+     * @param ids IDs of the pokémon we want to remove, unknown IDs are skipped
+     * @return Number of removed pokémon
+     */
+    @Override
+    public int deletePokemons(int[] ids) {
+        ChangeSet changes = new ChangeSet();
+        int deleted = store.deletePokemons(ids, changes);
+        ChangeBus.getInstance().publish(changes);
+        return deleted;
+    }
+
+    /**
+     * Imports the Pokémon from CSV file, rows are added in chunks of import.batchSize like the JDBC import,
+     * so a failure keeps everything before the failing chunk. Both modes behave the same.
+     * @param filePath Path to the CSV file
+     * @param mode Import method, ignored
+     * @return Number of imported rows and throughput
+     * @throws SQLException If the file cannot be read or contains invalid data
+     */
+    @Override
+    public ImportResult importPokemonsFromCSV(String filePath, ImportMode mode) throws SQLException {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            throw new SQLException("The selected file is empty or does not exist.");
+        }
+
+        long start = System.currentTimeMillis();
+        int batchSize = Math.max(1, DatabaseConfig.getInstance().getIntProperty("import.batchSize", 1000));
+        TypeDictionary types = TypeDictionary.get();
+        int[] trainerIds = new int[batchSize];
+        String[] nicknames = new String[batchSize];
+        String[] rarities = new String[batchSize];
+        int[] hp = new int[batchSize];
+        int[] attack = new int[batchSize];
+        int[] defense = new int[batchSize];
+        long[] typeMasks = new long[batchSize];
+        int size = 0;
+        int committed = 0;
+        int lineNumber = 1;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            if (br.readLine() == null) throw new SQLException("File has no content.");
+            String line;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                String[] data = CsvUtils.split(line);
+                if (data.length < 6) continue;
+                try {
+                    trainerIds[size] = Integer.parseInt(data[0].trim());
+                    hp[size] = Integer.parseInt(data[3].trim());
+                    attack[size] = Integer.parseInt(data[4].trim());
+                    defense[size] = Integer.parseInt(data[5].trim());
+                    typeMasks[size] = types.maskOf(MySQLPokemonRepository.column(data, 6), MySQLPokemonRepository.column(data, 7));
+                } catch (NumberFormatException e) {
+                    committed += addChunk(trainerIds, nicknames, rarities, hp, attack, defense, typeMasks, size, committed);
+                    throw new SQLException("Data format error on line " + lineNumber + ": Check if all numbers are valid. "
+                            + committed + " Pokémon from the previous lines were imported.");
+                } catch (IllegalArgumentException e) {
+                    committed += addChunk(trainerIds, nicknames, rarities, hp, attack, defense, typeMasks, size, committed);
+                    throw new SQLException("Type error on line " + lineNumber + ": " + e.getMessage() + " "
+                            + committed + " Pokémon from the previous lines were imported.");
+                }
+                nicknames[size] = data[1];
+                rarities[size] = data[2];
+                if (++size == batchSize) {
+                    committed += addChunk(trainerIds, nicknames, rarities, hp, attack, defense, typeMasks, size, committed);
+                    size = 0;
+                }
+            }
+            committed += addChunk(trainerIds, nicknames, rarities, hp, attack, defense, typeMasks, size, committed);
+        } catch (IOException e) {
+            throw new SQLException("Reading error: " + e.getMessage() + ". " + committed + " Pokémon were imported before the error.");
+        }
+
+        if (committed == 0) {
+            throw new SQLException("No valid Pokémon data found in the file.");
+        }
+        return new ImportResult(committed, System.currentTimeMillis() - start);
+    }
+
+    private int addChunk(int[] trainerIds, String[] nicknames, String[] rarities, int[] hp, int[] attack, int[] defense,
+                         long[] typeMasks, int size, int committedBefore) throws SQLException {
+        try {
+            return store.addPokemons(trainerIds, nicknames, rarities, hp, attack, defense, typeMasks, size);
+        } catch (SQLException e) {
+            throw new SQLException("Import stopped: " + e.getMessage() + " " + committedBefore
+                    + " Pokémon from the previous chunks were imported.", e);
+        }
+    }
+
+    /**
+     * Updates pokémon data
+     * @param id ID of the pokémon we want to update
+     * @param nickname Nickname we want to set
+     * @param rarity Rarity we want to set
+     * @param hp HP we want to set
+     * @param attack Attack we want to set
+     * @param defense Defense we want to set
+     * @throws SQLException If the rarity is invalid
+     */
+    @Override
+    public void updatePokemon(int id, String nickname, String rarity, int hp, int attack, int defense) throws SQLException {
+        Integer trainerId = store.updatePokemon(id, nickname, rarity, hp, attack, defense);
+        ChangeBus.getInstance().publish(new ChangeSet().pokemon(id).trainer(trainerId));
+    }
+
+    /**
+     * Updates pokémon data and types if the pokémon still has the expected version
+     * @param id ID of the pokémon we want to update
+     * @param expectedVersion Version the pokémon had when it was read
+     * @param nickname Nickname we want to set
+     * @param rarity Rarity we want to set
+     * @param hp HP we want to set
+     * @param attack Attack we want to set
+     * @param defense Defense we want to set
+     * @param type1Id ID of type 1 or null
+     * @param type2Id ID of type 2 or null
+     * @return UPDATED with the new version, CONFLICT with the stored pokémon or DELETED
+     * @throws SQLException If the rarity or a type is invalid
+     */
+    @Override
+    public UpdateResult<PokemonDetails> updatePokemonIfUnchanged(int id, int expectedVersion, String nickname, String rarity,
+                                                                 int hp, int attack, int defense,
+                                                                 Integer type1Id, Integer type2Id) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        UpdateResult<PokemonDetails> result = store.updatePokemonIfUnchanged(id, expectedVersion, nickname, rarity,
+                hp, attack, defense, MySQLPokemonRepository.typeMask(Arrays.asList(type1Id, type2Id)), changes);
+        ChangeBus.getInstance().publish(changes);
+        return result;
+    }
+
+    /**
+     * Sets rarity and stats of many Pokémon at once, a null value keeps the current one
+     * @param ids IDs of the pokémon we want to update, unknown IDs are skipped
+     * @param rarity Rarity we want to set or null
+     * @param hp HP we want to set or null
+     * @param attack Attack we want to set or null
+     * @param defense Defense we want to set or null
+     * @return Number of updated pokémon
+     * @throws SQLException If the rarity is invalid
+     */
+    @Override
+    public int updatePokemons(int[] ids, String rarity, Integer hp, Integer attack, Integer defense) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        int updated = store.updatePokemons(ids, rarity, hp, attack, defense, changes);
+        ChangeBus.getInstance().publish(changes);
+        return updated;
+    }
+
+    /**
+     * Updates the pokémon types
+     * @param pokemonId ID of the pokémon
+     * @param type1Id ID of type 1
+     * @param type2Id ID of type 2
+     * @throws SQLException If a type does not exist
+     */
+    @Override
+    public void updatePokemonTypes(int pokemonId, Integer type1Id, Integer type2Id) throws SQLException {
+        store.setPokemonTypes(pokemonId, MySQLPokemonRepository.typeMask(Arrays.asList(type1Id, type2Id)));
+        ChangeBus.getInstance().publish(new ChangeSet().pokemon(pokemonId));
+    }
+
+    /**
+     * Applies many pending Pokémon changes at once
+     * @param updates Changes, at most one per Pokémon, unknown IDs are skipped
+     * @throws SQLException If a rarity or a type is invalid, nothing is changed then
+     */
+    @Override
+    public void applyPokemonUpdates(List<PokemonUpdate> updates) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        store.applyPokemonUpdates(updates, changes);
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Finds the Pokémon having at least one of the types
+     * @param typeIds IDs of the wanted types
+     * @return IDs of the matching pokémon in ascending order
+     */
+    @Override
+    public List<Integer> findPokemonIdsWithAnyType(int... typeIds) {
+        long mask = 0;
+        for (int typeId : typeIds) {
+            // no Pokémon can have a type without a mask bit
+            if (typeId >= 1 && typeId <= TypeDictionary.MAX_MASK_TYPE_ID) mask |= TypeDictionary.bit(typeId);
+        }
+        return store.findPokemonIds(mask);
+    }
+
+    /**
+     * Passes the pokémon nicknames to a name index
+     * @param ids IDs to read or null for all pokémon
+     * @param sink Receives ID and nickname
+     */
+    @Override
+    public void scanNicknames(Collection<Integer> ids, NameIndex.Sink sink) {
+        store.scanNicknames(ids, sink);
+    }
+
+    /**
+     * Copies the stats of all pokémon into column arrays
+     * @return Copied columns
+     */
+    @Override
+    public StatColumns loadStatColumns() {
+        return store.statColumns();
+    }
+
+    /**
+     * Returns one Pokémon with its version
+     * @param id ID of the pokémon
+     * @return Pokémon or null if it does not exist
+     */
+    @Override
+    public PokemonDetails findPokemon(int id) {
+        return store.findPokemon(id);
+    }
+
+    /**
+     * Searches the Pokémon by scanning the store columns
+     * @param query Search criteria
+     * @return At most query.getLimit() matching pokémon in the requested order
+     */
+    @Override
+    public List<PokemonDetails> findPokemons(PokemonQuery query) {
+        return store.findPokemons(query);
+    }
+}
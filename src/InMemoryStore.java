@@ -0,0 +1,1139 @@
+import javax.swing.table.DefaultTableModel;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column oriented in-memory copy of the Pokémon database used by the InMemory repositories
+ * Every attribute is a primitive array indexed by row, rows are kept ordered by id so a lookup is a binary search.
+ * Readers share a read lock, every change takes the write lock, so snapshots and aggregates are always consistent.
+ * Constraint violations are reported as SQLExceptions with the same meaning as the MySQL errors.
+ */
+public class InMemoryStore {
+
+    private static final String[] RARITIES = {"Common", "Rare", "Legendary"};
+    private static final int NO_TRAINER = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int pokemonCount;
+    private int[] pokemonIds = new int[16];
+    private int[] ownerIds = new int[16];
+    private String[] nicknames = new String[16];
+    private byte[] rarities = new byte[16];
+    private int[] hp = new int[16];
+    private int[] attack = new int[16];
+    private int[] defense = new int[16];
+    private long[] typeMasks = new long[16];
+    private int[] pokemonVersions = new int[16];
+    private int nextPokemonId = 1;
+
+    private int trainerCount;
+    private int[] trainerIds = new int[16];
+    private String[] trainerNames = new String[16];
+    private float[] experience = new float[16];
+    private boolean[] gymLeaders = new boolean[16];
+    private long[] createdAt = new long[16];
+    private int[] ownedCounts = new int[16];
+    private long[] attackSums = new long[16];
+    private int[] trainerVersions = new int[16];
+    private int nextTrainerId = 1;
+
+    private final String[] typeNames = new String[TypeDictionary.MAX_MASK_TYPE_ID + 1];
+
+    /**
+     * Creates a store holding the sample data of bin/db_export.sql
+     * @return Store with 18 types, 3 trainers and 3 Pokémon
+     */
+    public static InMemoryStore withSampleData() {
+        InMemoryStore store = new InMemoryStore();
+        String[] types = {"Normal", "Fire", "Water", "Grass", "Electric", "Ice", "Fighting", "Poison", "Ground",
+                "Flying", "Psychic", "Bug", "Rock", "Ghost", "Dragon", "Dark", "Steel", "Fairy"};
+        try {
+            for (String type : types) store.addType(type);
+            int ash = store.addTrainer("Ash Ketchum", 1500.5f, false);
+            int brock = store.addTrainer("Brock", 5000f, true);
+            store.addTrainer("Misty", 4200.75f, true);
+            store.addPokemon(ash, "Pikachu", "Rare", 35, 55, 40, TypeDictionary.mask(1));
+            store.addPokemon(ash, "Charizard", "Legendary", 78, 84, 78, TypeDictionary.mask(2, 4));
+            store.addPokemon(brock, "Onix", "Common", 35, 45, 160, TypeDictionary.mask(5));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Sample data is invalid", e);
+        }
+        return store;
+    }
+
+    /**
+     * Creates a store holding the content of a snapshot file
+     * @param file Snapshot written by copyTo or SnapshotFile.copyDatabase
+     * @return Filled store
+     * @throws SQLException If the file can't be read or its records are inconsistent
+     */
+    public static InMemoryStore fromSnapshot(Path file) throws SQLException {
+        InMemoryStore store = new InMemoryStore();
+        store.lock.writeLock().lock();
+        try {
+            SnapshotFile.read(file, store.new Restorer());
+            store.recomputeAggregates(store.ownedCounts, store.attackSums);
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+        return store;
+    }
+
+    /**
+     * Passes all types, trainers and Pokémon to a sink, for example a SnapshotFile.Writer
+     * @param sink Receives the records ordered by id
+     * @throws SQLException If the sink rejects a record
+     */
+    public void copyTo(SnapshotFile.Sink sink) throws SQLException {
+        lock.readLock().lock();
+        try {
+            for (int id = 1; id < typeNames.length; id++) {
+                if (typeNames[id] != null) sink.type(id, typeNames[id]);
+            }
+            for (int i = 0; i < trainerCount; i++) {
+                sink.trainer(trainerIds[i], trainerNames[i], experience[i], gymLeaders[i], createdAt[i]);
+            }
+            for (int i = 0; i < pokemonCount; i++) {
+                sink.pokemon(pokemonIds[i], ownerIds[i], nicknames[i], rarities[i], hp[i], attack[i], defense[i], typeMasks[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the records of a snapshot with their ids, the caller holds the write lock
+     */
+    private class Restorer implements SnapshotFile.Sink {
+        @Override
+        public void type(int id, String name) throws SQLException {
+            if (id < 1 || id > TypeDictionary.MAX_MASK_TYPE_ID) throw new SQLException("Snapshot type id " + id + " is invalid.");
+            typeNames[id] = name;
+        }
+
+        @Override
+        public void trainer(int id, String name, float xp, boolean gymLeader, long created) throws SQLException {
+            if (trainerCount > 0 && id <= trainerIds[trainerCount - 1]) {
+                throw new SQLException("Snapshot trainers are not ordered by id at " + id + ".");
+            }
+            if (trainerCount == trainerIds.length) growTrainers();
+            int row = trainerCount++;
+            trainerIds[row] = id;
+            trainerNames[row] = name;
+            experience[row] = xp;
+            gymLeaders[row] = gymLeader;
+            createdAt[row] = created;
+            trainerVersions[row] = 0;
+            nextTrainerId = id + 1;
+        }
+
+        @Override
+        public void pokemon(int id, int trainerId, String nickname, byte rarity, int hpValue, int attackValue,
+                            int defenseValue, long typeMask) throws SQLException {
+            if (pokemonCount > 0 && id <= pokemonIds[pokemonCount - 1]) {
+                throw new SQLException("Snapshot Pokémon are not ordered by id at " + id + ".");
+            }
+            if (trainerId != NO_TRAINER && trainerRow(trainerId) < 0) {
+                throw new SQLException("Snapshot Pokémon " + id + " belongs to the missing trainer " + trainerId + ".");
+            }
+            requireTypes(typeMask);
+            if (pokemonCount == pokemonIds.length) growPokemons();
+            int row = pokemonCount++;
+            pokemonIds[row] = id;
+            ownerIds[row] = trainerId;
+            nicknames[row] = nickname;
+            rarities[row] = rarity < 0 || rarity >= RARITIES.length ? StatColumns.NO_RARITY : rarity;
+            hp[row] = hpValue;
+            attack[row] = attackValue;
+            defense[row] = defenseValue;
+            typeMasks[row] = typeMask;
+            pokemonVersions[row] = 0;
+            nextPokemonId = id + 1;
+        }
+    }
+
+    // ---------------------------------------------------------------- Pokémon
+
+    /**
+     * Adds a Pokémon with its stats and types
+     * @param typeMask Type mask, see TypeDictionary.mask
+     * @return New ID
+     * @throws SQLException If the trainer or a type does not exist or the rarity is invalid
+     */
+    public int addPokemon(int trainerId, String nickname, String rarity, int hpValue, int attackValue, int defenseValue,
+                          long typeMask) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int trainer = requireTrainer(trainerId);
+            byte rarityCode = rarityCode(rarity);
+            requireTypes(typeMask);
+            return appendPokemon(trainerId, trainer, nickname, rarityCode, hpValue, attackValue, defenseValue, typeMask);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds many Pokémon at once, either all rows are added or none
+     * @param count Number of rows in the arrays
+     * @return Number of added rows
+     * @throws SQLException If a trainer or a type does not exist or a rarity is invalid
+     */
+    public int addPokemons(int[] trainerIdColumn, String[] nicknameColumn, String[] rarityColumn,
+                           int[] hpColumn, int[] attackColumn, int[] defenseColumn, long[] typeMaskColumn, int count)
+            throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int[] trainerRows = new int[count];
+            byte[] rarityCodes = new byte[count];
+            for (int i = 0; i < count; i++) {
+                trainerRows[i] = requireTrainer(trainerIdColumn[i]);
+                rarityCodes[i] = rarityCode(rarityColumn[i]);
+                requireTypes(typeMaskColumn[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                appendPokemon(trainerIdColumn[i], trainerRows[i], nicknameColumn[i], rarityCodes[i],
+                        hpColumn[i], attackColumn[i], defenseColumn[i], typeMaskColumn[i]);
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates nickname, rarity and stats
+     * @return Owning trainer or null
+     * @throws SQLException If the rarity is invalid
+     */
+    public Integer updatePokemon(int id, String nickname, String rarity, int hpValue, int attackValue, int defenseValue)
+            throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int row = pokemonRow(id);
+            if (row < 0) return null;
+            byte rarityCode = rarityCode(rarity);
+            int trainer = trainerRow(ownerIds[row]);
+            if (trainer >= 0) attackSums[trainer] += (long) attackValue - attack[row];
+            nicknames[row] = nickname;
+            rarities[row] = rarityCode;
+            hp[row] = hpValue;
+            attack[row] = attackValue;
+            defense[row] = defenseValue;
+            pokemonVersions[row]++;
+            return owner(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates nickname, rarity, stats and types if the Pokémon still has the expected version
+     * @param mask Type mask, see TypeDictionary.mask
+     * @param changes Receives the Pokémon and its trainer when it was updated
+     * @return UPDATED with the new version, CONFLICT with the stored Pokémon or DELETED
+     * @throws SQLException If the rarity or a type is invalid
+     */
+    public UpdateResult<PokemonDetails> updatePokemonIfUnchanged(int id, int expectedVersion, String nickname, String rarity,
+                                                                 int hpValue, int attackValue, int defenseValue, long mask,
+                                                                 ChangeSet changes) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int row = pokemonRow(id);
+            if (row < 0) return UpdateResult.deleted();
+            if (pokemonVersions[row] != expectedVersion) return UpdateResult.conflict(details(row));
+            byte rarityCode = rarityCode(rarity);
+            requireTypes(mask);
+            int trainer = trainerRow(ownerIds[row]);
+            if (trainer >= 0) attackSums[trainer] += (long) attackValue - attack[row];
+            nicknames[row] = nickname;
+            rarities[row] = rarityCode;
+            hp[row] = hpValue;
+            attack[row] = attackValue;
+            defense[row] = defenseValue;
+            typeMasks[row] = mask;
+            changes.pokemon(id).trainer(owner(row));
+            return UpdateResult.updated(++pokemonVersions[row]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one Pokémon with its trainer name, stats, types and version
+     * @return Pokémon or null if it does not exist
+     */
+    public PokemonDetails findPokemon(int id) {
+        lock.readLock().lock();
+        try {
+            int row = pokemonRow(id);
+            return row < 0 ? null : details(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds one type to the type set of a Pokémon
+     * @throws SQLException If the Pokémon or the type does not exist
+     */
+    public void addTypeToPokemon(int pokemonId, int typeId) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int row = pokemonRow(pokemonId);
+            if (row < 0) throw new SQLException("Pokémon " + pokemonId + " does not exist.");
+            requireType(typeId);
+            typeMasks[row] |= TypeDictionary.bit(typeId);
+            pokemonVersions[row]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the type set of a Pokémon
+     * @param mask Type mask, see TypeDictionary.mask
+     * @throws SQLException If a type does not exist
+     */
+    public void setPokemonTypes(int pokemonId, long mask) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            requireTypes(mask);
+            int row = pokemonRow(pokemonId);
+            if (row < 0) return;
+            typeMasks[row] = mask;
+            pokemonVersions[row]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a Pokémon
+     * @return Owning trainer or null
+     */
+    public Integer deletePokemon(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = pokemonRow(id);
+            if (row < 0) return null;
+            Integer owner = owner(row);
+            int trainer = trainerRow(ownerIds[row]);
+            if (trainer >= 0) {
+                ownedCounts[trainer]--;
+                attackSums[trainer] -= attack[row];
+            }
+            int tail = pokemonCount - row - 1;
+            System.arraycopy(pokemonIds, row + 1, pokemonIds, row, tail);
+            System.arraycopy(ownerIds, row + 1, ownerIds, row, tail);
+            System.arraycopy(nicknames, row + 1, nicknames, row, tail);
+            System.arraycopy(rarities, row + 1, rarities, row, tail);
+            System.arraycopy(hp, row + 1, hp, row, tail);
+            System.arraycopy(attack, row + 1, attack, row, tail);
+            System.arraycopy(defense, row + 1, defense, row, tail);
+            System.arraycopy(typeMasks, row + 1, typeMasks, row, tail);
+            System.arraycopy(pokemonVersions, row + 1, pokemonVersions, row, tail);
+            pokemonCount--;
+            nicknames[pokemonCount] = null;
+            return owner;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes many Pokémon with one compaction pass over the columns
+     * @param changes Receives the removed Pokémon and their trainers
+     * @return Number of removed Pokémon, unknown IDs are skipped
+     */
+    public int deletePokemons(int[] ids, ChangeSet changes) {
+        lock.writeLock().lock();
+        try {
+            boolean[] remove = new boolean[pokemonCount];
+            int removed = 0;
+            for (int id : ids) {
+                int row = pokemonRow(id);
+                if (row < 0 || remove[row]) continue;
+                remove[row] = true;
+                removed++;
+                changes.pokemon(id).trainer(owner(row));
+                int trainer = trainerRow(ownerIds[row]);
+                if (trainer >= 0) {
+                    ownedCounts[trainer]--;
+                    attackSums[trainer] -= attack[row];
+                }
+            }
+            if (removed > 0) compactPokemons(remove);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets rarity and stats of many Pokémon, null keeps the current value
+     * @param changes Receives the updated Pokémon and the trainers whose attack sum changed
+     * @return Number of updated Pokémon, unknown IDs are skipped
+     * @throws SQLException If the rarity is invalid, nothing is changed then
+     */
+    public int updatePokemons(int[] ids, String rarity, Integer hpValue, Integer attackValue, Integer defenseValue,
+                              ChangeSet changes) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            byte rarityCode = rarity == null ? -1 : rarityCode(rarity);
+            int updated = 0;
+            for (int id : ids) {
+                int row = pokemonRow(id);
+                if (row < 0) continue;
+                updated++;
+                changes.pokemon(id);
+                pokemonVersions[row]++;
+                if (rarityCode >= 0) rarities[row] = rarityCode;
+                if (hpValue != null) hp[row] = hpValue;
+                if (defenseValue != null) defense[row] = defenseValue;
+                if (attackValue != null && attackValue != attack[row]) {
+                    int trainer = trainerRow(ownerIds[row]);
+                    if (trainer >= 0) {
+                        attackSums[trainer] += (long) attackValue - attack[row];
+                        changes.trainer(ownerIds[row]);
+                    }
+                    attack[row] = attackValue;
+                }
+            }
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies many pending Pokémon changes at once
+     * @param changes Receives the updated Pokémon and the trainers whose attack sum changed
+     * @throws SQLException If a rarity or a type is invalid or a checked Pokémon has another version, nothing is changed then
+     */
+    public void applyPokemonUpdates(List<PokemonUpdate> updates, ChangeSet changes) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            byte[] rarityCodes = new byte[updates.size()];
+            long[] masks = new long[updates.size()];
+            for (int i = 0; i < updates.size(); i++) {
+                PokemonUpdate u = updates.get(i);
+                if (u.isDetailsChanged()) rarityCodes[i] = rarityCode(u.getRarity());
+                if (u.isTypesChanged()) {
+                    masks[i] = TypeDictionary.mask(u.getType1Id(), u.getType2Id());
+                    requireTypes(masks[i]);
+                }
+                int row = pokemonRow(u.getId());
+                if (row >= 0 && u.getExpectedVersion() != UpdateResult.ANY_VERSION && u.getExpectedVersion() != pokemonVersions[row]) {
+                    throw new SQLException("Pokémon " + u.getId() + " was changed by someone else, the edit was not saved.");
+                }
+            }
+            for (int i = 0; i < updates.size(); i++) {
+                PokemonUpdate u = updates.get(i);
+                int row = pokemonRow(u.getId());
+                if (row < 0) continue;
+                changes.pokemon(u.getId());
+                pokemonVersions[row]++;
+                if (u.isDetailsChanged()) {
+                    int trainer = trainerRow(ownerIds[row]);
+                    if (trainer >= 0 && u.getAttack() != attack[row]) {
+                        attackSums[trainer] += (long) u.getAttack() - attack[row];
+                        changes.trainer(ownerIds[row]);
+                    }
+                    nicknames[row] = u.getNickname();
+                    rarities[row] = rarityCodes[i];
+                    hp[row] = u.getHp();
+                    attack[row] = u.getAttack();
+                    defense[row] = u.getDefense();
+                }
+                if (u.isTypesChanged()) typeMasks[row] = masks[i];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the Pokémon having at least one of the types in the mask
+     * @return IDs in ascending order
+     */
+    public List<Integer> findPokemonIds(long anyTypeMask) {
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < pokemonCount; i++) {
+                if ((typeMasks[i] & anyTypeMask) != 0) ids.add(pokemonIds[i]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- Trainers
+
+    /**
+     * Adds a trainer
+     * @return New ID
+     */
+    public int addTrainer(String name, float xp, boolean gymLeader) {
+        lock.writeLock().lock();
+        try {
+            return appendTrainer(name, xp, gymLeader);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all trainers of an import batch
+     * @param batch Parsed trainers
+     */
+    public void addTrainers(TrainerImportPipeline.TrainerBatch batch) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) appendTrainer(batch.getName(i), batch.getXp(i), batch.isGymLeader(i));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates a trainer
+     * @return True if the trainer exists
+     */
+    public boolean updateTrainer(int id, String name, float xp, boolean gymLeader) {
+        lock.writeLock().lock();
+        try {
+            int row = trainerRow(id);
+            if (row < 0) return false;
+            trainerNames[row] = name;
+            experience[row] = xp;
+            gymLeaders[row] = gymLeader;
+            trainerVersions[row]++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates a trainer if it still has the expected version
+     * @return UPDATED with the new version, CONFLICT with the stored trainer or DELETED
+     */
+    public UpdateResult<Trainer> updateTrainerIfUnchanged(int id, int expectedVersion, String name, float xp, boolean gymLeader) {
+        lock.writeLock().lock();
+        try {
+            int row = trainerRow(id);
+            if (row < 0) return UpdateResult.deleted();
+            if (trainerVersions[row] != expectedVersion) return UpdateResult.conflict(trainer(row));
+            trainerNames[row] = name;
+            experience[row] = xp;
+            gymLeaders[row] = gymLeader;
+            return UpdateResult.updated(++trainerVersions[row]);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one trainer with its version
+     * @return Trainer or null if it does not exist
+     */
+    public Trainer findTrainer(int id) {
+        lock.readLock().lock();
+        try {
+            int row = trainerRow(id);
+            return row < 0 ? null : trainer(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Updates many trainers at once
+     * @param changes Receives the updated trainers, unknown IDs are skipped
+     * @throws SQLException If a trainer with a version has another one, nothing is changed then
+     */
+    public void updateTrainers(List<Trainer> trainers, ChangeSet changes) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            for (Trainer t : trainers) {
+                int row = trainerRow(t.getId());
+                if (row >= 0 && t.getVersion() != UpdateResult.ANY_VERSION && t.getVersion() != trainerVersions[row]) {
+                    throw new SQLException("Trainer " + t.getId() + " was changed by someone else, the edit was not saved.");
+                }
+            }
+            for (Trainer t : trainers) {
+                int row = trainerRow(t.getId());
+                if (row < 0) continue;
+                trainerVersions[row]++;
+                trainerNames[row] = t.getName();
+                experience[row] = t.getXp();
+                gymLeaders[row] = t.isLeader();
+                changes.trainer(t.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a trainer, its Pokémon stay without a trainer
+     * @return IDs of the Pokémon which lost their trainer
+     */
+    public List<Integer> deleteTrainer(int id) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> released = new ArrayList<>();
+            int row = trainerRow(id);
+            if (row < 0) return released;
+            for (int i = 0; i < pokemonCount; i++) {
+                if (ownerIds[i] == id) {
+                    ownerIds[i] = NO_TRAINER;
+                    released.add(pokemonIds[i]);
+                }
+            }
+            int tail = trainerCount - row - 1;
+            System.arraycopy(trainerIds, row + 1, trainerIds, row, tail);
+            System.arraycopy(trainerNames, row + 1, trainerNames, row, tail);
+            System.arraycopy(experience, row + 1, experience, row, tail);
+            System.arraycopy(gymLeaders, row + 1, gymLeaders, row, tail);
+            System.arraycopy(createdAt, row + 1, createdAt, row, tail);
+            System.arraycopy(ownedCounts, row + 1, ownedCounts, row, tail);
+            System.arraycopy(attackSums, row + 1, attackSums, row, tail);
+            trainerCount--;
+            trainerNames[trainerCount] = null;
+            return released;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes many trainers with one pass over the Pokémon and one compaction pass over the trainer columns
+     * @param changes Receives the removed trainers and the Pokémon which lost their trainer
+     * @return Number of removed trainers, unknown IDs are skipped
+     */
+    public int deleteTrainers(int[] ids, ChangeSet changes) {
+        lock.writeLock().lock();
+        try {
+            boolean[] remove = new boolean[trainerCount];
+            int removed = 0;
+            for (int id : ids) {
+                int row = trainerRow(id);
+                if (row < 0 || remove[row]) continue;
+                remove[row] = true;
+                removed++;
+                changes.trainer(id);
+            }
+            if (removed == 0) return 0;
+            for (int i = 0; i < pokemonCount; i++) {
+                int trainer = trainerRow(ownerIds[i]);
+                if (trainer >= 0 && remove[trainer]) {
+                    ownerIds[i] = NO_TRAINER;
+                    changes.pokemon(pokemonIds[i]);
+                }
+            }
+            compactTrainers(remove);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all trainers ordered by id
+     */
+    public List<Trainer> getTrainers() {
+        lock.readLock().lock();
+        try {
+            List<Trainer> trainers = new ArrayList<>(trainerCount);
+            for (int i = 0; i < trainerCount; i++) {
+                trainers.add(trainer(i));
+            }
+            return trainers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compares the maintained pokémon counts and attack sums with recomputed ones
+     * @return IDs of trainers whose aggregates differ
+     */
+    public List<Integer> verifyAggregates() {
+        lock.readLock().lock();
+        try {
+            int[] counts = new int[trainerCount];
+            long[] sums = new long[trainerCount];
+            recomputeAggregates(counts, sums);
+            List<Integer> mismatched = new ArrayList<>();
+            for (int i = 0; i < trainerCount; i++) {
+                if (counts[i] != ownedCounts[i] || sums[i] != attackSums[i]) mismatched.add(trainerIds[i]);
+            }
+            return mismatched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes all trainer aggregates
+     */
+    public void rebuildAggregates() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(ownedCounts, 0, trainerCount, 0);
+            Arrays.fill(attackSums, 0, trainerCount, 0);
+            recomputeAggregates(ownedCounts, attackSums);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- Types
+
+    /**
+     * Returns all types ordered by name
+     */
+    public List<Types> getTypes() {
+        lock.readLock().lock();
+        try {
+            List<Types> types = new ArrayList<>();
+            for (int id = 1; id < typeNames.length; id++) {
+                if (typeNames[id] != null) types.add(new Types(id, typeNames[id]));
+            }
+            types.sort((a, b) -> a.getTypeName().compareToIgnoreCase(b.getTypeName()));
+            return types;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a type under the lowest free id, ids of deleted types are used again so the mask bits never run out
+     * @return New ID
+     * @throws SQLException If the name exists already or no more types fit into the type mask
+     */
+    public int addType(String name) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            for (String existing : typeNames) {
+                if (existing != null && existing.toLowerCase(Locale.ROOT).equals(name.toLowerCase(Locale.ROOT))) {
+                    throw new SQLException("Duplicate entry '" + name + "' for key 'types.type_name'");
+                }
+            }
+            for (int id = 1; id < typeNames.length; id++) {
+                if (typeNames[id] == null) {
+                    typeNames[id] = name;
+                    return id;
+                }
+            }
+            throw new SQLException("All " + TypeDictionary.MAX_MASK_TYPE_ID + " type ids are in use, delete a type first.");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a type and clears it from every Pokémon
+     * @return IDs of the Pokémon which had the type
+     */
+    public List<Integer> deleteType(int id) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> changed = new ArrayList<>();
+            if (id < 1 || id >= typeNames.length || typeNames[id] == null) return changed;
+            typeNames[id] = null;
+            long bit = TypeDictionary.bit(id);
+            for (int i = 0; i < pokemonCount; i++) {
+                if ((typeMasks[i] & bit) != 0) {
+                    typeMasks[i] &= ~bit;
+                    pokemonVersions[i]++;
+                    changed.add(pokemonIds[i]);
+                }
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- Table snapshots
+
+    /**
+     * Snapshot with the columns of view_detailed_pokemons, Pokémon without a trainer are left out like in the view
+     */
+    public DefaultTableModel pokemonTable() {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>(pokemonCount);
+            for (int i = 0; i < pokemonCount; i++) {
+                int trainer = trainerRow(ownerIds[i]);
+                if (trainer < 0) continue;
+                rows.add(new Object[]{pokemonIds[i], nicknames[i], rarityName(rarities[i]), trainerNames[trainer],
+                        hp[i], attack[i], defense[i], typeNames(typeMasks[i])});
+            }
+            return table(rows, "id", "nickname", "rarity", "trainer_name", "hp", "attack", "defense", "types");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the Pokémon of the view_detailed_pokemons snapshot
+     * @return At most query.getLimit() matching Pokémon in the requested order
+     */
+    public List<PokemonDetails> findPokemons(PokemonQuery query) {
+        lock.readLock().lock();
+        try {
+            String prefix = query.getNicknamePrefix();
+            long typeBit = query.getTypeId() == null ? 0 : TypeDictionary.bit(query.getTypeId());
+            List<Integer> rows = new ArrayList<>();
+            for (int i = 0; i < pokemonCount; i++) {
+                if (trainerRow(ownerIds[i]) < 0) continue;
+                if (prefix != null && (nicknames[i] == null || !nicknames[i].regionMatches(true, 0, prefix, 0, prefix.length()))) continue;
+                if (query.getRarity() != null && !query.getRarity().equalsIgnoreCase(rarityName(rarities[i]))) continue;
+                if (query.getTrainerId() != null && ownerIds[i] != query.getTrainerId()) continue;
+                if (typeBit != 0 && (typeMasks[i] & typeBit) == 0) continue;
+                if (!inRange(hp[i], query.getMinHp(), query.getMaxHp())) continue;
+                if (!inRange(attack[i], query.getMinAttack(), query.getMaxAttack())) continue;
+                if (!inRange(defense[i], query.getMinDefense(), query.getMaxDefense())) continue;
+                rows.add(i);
+            }
+            Comparator<Integer> order = Comparator.comparingInt(row -> pokemonIds[row]);
+            switch (query.getSort()) {
+                case NICKNAME:
+                    order = Comparator.<Integer, String>comparing(row -> nicknames[row],
+                            Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)).thenComparing(order);
+                    break;
+                case HP:
+                    order = Comparator.<Integer>comparingInt(row -> hp[row]).thenComparing(order);
+                    break;
+                case ATTACK:
+                    order = Comparator.<Integer>comparingInt(row -> attack[row]).thenComparing(order);
+                    break;
+                case DEFENSE:
+                    order = Comparator.<Integer>comparingInt(row -> defense[row]).thenComparing(order);
+                    break;
+                default:
+                    break;
+            }
+            rows.sort(query.isAscending() ? order : order.reversed());
+
+            List<PokemonDetails> found = new ArrayList<>(Math.min(rows.size(), query.getLimit()));
+            for (int row : rows.subList(0, Math.min(rows.size(), query.getLimit()))) {
+                found.add(details(row));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes ID and nickname of Pokémon to a name index
+     * @param ids IDs to read or null for all Pokémon, unknown IDs and Pokémon without nickname are skipped
+     */
+    public void scanNicknames(Collection<Integer> ids, NameIndex.Sink sink) {
+        lock.readLock().lock();
+        try {
+            if (ids == null) {
+                for (int i = 0; i < pokemonCount; i++) {
+                    if (nicknames[i] != null) sink.add(pokemonIds[i], nicknames[i]);
+                }
+            } else {
+                for (int id : ids) {
+                    int row = pokemonRow(id);
+                    if (row >= 0 && nicknames[row] != null) sink.add(id, nicknames[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes ID and name of trainers to a name index
+     * @param ids IDs to read or null for all trainers, unknown IDs are skipped
+     */
+    public void scanTrainerNames(Collection<Integer> ids, NameIndex.Sink sink) {
+        lock.readLock().lock();
+        try {
+            if (ids == null) {
+                for (int i = 0; i < trainerCount; i++) {
+                    if (trainerNames[i] != null) sink.add(trainerIds[i], trainerNames[i]);
+                }
+            } else {
+                for (int id : ids) {
+                    int row = trainerRow(id);
+                    if (row >= 0 && trainerNames[row] != null) sink.add(id, trainerNames[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot with the columns of view_trainer_performance
+     */
+    public DefaultTableModel trainerTable() {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>(trainerCount);
+            for (int i = 0; i < trainerCount; i++) {
+                double average = ownedCounts[i] == 0 ? 0 : (double) attackSums[i] / ownedCounts[i];
+                rows.add(new Object[]{trainerIds[i], trainerNames[i], gymLeaders[i], new Timestamp(createdAt[i]),
+                        (long) ownedCounts[i], average});
+            }
+            return table(rows, "id", "name", "is_gym_leader", "start_of_journey", "count_of_pokemon", "average_attack");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot with the columns of the types table
+     */
+    public DefaultTableModel typeTable() {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            for (int id = 1; id < typeNames.length; id++) {
+                if (typeNames[id] != null) rows.add(new Object[]{id, typeNames[id]});
+            }
+            return table(rows, "id", "type_name");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the stats with owner, rarity and types into analytics columns
+     */
+    public StatColumns statColumns() {
+        lock.readLock().lock();
+        try {
+            StatColumns columns = new StatColumns(pokemonCount);
+            for (int i = 0; i < pokemonCount; i++) {
+                columns.add(pokemonIds[i], ownerIds[i], rarities[i], typeMasks[i], hp[i], attack[i], defense[i]);
+            }
+            return columns;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot with the columns of the pokemon_types table, one numbered row per bit of the type masks
+     */
+    public DefaultTableModel linkTable() {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < pokemonCount; i++) {
+                for (long bits = typeMasks[i]; bits != 0; bits &= bits - 1) {
+                    rows.add(new Object[]{rows.size() + 1, pokemonIds[i], Long.numberOfTrailingZeros(bits) + 1});
+                }
+            }
+            return table(rows, "id", "pokemon_id", "type_id");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- Internals, callers hold the lock
+
+    private int appendPokemon(int trainerId, int trainerRow, String nickname, byte rarityCode,
+                              int hpValue, int attackValue, int defenseValue, long typeMask) {
+        if (pokemonCount == pokemonIds.length) growPokemons();
+        int row = pokemonCount++;
+        int id = nextPokemonId++;
+        pokemonIds[row] = id;
+        ownerIds[row] = trainerId;
+        nicknames[row] = nickname;
+        rarities[row] = rarityCode;
+        hp[row] = hpValue;
+        attack[row] = attackValue;
+        defense[row] = defenseValue;
+        typeMasks[row] = typeMask;
+        pokemonVersions[row] = 0;
+        ownedCounts[trainerRow]++;
+        attackSums[trainerRow] += attackValue;
+        return id;
+    }
+
+    private int appendTrainer(String name, float xp, boolean gymLeader) {
+        if (trainerCount == trainerIds.length) growTrainers();
+        int row = trainerCount++;
+        int id = nextTrainerId++;
+        trainerIds[row] = id;
+        trainerNames[row] = name;
+        experience[row] = xp;
+        gymLeaders[row] = gymLeader;
+        createdAt[row] = System.currentTimeMillis();
+        ownedCounts[row] = 0;
+        attackSums[row] = 0;
+        trainerVersions[row] = 0;
+        return id;
+    }
+
+    private void compactPokemons(boolean[] remove) {
+        int target = 0;
+        for (int row = 0; row < pokemonCount; row++) {
+            if (remove[row]) continue;
+            if (target != row) {
+                pokemonIds[target] = pokemonIds[row];
+                ownerIds[target] = ownerIds[row];
+                nicknames[target] = nicknames[row];
+                rarities[target] = rarities[row];
+                hp[target] = hp[row];
+                attack[target] = attack[row];
+                defense[target] = defense[row];
+                typeMasks[target] = typeMasks[row];
+                pokemonVersions[target] = pokemonVersions[row];
+            }
+            target++;
+        }
+        Arrays.fill(nicknames, target, pokemonCount, null);
+        pokemonCount = target;
+    }
+
+    private void compactTrainers(boolean[] remove) {
+        int target = 0;
+        for (int row = 0; row < trainerCount; row++) {
+            if (remove[row]) continue;
+            if (target != row) {
+                trainerIds[target] = trainerIds[row];
+                trainerNames[target] = trainerNames[row];
+                experience[target] = experience[row];
+                gymLeaders[target] = gymLeaders[row];
+                createdAt[target] = createdAt[row];
+                ownedCounts[target] = ownedCounts[row];
+                attackSums[target] = attackSums[row];
+                trainerVersions[target] = trainerVersions[row];
+            }
+            target++;
+        }
+        Arrays.fill(trainerNames, target, trainerCount, null);
+        trainerCount = target;
+    }
+
+    private void growPokemons() {
+        int capacity = pokemonIds.length * 2;
+        pokemonIds = Arrays.copyOf(pokemonIds, capacity);
+        ownerIds = Arrays.copyOf(ownerIds, capacity);
+        nicknames = Arrays.copyOf(nicknames, capacity);
+        rarities = Arrays.copyOf(rarities, capacity);
+        hp = Arrays.copyOf(hp, capacity);
+        attack = Arrays.copyOf(attack, capacity);
+        defense = Arrays.copyOf(defense, capacity);
+        typeMasks = Arrays.copyOf(typeMasks, capacity);
+        pokemonVersions = Arrays.copyOf(pokemonVersions, capacity);
+    }
+
+    private void growTrainers() {
+        int capacity = trainerIds.length * 2;
+        trainerIds = Arrays.copyOf(trainerIds, capacity);
+        trainerNames = Arrays.copyOf(trainerNames, capacity);
+        experience = Arrays.copyOf(experience, capacity);
+        gymLeaders = Arrays.copyOf(gymLeaders, capacity);
+        createdAt = Arrays.copyOf(createdAt, capacity);
+        ownedCounts = Arrays.copyOf(ownedCounts, capacity);
+        attackSums = Arrays.copyOf(attackSums, capacity);
+        trainerVersions = Arrays.copyOf(trainerVersions, capacity);
+    }
+
+    private void recomputeAggregates(int[] counts, long[] sums) {
+        for (int i = 0; i < pokemonCount; i++) {
+            int trainer = trainerRow(ownerIds[i]);
+            if (trainer < 0) continue;
+            counts[trainer]++;
+            sums[trainer] += attack[i];
+        }
+    }
+
+    private int pokemonRow(int id) {
+        int row = Arrays.binarySearch(pokemonIds, 0, pokemonCount, id);
+        return row < 0 ? -1 : row;
+    }
+
+    private int trainerRow(int id) {
+        if (id == NO_TRAINER) return -1;
+        int row = Arrays.binarySearch(trainerIds, 0, trainerCount, id);
+        return row < 0 ? -1 : row;
+    }
+
+    private int requireTrainer(int id) throws SQLException {
+        int row = trainerRow(id);
+        if (row < 0) throw new SQLException("Cannot add the Pokémon: trainer " + id + " does not exist.");
+        return row;
+    }
+
+    private void requireType(int id) throws SQLException {
+        if (id < 1 || id >= typeNames.length || typeNames[id] == null) {
+            throw new SQLException("Type " + id + " does not exist.");
+        }
+    }
+
+    private void requireTypes(long mask) throws SQLException {
+        for (long bits = mask; bits != 0; bits &= bits - 1) requireType(Long.numberOfTrailingZeros(bits) + 1);
+    }
+
+    private static boolean inRange(int value, Integer min, Integer max) {
+        return (min == null || value >= min) && (max == null || value <= max);
+    }
+
+    private Trainer trainer(int row) {
+        return new Trainer(trainerIds[row], trainerNames[row], experience[row], gymLeaders[row], trainerVersions[row]);
+    }
+
+    private PokemonDetails details(int row) {
+        int trainer = trainerRow(ownerIds[row]);
+        return new PokemonDetails(pokemonIds[row], nicknames[row], rarityName(rarities[row]),
+                trainer < 0 ? null : trainerNames[trainer], hp[row], attack[row], defense[row], typeMasks[row],
+                pokemonVersions[row]);
+    }
+
+    private Integer owner(int row) {
+        return ownerIds[row] == NO_TRAINER ? null : ownerIds[row];
+    }
+
+    private String typeNames(long mask) {
+        StringBuilder names = new StringBuilder();
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            if (names.length() > 0) names.append(", ");
+            names.append(typeNames[Long.numberOfTrailingZeros(bits) + 1]);
+        }
+        return names.length() == 0 ? null : names.toString();
+    }
+
+    /**
+     * Rarity name of a code, Pokémon copied from a snapshot may have none like in the pokemons table
+     */
+    private static String rarityName(byte code) {
+        return code < 0 ? null : RARITIES[code];
+    }
+
+    private static byte rarityCode(String rarity) throws SQLException {
+        for (byte i = 0; i < RARITIES.length; i++) {
+            if (RARITIES[i].equalsIgnoreCase(rarity == null ? "" : rarity.trim())) return i;
+        }
+        throw new SQLException("Data truncated for column 'rarity': " + rarity);
+    }
+
+    private static DefaultTableModel table(List<Object[]> rows, String... columns) {
+        return new DefaultTableModel(rows.toArray(new Object[0][]), columns);
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Implementation of the TrainerRepository interface backed by an InMemoryStore
+ * Used as offline mode and as a baseline without database round trips
+ */
+public class InMemoryTrainerRepository implements TrainerRepository {
+
+    private final InMemoryStore store;
+
+    public InMemoryTrainerRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Retrieves all trainers in the store
+     * @return List of all trainers
+     */
+    @Override
+    public List<Trainer> getAllTrainers() {
+        return store.getTrainers();
+    }
+
+    /**
+     * Adds a new trainer to the store
+     * @param name Name
+     * @param xp Xp points
+     * @param isLeader If trainer is gym leader
+     */
+    @Override
+    public void addTrainer(String name, float xp, boolean isLeader) {
+        int id = store.addTrainer(name, xp, isLeader);
+        ChangeBus.getInstance().publish(new ChangeSet().trainer(id));
+    }
+
+    /**
+     * Passes the trainer names to a name index
+     * @param ids IDs to read or null for all trainers
+     * @param sink Receives ID and name
+     */
+    @Override
+    public void scanTrainerNames(Collection<Integer> ids, NameIndex.Sink sink) {
+        store.scanTrainerNames(ids, sink);
+    }
+
+    /**
+     * Returns one trainer with its version
+     * @param id ID of the trainer
+     * @return Trainer or null if it does not exist
+     */
+    @Override
+    public Trainer findTrainer(int id) {
+        return store.findTrainer(id);
+    }
+
+    /**
+     * Updates trainer data
+     * @param id ID of the trainer we want to update
+     * @param name Name we want to set
+     * @param xp XP we want to set
+     * @param isGymLeader If trainer is gym leader
+     */
+    @Override
+    public void updateTrainer(int id, String name, float xp, boolean isGymLeader) {
+        if (store.updateTrainer(id, name, xp, isGymLeader)) {
+            ChangeBus.getInstance().publish(new ChangeSet().trainer(id));
+        }
+    }
+
+    /**
+     * Updates trainer data if the trainer still has the expected version
+     * @param id ID of the trainer we want to update
+     * @param expectedVersion Version the trainer had when it was read
+     * @param name Name we want to set
+     * @param xp XP we want to set
+     * @param isGymLeader If trainer is gym leader
+     * @return UPDATED with the new version, CONFLICT with the stored trainer or DELETED
+     */
+    @Override
+    public UpdateResult<Trainer> updateTrainerIfUnchanged(int id, int expectedVersion, String name, float xp, boolean isGymLeader) {
+        UpdateResult<Trainer> result = store.updateTrainerIfUnchanged(id, expectedVersion, name, xp, isGymLeader);
+        if (result.getStatus() == UpdateResult.Status.UPDATED) ChangeBus.getInstance().publish(new ChangeSet().trainer(id));
+        return result;
+    }
+
+    /**
+     * Updates many trainers at once
+     * @param trainers New trainer data, unknown IDs are skipped
+     * @throws SQLException If a trainer with a version has another one, nothing is changed then
+     */
+    @Override
+    public void applyTrainerUpdates(List<Trainer> trainers) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        store.updateTrainers(trainers, changes);
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Removes a trainer, its Pokémon stay without a trainer
+     * @param id ID of the trainer we want to delete
+     */
+    @Override
+    public void deleteTrainer(int id) {
+        List<Integer> released = store.deleteTrainer(id);
+        ChangeBus.getInstance().publish(new ChangeSet().trainer(id).pokemons(released));
+    }
+
+    /**
+     * Removes many trainers at once, their Pokémon stay without a trainer
+     * @param ids IDs of the trainers we want to delete, unknown IDs are skipped
+     * @return Number of deleted trainers
+     */
+    @Override
+    public int deleteTrainers(int[] ids) {
+        ChangeSet changes = new ChangeSet();
+        int deleted = store.deleteTrainers(ids, changes);
+        ChangeBus.getInstance().publish(changes);
+        return deleted;
+    }
+
+    /**
+     * Imports the trainers from CSV file through TrainerImportPipeline, both modes behave the same
+     * @param filePath Path to the CSV file
+     * @param mode Import method, ignored
+     * @param listener Receives progress after every batch, may be null
+     * @return Number of imported rows and throughput
+     * @throws SQLException If the file cannot be read or contains invalid data
+     */
+    @Override
+    public ImportResult importTrainersFromCSV(String filePath, ImportMode mode, ImportProgressListener listener) throws SQLException {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            throw new SQLException("The trainer file is empty or does not exist.");
+        }
+        int batchSize = Math.max(1, DatabaseConfig.getInstance().getIntProperty("import.batchSize", 1000));
+        return new TrainerImportPipeline(file.toPath(), batchSize).run(store::addTrainers, listener);
+    }
+
+    /**
+     * Compares the maintained trainer aggregates with the Pokémon columns
+     * @return IDs of trainers whose aggregates are out of date
+     */
+    @Override
+    public List<Integer> verifyAggregates() {
+        return store.verifyAggregates();
+    }
+
+    /**
+     * Recomputes all trainer aggregates
+     */
+    @Override
+    public void rebuildAggregates() {
+        store.rebuildAggregates();
+        ChangeSet changes = new ChangeSet();
+        for (Trainer t : store.getTrainers()) changes.trainer(t.getId());
+        ChangeBus.getInstance().publish(changes);
+    }
+}
@@ -0,0 +1,46 @@
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Implementation of the TypeRepository interface backed by an InMemoryStore
+ */
+public class InMemoryTypeRepository implements TypeRepository {
+
+    private final InMemoryStore store;
+
+    public InMemoryTypeRepository(InMemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Retrieves all types in the store
+     * @return List of all types ordered by name
+     */
+    @Override
+    public List<Types> getAllTypes() {
+        return store.getTypes();
+    }
+
+    /**
+     * Adds a new type
+     * @param typeName Name
+     * @throws SQLException If the type exists already or no more types fit into the type mask
+     */
+    @Override
+    public void addType(String typeName) throws SQLException {
+        int id = store.addType(typeName);
+        TypeDictionary.typeAdded(new Types(id, typeName));
+        ChangeBus.getInstance().publish(new ChangeSet().type(id));
+    }
+
+    /**
+     * Removes a type and clears it from every Pokémon
+     * @param id ID of the type we want to delete
+     */
+    @Override
+    public void deleteType(int id) {
+        List<Integer> changed = store.deleteType(id);
+        TypeDictionary.typeDeleted(id);
+        ChangeBus.getInstance().publish(new ChangeSet().type(id).pokemons(changed));
+    }
+}
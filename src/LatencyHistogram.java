@@ -0,0 +1,90 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets
+ * Every power of two is split into 8 buckets, so a percentile is off by at most 12.5%.
+ * Recording is a few atomic increments without allocation and can run on any thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - 4 + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one call
+     * @param nanos Duration of the call
+     * @param failed If the call ended with an exception
+     */
+    public void record(long nanos, boolean failed) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucketOf(nanos));
+        totalNanos.add(nanos);
+        if (failed) errors.increment();
+        if (nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Copies the counters, calls recorded meanwhile may be partly included
+     * @param name Metric name
+     * @return Snapshot with percentiles in milliseconds
+     */
+    public Metrics.MetricStats snapshot(String name) {
+        long[] counts = new long[BUCKETS];
+        long calls = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            calls += counts[i];
+        }
+        long max = maxNanos.get();
+        return new Metrics.MetricStats(name, calls, errors.sum(),
+                calls == 0 ? 0 : totalNanos.sum() / (double) calls / 1_000_000.0,
+                percentile(counts, calls, 0.50, max) / 1_000_000.0,
+                percentile(counts, calls, 0.99, max) / 1_000_000.0,
+                max / 1_000_000.0);
+    }
+
+    /**
+     * Clears all counters
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    private static long percentile(long[] counts, long calls, double quantile, long max) {
+        if (calls == 0) return 0;
+        long rank = (long) Math.ceil(quantile * calls);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < LINEAR_LIMIT) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) return bucket;
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width - 1;
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton registry of latency histograms, one per named operation
+ * like "PokemonRepository.catchNewPokemon" or "ConnectionPool.borrow"
+ */
+public class Metrics {
+
+    private static final Metrics instance = new Metrics();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the single instance of the registry
+     * @return Instance of the registry
+     */
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Records one call of an operation
+     * @param name Operation name
+     * @param nanos Duration of the call
+     * @param failed If the call ended with an exception
+     */
+    public void record(String name, long nanos, boolean failed) {
+        histogram(name).record(nanos, failed);
+    }
+
+    /**
+     * Returns the histogram of an operation, hot callers can keep it to skip the lookup
+     * @param name Operation name
+     * @return Histogram, created on first use
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        return histogram != null ? histogram : histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns the statistics of all recorded operations
+     * @return Statistics sorted by operation name
+     */
+    public List<MetricStats> getStats() {
+        List<MetricStats> stats = new ArrayList<>();
+        histograms.forEach((name, histogram) -> stats.add(histogram.snapshot(name)));
+        stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return stats;
+    }
+
+    /**
+     * Clears all counters, the operations stay registered
+     */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Writes the operation statistics and the given extra lines as a text report
+     * @param file Target file, overwritten if it exists
+     * @param extra Additional lines like pool statistics
+     * @throws IOException If the file cannot be written
+     */
+    public void dump(Path file, List<String> extra) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("# Pokémon Database Manager metrics " + LocalDateTime.now());
+            for (String line : extra) out.println("# " + line);
+            out.println("operation,calls,errors,mean_ms,p50_ms,p99_ms,max_ms");
+            for (MetricStats s : getStats()) {
+                out.printf(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f%n",
+                        s.getName(), s.getCalls(), s.getErrors(), s.getMeanMillis(),
+                        s.getP50Millis(), s.getP99Millis(), s.getMaxMillis());
+            }
+        }
+    }
+
+    /**
+     * Statistics of one operation, latencies in milliseconds
+     * Percentiles are bucket upper bounds and are accurate to about 12.5%
+     */
+    public static class MetricStats {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        public MetricStats(String name, long calls, long errors, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+            this.name = name;
+            this.calls = calls;
+            this.errors = errors;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s calls=%d errors=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                    name, calls, errors, meanMillis, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dynamic proxy timing every call of a repository interface
+ * Each method is recorded in Metrics as "Interface.method", calls ending with an exception count as errors
+ */
+public class MetricsProxy implements InvocationHandler {
+
+    private final Object target;
+    private final String prefix;
+    private final Map<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private MetricsProxy(Object target, String prefix) {
+        this.target = target;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Wraps an implementation so that its calls are recorded
+     * @param type Interface to expose
+     * @param target Implementation receiving the calls
+     * @return Proxy implementing the interface
+     */
+    public static <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new MetricsProxy(target, type.getSimpleName() + ".")));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "Timed" + target;
+            }
+        }
+        LatencyHistogram histogram = histograms.computeIfAbsent(method,
+                m -> Metrics.getInstance().histogram(prefix + m.getName()));
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = method.invoke(target, args);
+            failed = false;
+            return result;
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            histogram.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -2,7 +2,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Implementation of the PokemonRepository interface using MySQL as the data store (Repository pattern)
@@ -21,115 +30,707 @@ public class MySQLPokemonRepository implements PokemonRepository {
      */
     @Override
     public int catchNewPokemon(Pokemon p, int hp, int attack, int defense) throws SQLException {
-        Connection conn = DatabaseConfig.getInstance().getConnection();
+        return catchNewPokemon(p, hp, attack, defense, List.of());
+    }
+
+    /**
+     * Inserts new Pokémon with its stats, type links and type mask within a single transaction,
+     * the type links are written with one batch
+     * @param p Model containing trainer ID, nickname, and rarity
+     * @param hp HP value
+     * @param attack Attack value
+     * @param defense Defense value
+     * @param typeIds IDs of the types, duplicates are ignored
+     * @return New ID
+     * @throws SQLException If the query execution fails or a type does not exist, nothing is inserted then
+     */
+    @Override
+    public int catchNewPokemon(Pokemon p, int hp, int attack, int defense, List<Integer> typeIds) throws SQLException {
+        long mask = typeMask(typeIds);
         int newId = 0;
-        try {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
             conn.setAutoCommit(false);
+            try {
+                String pokemonSql = "INSERT INTO pokemons (trainer_id, nickname, rarity, type_mask) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement pStmt = conn.prepareStatement(pokemonSql, Statement.RETURN_GENERATED_KEYS)) {
+                    pStmt.setInt(1, p.getTrainerId());
+                    pStmt.setString(2, p.getNickname());
+                    pStmt.setString(3, p.getRarity());
+                    pStmt.setLong(4, mask);
+                    pStmt.executeUpdate();
 
-            String pokemonSql = "INSERT INTO pokemons (trainer_id, nickname, rarity) VALUES (?, ?, ?)";
-            try (PreparedStatement pStmt = conn.prepareStatement(pokemonSql, Statement.RETURN_GENERATED_KEYS)) {
-                pStmt.setInt(1, p.getTrainerId());
-                pStmt.setString(2, p.getNickname());
-                pStmt.setString(3, p.getRarity());
-                pStmt.executeUpdate();
+                    try (ResultSet rs = pStmt.getGeneratedKeys()) {
+                        if (rs.next()) newId = rs.getInt(1);
+                    }
+                }
 
-                ResultSet rs = pStmt.getGeneratedKeys();
-                if (rs.next()) newId = rs.getInt(1);
-            }
+                String statsSql = "INSERT INTO pokemon_stats (pokemon_id, hp, attack, defense) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement sStmt = conn.prepareStatement(statsSql)) {
+                    sStmt.setInt(1, newId);
+                    sStmt.setInt(2, hp);
+                    sStmt.setInt(3, attack);
+                    sStmt.setInt(4, defense);
+                    sStmt.executeUpdate();
+                }
 
-            String statsSql = "INSERT INTO pokemon_stats (pokemon_id, hp, attack, defense) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement sStmt = conn.prepareStatement(statsSql)) {
-                sStmt.setInt(1, newId);
-                sStmt.setInt(2, hp);
-                sStmt.setInt(3, attack);
-                sStmt.setInt(4, defense);
-                sStmt.executeUpdate();
+                if (mask != 0) {
+                    try (PreparedStatement tStmt = conn.prepareStatement("INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)")) {
+                        addTypeLinks(tStmt, newId, mask);
+                        tStmt.executeBatch();
+                    }
+                }
+
+                TrainerAggregates.adjust(conn, p.getTrainerId(), 1, attack);
+                ChangeSet changes = new ChangeSet().pokemon(newId).trainer(p.getTrainerId());
+                ChangeLog.record(conn, changes);
+                conn.commit();
+                ChangeBus.getInstance().publish(changes);
+                return newId;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
+        }
+    }
 
-            conn.commit();
-            return newId;
-        } catch (SQLException e) {
-            conn.rollback();
-            throw e;
-        } finally {
-            conn.setAutoCommit(true);
+    /**
+     * Builds the type mask of the given types
+     * @param typeIds Type IDs
+     * @return Combined mask
+     * @throws SQLException If an id does not fit into the mask
+     */
+    static long typeMask(List<Integer> typeIds) throws SQLException {
+        try {
+            return TypeDictionary.mask(typeIds.toArray(new Integer[0]));
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e.getMessage(), e);
         }
     }
 
     /**
-     * Add type to pokémon
+     * Adds one pokemon_types row per bit of the mask to the batch of the statement
+     * @param ps Statement "INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)"
+     * @param pokemonId ID of the pokémon
+     * @param mask Type mask
+     * @throws SQLException If binding fails
+     */
+    private static void addTypeLinks(PreparedStatement ps, int pokemonId, long mask) throws SQLException {
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            ps.setInt(1, pokemonId);
+            ps.setInt(2, Long.numberOfTrailingZeros(bits) + 1);
+            ps.addBatch();
+        }
+    }
+
+    /**
+     * Add type to pokémon and sets its bit in the type mask
      * @param pokemonId ID of the pokémon
      * @param typeId ID of the type we want to assign
-     * @throws SQLException If the query execution fails
+     * @throws SQLException If the query execution fails or the type id does not fit into the mask
      */
     @Override
     public void addTypeToPokemon(int pokemonId, int typeId) throws SQLException {
         String sql = "INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)";
+        String maskSql = "UPDATE pokemons SET type_mask = type_mask | ?, version = version + 1 WHERE id = ?";
+        long bit = typeMask(List.of(typeId));
+        ChangeSet changes = new ChangeSet().pokemon(pokemonId);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 PreparedStatement maskPs = conn.prepareStatement(maskSql)) {
+                pstmt.setInt(1, pokemonId);
+                pstmt.setInt(2, typeId);
+                pstmt.executeUpdate();
+
+                maskPs.setLong(1, bit);
+                maskPs.setInt(2, pokemonId);
+                maskPs.executeUpdate();
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Finds the Pokémon having at least one of the types through the (type_id, pokemon_id) key of pokemon_types
+     * @param typeIds IDs of the wanted types
+     * @return IDs of the matching pokémon in ascending order
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public List<Integer> findPokemonIdsWithAnyType(int... typeIds) throws SQLException {
+        Set<Integer> wanted = new TreeSet<>();
+        for (int typeId : typeIds) wanted.add(typeId);
+        List<Integer> ids = new ArrayList<>();
+        if (wanted.isEmpty()) return ids;
+
+        String sql = "SELECT DISTINCT pokemon_id FROM pokemon_types WHERE type_id IN " + SqlUtils.inList(wanted.size())
+                + " ORDER BY pokemon_id";
         try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, pokemonId);
-            pstmt.setInt(2, typeId);
-            pstmt.executeUpdate();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlUtils.bindInts(ps, 1, wanted);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
         }
+        return ids;
     }
 
     /**
-     * Removes a Pokémon  from the database
+     * Streams the pokémon nicknames to a name index
+     * All rows are read with one streaming query (fetch size Integer.MIN_VALUE), so they are never held by the driver
+     * @param ids IDs to read, at most SqlUtils.MAX_IN_LIST, or null for all pokémon
+     * @param sink Receives ID and nickname, rows without one are skipped
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public void scanNicknames(Collection<Integer> ids, NameIndex.Sink sink) throws SQLException {
+        String sql = "SELECT id, nickname FROM pokemons WHERE nickname IS NOT NULL";
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            if (ids == null) {
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        while (rs.next()) sink.add(rs.getInt(1), rs.getString(2));
+                    }
+                }
+            } else if (!ids.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sql + " AND id IN " + SqlUtils.inList(ids.size()))) {
+                    SqlUtils.bindInts(ps, 1, ids);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) sink.add(rs.getInt(1), rs.getString(2));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the stats of all pokémon with their trainer, rarity and types into column arrays
+     * The rows are read with one streaming query (fetch size Integer.MIN_VALUE) straight into the columns
+     * @return Loaded columns
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public StatColumns loadStatColumns() throws SQLException {
+        String sql = "SELECT p.id, p.trainer_id, p.rarity, p.type_mask, ps.hp, ps.attack, ps.defense"
+                + " FROM pokemons p JOIN pokemon_stats ps ON ps.pokemon_id = p.id";
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            StatColumns columns = new StatColumns(countRows(conn, "SELECT COUNT(*) FROM pokemon_stats"));
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        columns.add(rs.getInt(1), rs.getInt(2), StatColumns.rarityCode(rs.getString(3)), rs.getLong(4),
+                                rs.getInt(5), rs.getInt(6), rs.getInt(7));
+                    }
+                }
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Runs a count query
+     * @param conn Connection to use
+     * @param sql Query returning one number
+     * @return Number or 0 if the query returns no row
+     * @throws SQLException If the query execution fails
+     */
+    private static int countRows(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Searches the Pokémon shown in view_detailed_pokemons
+     * The query reads the view's tables directly so the criteria can use the indexes of bin/db_export.sql:
+     * nickname and (rarity, nickname) for the name prefix, (trainer_id, rarity) for the trainer,
+     * (type_id, pokemon_id) on pokemon_types for the type and (stat, pokemon_id) for the stat ranges and sorting
+     * @param query Search criteria
+     * @return At most query.getLimit() matching pokémon in the requested order
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public List<PokemonDetails> findPokemons(PokemonQuery query) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT p.id, p.nickname, p.rarity, t.name, ps.hp, ps.attack, ps.defense, p.type_mask, p.version"
+                + " FROM pokemons p JOIN trainers t ON p.trainer_id = t.id JOIN pokemon_stats ps ON p.id = ps.pokemon_id WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (query.getNicknamePrefix() != null) {
+            sql.append(" AND p.nickname LIKE ?");
+            params.add(SqlUtils.escapeLike(query.getNicknamePrefix()) + "%");
+        }
+        if (query.getRarity() != null) {
+            sql.append(" AND p.rarity = ?");
+            params.add(query.getRarity());
+        }
+        if (query.getTrainerId() != null) {
+            sql.append(" AND p.trainer_id = ?");
+            params.add(query.getTrainerId());
+        }
+        if (query.getTypeId() != null) {
+            sql.append(" AND p.id IN (SELECT pt.pokemon_id FROM pokemon_types pt WHERE pt.type_id = ?)");
+            params.add(query.getTypeId());
+        }
+        appendRange(sql, params, "ps.hp", query.getMinHp(), query.getMaxHp());
+        appendRange(sql, params, "ps.attack", query.getMinAttack(), query.getMaxAttack());
+        appendRange(sql, params, "ps.defense", query.getMinDefense(), query.getMaxDefense());
+        String direction = query.isAscending() ? " ASC" : " DESC";
+        sql.append(" ORDER BY ");
+        if (query.getSort() != PokemonQuery.Sort.ID) sql.append(query.getSort().getColumn()).append(direction).append(", ");
+        sql.append("p.id").append(direction);
+        sql.append(" LIMIT ?");
+        params.add(query.getLimit());
+
+        List<PokemonDetails> found = new ArrayList<>();
+        try (Connection conn = DatabaseConfig.getInstance().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) found.add(details(rs));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reads one Pokémon with its trainer name, stats, types and version straight from the tables
+     * @param id ID of the pokémon
+     * @return Pokémon or null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public PokemonDetails findPokemon(int id) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            return findPokemon(conn, id);
+        }
+    }
+
+    /**
+     * Reads one Pokémon over an open connection, inside a transaction it sees the changes of that transaction
+     * @param conn Open connection
+     * @param id ID of the pokémon
+     * @return Pokémon or null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    private PokemonDetails findPokemon(Connection conn, int id) throws SQLException {
+        String sql = "SELECT p.id, p.nickname, p.rarity, t.name, ps.hp, ps.attack, ps.defense, p.type_mask, p.version"
+                + " FROM pokemons p LEFT JOIN trainers t ON p.trainer_id = t.id LEFT JOIN pokemon_stats ps ON p.id = ps.pokemon_id"
+                + " WHERE p.id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? details(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Builds a Pokémon from a row with the columns id, nickname, rarity, trainer name, hp, attack, defense, type_mask, version
+     * @param rs Result set on the row
+     * @return Pokémon
+     * @throws SQLException If a column can't be read
+     */
+    private static PokemonDetails details(ResultSet rs) throws SQLException {
+        return new PokemonDetails(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getLong(8), rs.getInt(9));
+    }
+
+    /**
+     * Adds an inclusive range condition, null bounds are left out
+     */
+    private static void appendRange(StringBuilder sql, List<Object> params, String column, Integer min, Integer max) {
+        if (min != null) {
+            sql.append(" AND ").append(column).append(" >= ?");
+            params.add(min);
+        }
+        if (max != null) {
+            sql.append(" AND ").append(column).append(" <= ?");
+            params.add(max);
+        }
+    }
+
+    /**
+     * Removes a Pokémon  from the database and subtracts it from the trainer aggregates
      * @param id ID of the pokémon we want to remove
      * @throws SQLException If the query execution fails
      */
     @Override
     public void deletePokemon(int id) throws SQLException {
         String sql = "DELETE FROM pokemons WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                Owner owner = lockOwner(conn, id);
+                pstmt.setInt(1, id);
+                int deleted = pstmt.executeUpdate();
+                if (deleted > 0 && owner != null) TrainerAggregates.adjust(conn, owner.trainerId, -1, -owner.attack);
+                ChangeSet changes = new ChangeSet().pokemon(id).trainer(owner == null ? null : owner.trainerId);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+                ChangeBus.getInstance().publish(changes);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Removes many Pokémon in one transaction with one DELETE per chunk of SqlUtils.MAX_IN_LIST IDs
+     * and subtracts them from the trainer aggregates. IDs are processed in ascending order,
+     * so concurrent bulk operations lock rows in the same order.
+     * @param ids IDs of the pokémon we want to remove, unknown IDs are skipped
+     * @return Number of removed pokémon
+     * @throws SQLException If the query execution fails, nothing is removed then
+     */
+    @Override
+    public int deletePokemons(int[] ids) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        int deleted = 0;
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, long[]> deltas = new HashMap<>();
+                for (List<Integer> chunk : SqlUtils.chunks(ids)) {
+                    lockOwners(conn, chunk, changes, deltas, -1, null);
+                    try (PreparedStatement ps = conn.prepareStatement("DELETE FROM pokemons WHERE id IN " + SqlUtils.inList(chunk.size()))) {
+                        SqlUtils.bindInts(ps, 1, chunk);
+                        deleted += ps.executeUpdate();
+                    }
+                }
+                TrainerAggregates.adjustAll(conn, deltas);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+        return deleted;
+    }
+
+    /**
+     * Sets rarity and stats of many Pokémon in one transaction with one UPDATE per table and chunk
+     * A null value keeps the current one, the trainer aggregates follow a changed attack.
+     * @param ids IDs of the pokémon we want to update, unknown IDs are skipped
+     * @param rarity Rarity we want to set or null
+     * @param hp HP we want to set or null
+     * @param attack Attack we want to set or null
+     * @param defense Defense we want to set or null
+     * @return Number of existing pokémon among the IDs
+     * @throws SQLException If the query execution fails, nothing is changed then
+     */
+    @Override
+    public int updatePokemons(int[] ids, String rarity, Integer hp, Integer attack, Integer defense) throws SQLException {
+        if (rarity == null && hp == null && attack == null && defense == null) return 0;
+        List<String> assignments = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        if (hp != null) { assignments.add("hp = ?"); values.add(hp); }
+        if (attack != null) { assignments.add("attack = ?"); values.add(attack); }
+        if (defense != null) { assignments.add("defense = ?"); values.add(defense); }
+
+        ChangeSet changes = new ChangeSet();
+        int updated = 0;
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Map<Integer, long[]> deltas = new HashMap<>();
+                for (List<Integer> chunk : SqlUtils.chunks(ids)) {
+                    updated += lockOwners(conn, chunk, changes, deltas, 0, attack);
+                    String in = SqlUtils.inList(chunk.size());
+                    String pokemonSql = "UPDATE pokemons SET " + (rarity != null ? "rarity = ?, " : "")
+                            + "version = version + 1 WHERE id IN " + in;
+                    try (PreparedStatement ps = conn.prepareStatement(pokemonSql)) {
+                        int index = 1;
+                        if (rarity != null) ps.setString(index++, rarity);
+                        SqlUtils.bindInts(ps, index, chunk);
+                        ps.executeUpdate();
+                    }
+                    if (!assignments.isEmpty()) {
+                        String sql = "UPDATE pokemon_stats SET " + String.join(", ", assignments) + " WHERE pokemon_id IN " + in;
+                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                            int index = SqlUtils.bindInts(ps, 1, values);
+                            SqlUtils.bindInts(ps, index, chunk);
+                            ps.executeUpdate();
+                        }
+                    }
+                }
+                TrainerAggregates.adjustAll(conn, deltas);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+        return updated;
+    }
+
+    /**
+     * Locks a chunk of Pokémon rows and collects the aggregate deltas of their trainers
+     * @param conn Connection of the running transaction
+     * @param chunk IDs of the pokémon
+     * @param changes Receives the existing pokémon and their trainers
+     * @param deltas Trainer ID to {count delta, attack delta}, updated in place
+     * @param countDelta Count change per pokémon, -1 when they are deleted
+     * @param newAttack Attack the pokémon will have, null if it does not change, ignored when deleting
+     * @return Number of existing pokémon in the chunk
+     * @throws SQLException If the query execution fails
+     */
+    private int lockOwners(Connection conn, List<Integer> chunk, ChangeSet changes, Map<Integer, long[]> deltas,
+                           int countDelta, Integer newAttack) throws SQLException {
+        String sql = "SELECT p.id, p.trainer_id, ps.attack FROM pokemons p"
+                + " LEFT JOIN pokemon_stats ps ON ps.pokemon_id = p.id WHERE p.id IN " + SqlUtils.inList(chunk.size()) + " FOR UPDATE";
+        int found = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlUtils.bindInts(ps, 1, chunk);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    found++;
+                    changes.pokemon(rs.getInt(1));
+                    int trainerId = rs.getInt(2);
+                    if (rs.wasNull()) continue;
+                    int attack = rs.getInt(3);
+                    long attackDelta = countDelta < 0 ? -attack : newAttack == null ? 0 : (long) newAttack - attack;
+                    if (countDelta == 0 && attackDelta == 0) continue;
+                    changes.trainer(trainerId);
+                    long[] d = deltas.computeIfAbsent(trainerId, k -> new long[2]);
+                    d[0] += countDelta;
+                    d[1] += attackDelta;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Locks a Pokémon row and reads its owner, current attack and version
+     * @param conn Connection of the running transaction
+     * @param pokemonId ID of the pokémon
+     * @return Owner, attack and version or null if the pokémon does not exist
+     * @throws SQLException If the query execution fails
+     */
+    private Owner lockOwner(Connection conn, int pokemonId) throws SQLException {
+        String sql = "SELECT p.trainer_id, ps.attack, p.version FROM pokemons p"
+                + " LEFT JOIN pokemon_stats ps ON ps.pokemon_id = p.id WHERE p.id = ? FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, pokemonId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                int trainerId = rs.getInt(1);
+                Integer owner = rs.wasNull() ? null : trainerId;
+                return new Owner(owner, rs.getInt(2), rs.getInt(3));
+            }
         }
     }
 
     /**
      * Imports the Pokémon from CSV file
+     * In JDBC mode rows are written with batched INSERTs and committed every import.batchSize rows,
+     * so a failure keeps everything before the failing chunk and reports where to continue.
+     * In bulk load mode the whole file is loaded in one transaction through a staging table.
+     * The optional type1 and type2 columns hold type names and are linked in the same transaction as the Pokémon.
      * @param filePath Path to the CSV file
-     * @throws SQLException If the query execution fails
+     * @param mode Import method, bulk load falls back to JDBC when the server does not allow local files
+     * @return Number of imported rows and throughput
+     * @throws SQLException If the query execution fails or the file contains invalid data
      */
-    public void importPokemonsFromCSV(String filePath) throws SQLException {
+    @Override
+    public ImportResult importPokemonsFromCSV(String filePath, ImportMode mode) throws SQLException {
         File file = new File(filePath);
         if (!file.exists() || file.length() == 0) {
             throw new SQLException("The selected file is empty or does not exist.");
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
+        long start = System.currentTimeMillis();
+        if (mode == ImportMode.BULK_LOAD) {
+            int loaded = bulkLoad(file);
+            if (loaded >= 0) {
+                if (loaded == 0) throw new SQLException("No valid Pokémon data found in the file.");
+                return new ImportResult(loaded, System.currentTimeMillis() - start);
+            }
+        }
+
+        int batchSize = Math.max(1, DatabaseConfig.getInstance().getIntProperty("import.batchSize", 1000));
+        TypeDictionary types = TypeDictionary.get();
+        PokemonChunk chunk = new PokemonChunk(batchSize);
+        int committed = 0;
+        int lineNumber = 1;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8));
+             Connection conn = DatabaseConfig.getInstance().getConnection()) {
             String header = br.readLine();
             if (header == null) throw new SQLException("File has no content.");
 
-            int importedCount = 0;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(";");
-                if (data.length >= 6) {
-                    Pokemon p = new Pokemon(Integer.parseInt(data[0]), data[1], data[2]);
-                    int hp = Integer.parseInt(data[3]);
-                    int atk = Integer.parseInt(data[4]);
-                    int def = Integer.parseInt(data[5]);
+            conn.setAutoCommit(false);
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lineNumber++;
+                    String[] data = CsvUtils.split(line);
+                    if (data.length < 6) continue;
+                    try {
+                        chunk.add(Integer.parseInt(data[0].trim()), data[1], data[2],
+                                Integer.parseInt(data[3].trim()), Integer.parseInt(data[4].trim()), Integer.parseInt(data[5].trim()),
+                                types.maskOf(column(data, 6), column(data, 7)));
+                    } catch (NumberFormatException e) {
+                        committed += writeChunk(conn, chunk, committed);
+                        throw new SQLException("Data format error on line " + lineNumber + ": Check if all numbers are valid. "
+                                + committed + " Pokémon from the previous lines were imported.");
+                    } catch (IllegalArgumentException e) {
+                        committed += writeChunk(conn, chunk, committed);
+                        throw new SQLException("Type error on line " + lineNumber + ": " + e.getMessage() + " "
+                                + committed + " Pokémon from the previous lines were imported.");
+                    }
+                    if (chunk.size == batchSize) committed += writeChunk(conn, chunk, committed);
+                }
+                committed += writeChunk(conn, chunk, committed);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Reading error: " + e.getMessage() + ". " + committed + " Pokémon were imported before the error.");
+        }
+
+        if (committed == 0) {
+            throw new SQLException("No valid Pokémon data found in the file.");
+        }
+        return new ImportResult(committed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns an optional CSV column, String.split drops empty trailing columns
+     * @param data Split line
+     * @param index Column index
+     * @return Column value or null if the line is shorter
+     */
+    static String column(String[] data, int index) {
+        return index < data.length ? data[index] : null;
+    }
+
+    /**
+     * Loads the file with LOAD DATA LOCAL INFILE in a single transaction
+     * @param file CSV file
+     * @return Number of imported rows or -1 if local infile is not allowed
+     * @throws SQLException If the query execution fails or the file contains invalid data
+     */
+    private int bulkLoad(File file) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            if (!BulkLoader.isLocalInfileEnabled(conn)) {
+                System.err.println("local_infile is disabled on the server, importing with batched inserts");
+                return -1;
+            }
+            conn.setAutoCommit(false);
+            try {
+                int loaded = BulkLoader.loadPokemons(conn, file);
+                ChangeLog.recordTables(conn, ChangeLog.POKEMONS, ChangeLog.TRAINERS);
+                conn.commit();
+                return loaded;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!BulkLoader.isLocalInfileRejected(e)) throw e;
+                System.err.println("Local infile was rejected, importing with batched inserts: " + e.getMessage());
+                return -1;
+            } finally {
+                BulkLoader.unlockTables(conn);
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Writes one chunk of parsed rows with two JDBC batches and commits it
+     * @param conn Connection with autocommit disabled
+     * @param chunk Parsed rows, cleared afterwards
+     * @param committedBefore Rows committed by earlier chunks, used for the error message
+     * @return Number of written rows
+     * @throws SQLException If the chunk could not be written, after rolling it back
+     */
+    private int writeChunk(Connection conn, PokemonChunk chunk, int committedBefore) throws SQLException {
+        int n = chunk.size;
+        if (n == 0) return 0;
+        try {
+            int[] ids = new int[n];
+            String pokemonSql = "INSERT INTO pokemons (trainer_id, nickname, rarity, type_mask) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement pStmt = conn.prepareStatement(pokemonSql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < n; i++) {
+                    pStmt.setInt(1, chunk.trainerIds[i]);
+                    pStmt.setString(2, chunk.nicknames[i]);
+                    pStmt.setString(3, chunk.rarities[i]);
+                    pStmt.setLong(4, chunk.typeMasks[i]);
+                    pStmt.addBatch();
+                }
+                pStmt.executeBatch();
 
-                    catchNewPokemon(p, hp, atk, def);
-                    importedCount++;
+                int k = 0;
+                try (ResultSet rs = pStmt.getGeneratedKeys()) {
+                    while (rs.next() && k < n) ids[k++] = rs.getInt(1);
                 }
+                if (k != n) throw new SQLException("Expected " + n + " generated keys but received " + k + ".");
             }
 
-            if (importedCount == 0) {
-                throw new SQLException("No valid Pokémon data found in the file.");
+            String statsSql = "INSERT INTO pokemon_stats (pokemon_id, hp, attack, defense) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement sStmt = conn.prepareStatement(statsSql)) {
+                for (int i = 0; i < n; i++) {
+                    sStmt.setInt(1, ids[i]);
+                    sStmt.setInt(2, chunk.hp[i]);
+                    sStmt.setInt(3, chunk.attack[i]);
+                    sStmt.setInt(4, chunk.defense[i]);
+                    sStmt.addBatch();
+                }
+                sStmt.executeBatch();
             }
-        } catch (IOException e) {
-            throw new SQLException("Reading error: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            throw new SQLException("Data format error: Check if all numbers are valid.");
+
+            try (PreparedStatement tStmt = conn.prepareStatement("INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)")) {
+                boolean linked = false;
+                for (int i = 0; i < n; i++) {
+                    if (chunk.typeMasks[i] == 0) continue;
+                    addTypeLinks(tStmt, ids[i], chunk.typeMasks[i]);
+                    linked = true;
+                }
+                if (linked) tStmt.executeBatch();
+            }
+
+            Map<Integer, long[]> deltas = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                long[] d = deltas.computeIfAbsent(chunk.trainerIds[i], k -> new long[2]);
+                d[0]++;
+                d[1] += chunk.attack[i];
+            }
+            TrainerAggregates.adjustAll(conn, deltas);
+            ChangeLog.recordTables(conn, ChangeLog.POKEMONS, ChangeLog.TRAINERS);
+
+            conn.commit();
+            chunk.clear();
+            return n;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Import stopped: " + e.getMessage() + " " + committedBefore
+                    + " Pokémon from the previous chunks were imported.", e.getSQLState(), e.getErrorCode(), e);
         }
     }
 
     /**
-     * Updates pokémon data
+     * Updates pokémon data without a version check, the version is still raised so that checked edits notice
      * @param id ID of the pokémon we want to update
      * @param nickname Nickname we want to set
      * @param rarity Rarity we want to set
@@ -140,7 +741,7 @@ public class MySQLPokemonRepository implements PokemonRepository {
      */
     @Override
     public void updatePokemon(int id, String nickname, String rarity, int hp, int attack, int defense) throws SQLException {
-        String sqlPoke = "UPDATE pokemons SET nickname = ?, rarity = ? WHERE id = ?";
+        String sqlPoke = "UPDATE pokemons SET nickname = ?, rarity = ?, version = version + 1 WHERE id = ?";
         String sqlStats = "UPDATE pokemon_stats SET hp = ?, attack = ?, defense = ? WHERE pokemon_id = ?";
 
         try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
@@ -148,6 +749,7 @@ public class MySQLPokemonRepository implements PokemonRepository {
             try (PreparedStatement ps1 = conn.prepareStatement(sqlPoke);
                  PreparedStatement ps2 = conn.prepareStatement(sqlStats)) {
 
+                Owner owner = lockOwner(conn, id);
                 ps1.setString(1, nickname);
                 ps1.setString(2, rarity);
                 ps1.setInt(3, id);
@@ -159,7 +761,12 @@ public class MySQLPokemonRepository implements PokemonRepository {
                 ps2.setInt(4, id);
                 ps2.executeUpdate();
 
+                Integer trainerId = owner == null ? null : owner.trainerId;
+                if (owner != null) TrainerAggregates.adjust(conn, trainerId, 0, (long) attack - owner.attack);
+                ChangeSet changes = new ChangeSet().pokemon(id).trainer(trainerId);
+                ChangeLog.record(conn, changes);
                 conn.commit();
+                ChangeBus.getInstance().publish(changes);
             } catch (SQLException e) {
                 conn.rollback();
                 throw e;
@@ -168,16 +775,18 @@ public class MySQLPokemonRepository implements PokemonRepository {
     }
 
     /**
-     * Updates the pokémon types
+     * Updates the pokémon types and its type mask
      * @param pokemonId ID of the pokémon
      * @param type1Id ID of type 1
      * @param type2Id ID of type 2
-     * @throws SQLException If the query execution fails
+     * @throws SQLException If the query execution fails or a type id does not fit into the mask
      */
     @Override
     public void updatePokemonTypes(int pokemonId, Integer type1Id, Integer type2Id) throws SQLException {
         String deleteSql = "DELETE FROM pokemon_types WHERE pokemon_id = ?";
         String insertSql = "INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)";
+        String maskSql = "UPDATE pokemons SET type_mask = ?, version = version + 1 WHERE id = ?";
+        long mask = typeMask(Arrays.asList(type1Id, type2Id));
 
         try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
             conn.setAutoCommit(false);
@@ -197,11 +806,255 @@ public class MySQLPokemonRepository implements PokemonRepository {
                         insertPs.executeUpdate();
                     }
                 }
+                try (PreparedStatement maskPs = conn.prepareStatement(maskSql)) {
+                    maskPs.setLong(1, mask);
+                    maskPs.setInt(2, pokemonId);
+                    maskPs.executeUpdate();
+                }
+                ChangeSet changes = new ChangeSet().pokemon(pokemonId);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+                ChangeBus.getInstance().publish(changes);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Updates nickname, rarity, stats and types of a Pokémon if nobody changed it since it was read
+     * The version is checked by the UPDATE itself, so just this row is locked and only until the commit.
+     * @param id ID of the pokémon
+     * @param expectedVersion Version the pokémon had when it was read
+     * @param nickname Nickname we want to set
+     * @param rarity Rarity we want to set
+     * @param hp HP we want to set
+     * @param attack Attack we want to set
+     * @param defense Defense we want to set
+     * @param type1Id ID of type 1 or null
+     * @param type2Id ID of type 2 or null
+     * @return UPDATED with the new version, CONFLICT with the stored pokémon or DELETED
+     * @throws SQLException If the query execution fails or a type does not exist, nothing is changed then
+     */
+    @Override
+    public UpdateResult<PokemonDetails> updatePokemonIfUnchanged(int id, int expectedVersion, String nickname, String rarity,
+                                                                 int hp, int attack, int defense,
+                                                                 Integer type1Id, Integer type2Id) throws SQLException {
+        long mask = typeMask(Arrays.asList(type1Id, type2Id));
+        String sqlPoke = "UPDATE pokemons SET nickname = ?, rarity = ?, type_mask = ?, version = version + 1"
+                + " WHERE id = ? AND version = ?";
+        String sqlStats = "UPDATE pokemon_stats SET hp = ?, attack = ?, defense = ? WHERE pokemon_id = ?";
+
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pokePs = conn.prepareStatement(sqlPoke);
+                 PreparedStatement statsPs = conn.prepareStatement(sqlStats);
+                 PreparedStatement unlinkPs = conn.prepareStatement("DELETE FROM pokemon_types WHERE pokemon_id = ?");
+                 PreparedStatement linkPs = conn.prepareStatement("INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)")) {
+                pokePs.setString(1, nickname);
+                pokePs.setString(2, rarity);
+                pokePs.setLong(3, mask);
+                pokePs.setInt(4, id);
+                pokePs.setInt(5, expectedVersion);
+                if (pokePs.executeUpdate() == 0) {
+                    PokemonDetails current = findPokemon(conn, id);
+                    conn.rollback();
+                    return current == null ? UpdateResult.deleted() : UpdateResult.conflict(current);
+                }
+
+                // the row is locked by the update already, this reads the attack before the change
+                Owner owner = lockOwner(conn, id);
+                statsPs.setInt(1, hp);
+                statsPs.setInt(2, attack);
+                statsPs.setInt(3, defense);
+                statsPs.setInt(4, id);
+                statsPs.executeUpdate();
+
+                unlinkPs.setInt(1, id);
+                unlinkPs.executeUpdate();
+                if (mask != 0) {
+                    addTypeLinks(linkPs, id, mask);
+                    linkPs.executeBatch();
+                }
+
+                Integer trainerId = owner == null ? null : owner.trainerId;
+                if (owner != null) TrainerAggregates.adjust(conn, trainerId, 0, (long) attack - owner.attack);
+                ChangeSet changes = new ChangeSet().pokemon(id).trainer(trainerId);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+                ChangeBus.getInstance().publish(changes);
+                return UpdateResult.updated(expectedVersion + 1);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Writes many pending Pokémon changes in one transaction with one JDBC batch per statement
+     * Updates with an expected version are checked against the locked rows first.
+     * @param updates Changes, at most one per Pokémon, unknown IDs are skipped
+     * @throws SQLException If the query execution fails or a checked Pokémon was changed meanwhile, nothing is changed then
+     */
+    @Override
+    public void applyPokemonUpdates(List<PokemonUpdate> updates) throws SQLException {
+        if (updates.isEmpty()) return;
+        List<PokemonUpdate> sorted = new ArrayList<>(updates);
+        sorted.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+        List<Integer> ids = new ArrayList<>();
+        for (PokemonUpdate u : sorted) ids.add(u.getId());
+
+        ChangeSet changes = new ChangeSet();
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pokePs = conn.prepareStatement("UPDATE pokemons SET nickname = ?, rarity = ?, version = version + 1 WHERE id = ?");
+                 PreparedStatement statsPs = conn.prepareStatement("UPDATE pokemon_stats SET hp = ?, attack = ?, defense = ? WHERE pokemon_id = ?");
+                 PreparedStatement unlinkPs = conn.prepareStatement("DELETE FROM pokemon_types WHERE pokemon_id = ?");
+                 PreparedStatement linkPs = conn.prepareStatement("INSERT INTO pokemon_types (pokemon_id, type_id) VALUES (?, ?)");
+                 PreparedStatement maskPs = conn.prepareStatement("UPDATE pokemons SET type_mask = ?, version = version + 1 WHERE id = ?")) {
+                Map<Integer, Owner> owners = new HashMap<>();
+                for (List<Integer> chunk : SqlUtils.chunks(ids)) owners.putAll(lockOwners(conn, chunk));
+
+                Map<Integer, long[]> deltas = new HashMap<>();
+                boolean details = false;
+                boolean types = false;
+                for (PokemonUpdate u : sorted) {
+                    Owner owner = owners.get(u.getId());
+                    if (owner == null) continue;
+                    if (u.getExpectedVersion() != UpdateResult.ANY_VERSION && u.getExpectedVersion() != owner.version) {
+                        throw new SQLException("Pokémon " + u.getId() + " was changed by someone else, the edit was not saved.");
+                    }
+                    changes.pokemon(u.getId());
+                    if (u.isDetailsChanged()) {
+                        pokePs.setString(1, u.getNickname());
+                        pokePs.setString(2, u.getRarity());
+                        pokePs.setInt(3, u.getId());
+                        pokePs.addBatch();
+                        statsPs.setInt(1, u.getHp());
+                        statsPs.setInt(2, u.getAttack());
+                        statsPs.setInt(3, u.getDefense());
+                        statsPs.setInt(4, u.getId());
+                        statsPs.addBatch();
+                        details = true;
+                        if (owner.trainerId != null && u.getAttack() != owner.attack) {
+                            changes.trainer(owner.trainerId);
+                            deltas.computeIfAbsent(owner.trainerId, k -> new long[2])[1] += (long) u.getAttack() - owner.attack;
+                        }
+                    }
+                    if (u.isTypesChanged()) {
+                        long mask = typeMask(Arrays.asList(u.getType1Id(), u.getType2Id()));
+                        unlinkPs.setInt(1, u.getId());
+                        unlinkPs.addBatch();
+                        addTypeLinks(linkPs, u.getId(), mask);
+                        maskPs.setLong(1, mask);
+                        maskPs.setInt(2, u.getId());
+                        maskPs.addBatch();
+                        types = true;
+                    }
+                }
+                if (details) {
+                    pokePs.executeBatch();
+                    statsPs.executeBatch();
+                }
+                if (types) {
+                    unlinkPs.executeBatch();
+                    linkPs.executeBatch();
+                    maskPs.executeBatch();
+                }
+                TrainerAggregates.adjustAll(conn, deltas);
+                ChangeLog.record(conn, changes);
                 conn.commit();
             } catch (SQLException e) {
                 conn.rollback();
                 throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Locks a chunk of Pokémon rows and reads their owners, current attack and version
+     * @param conn Connection of the running transaction
+     * @param chunk IDs of the pokémon
+     * @return Owner, attack and version by pokémon ID, missing pokémon are left out
+     * @throws SQLException If the query execution fails
+     */
+    private Map<Integer, Owner> lockOwners(Connection conn, List<Integer> chunk) throws SQLException {
+        String sql = "SELECT p.id, p.trainer_id, ps.attack, p.version FROM pokemons p"
+                + " LEFT JOIN pokemon_stats ps ON ps.pokemon_id = p.id WHERE p.id IN " + SqlUtils.inList(chunk.size()) + " FOR UPDATE";
+        Map<Integer, Owner> owners = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            SqlUtils.bindInts(ps, 1, chunk);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int trainerId = rs.getInt(2);
+                    Integer owner = rs.wasNull() ? null : trainerId;
+                    owners.put(rs.getInt(1), new Owner(owner, rs.getInt(3), rs.getInt(4)));
+                }
             }
         }
+        return owners;
+    }
+
+    /**
+     * Owner, attack and version of a Pokémon read before changing it
+     */
+    private static class Owner {
+        final Integer trainerId;
+        final int attack;
+        final int version;
+
+        Owner(Integer trainerId, int attack, int version) {
+            this.trainerId = trainerId;
+            this.attack = attack;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Reusable column buffers holding the rows of one import chunk
+     */
+    private static class PokemonChunk {
+        final int[] trainerIds;
+        final String[] nicknames;
+        final String[] rarities;
+        final int[] hp;
+        final int[] attack;
+        final int[] defense;
+        final long[] typeMasks;
+        int size;
+
+        PokemonChunk(int capacity) {
+            trainerIds = new int[capacity];
+            nicknames = new String[capacity];
+            rarities = new String[capacity];
+            hp = new int[capacity];
+            attack = new int[capacity];
+            defense = new int[capacity];
+            typeMasks = new long[capacity];
+        }
+
+        void add(int trainerId, String nickname, String rarity, int hpValue, int attackValue, int defenseValue, long typeMask) {
+            trainerIds[size] = trainerId;
+            nicknames[size] = nickname;
+            rarities[size] = rarity;
+            hp[size] = hpValue;
+            attack[size] = attackValue;
+            defense[size] = defenseValue;
+            typeMasks[size] = typeMask;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(nicknames, 0, size, null);
+            Arrays.fill(rarities, 0, size, null);
+            size = 0;
+        }
     }
-}
\ No newline at end of file
+}
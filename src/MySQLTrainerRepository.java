@@ -1,10 +1,10 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Implementation of the TrainerRepository interface using MySQL as the data store (Repository pattern)
@@ -30,13 +30,43 @@ public class MySQLTrainerRepository implements TrainerRepository {
                         rs.getInt("id"),
                         rs.getString("name"),
                         rs.getFloat("experience_points"),
-                        rs.getBoolean("is_gym_leader")
+                        rs.getBoolean("is_gym_leader"),
+                        rs.getInt("version")
                 ));
             }
         }
         return trainers;
     }
 
+    /**
+     * Streams the trainer names to a name index
+     * All rows are read with one streaming query (fetch size Integer.MIN_VALUE), so they are never held by the driver
+     * @param ids IDs to read, at most SqlUtils.MAX_IN_LIST, or null for all trainers
+     * @param sink Receives ID and name, rows without one are skipped
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public void scanTrainerNames(Collection<Integer> ids, NameIndex.Sink sink) throws SQLException {
+        String sql = "SELECT id, name FROM trainers WHERE name IS NOT NULL";
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            if (ids == null) {
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        while (rs.next()) sink.add(rs.getInt(1), rs.getString(2));
+                    }
+                }
+            } else if (!ids.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sql + " AND id IN " + SqlUtils.inList(ids.size()))) {
+                    SqlUtils.bindInts(ps, 1, ids);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) sink.add(rs.getInt(1), rs.getString(2));
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Adds a new trainer to the database
      * @param name Name
@@ -47,32 +77,150 @@ public class MySQLTrainerRepository implements TrainerRepository {
     @Override
     public void addTrainer(String name, float xp, boolean isLeader) throws SQLException {
         String sql = "INSERT INTO trainers (name, experience_points, is_gym_leader) VALUES (?, ?, ?)";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, name);
-            pstmt.setFloat(2, xp);
-            pstmt.setBoolean(3, isLeader);
-            pstmt.executeUpdate();
+        ChangeSet changes = new ChangeSet();
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, name);
+                pstmt.setFloat(2, xp);
+                pstmt.setBoolean(3, isLeader);
+                pstmt.executeUpdate();
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    if (rs.next()) changes.trainer(rs.getInt(1));
+                }
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        ChangeBus.getInstance().publish(changes);
     }
 
     /**
-     * Removes a trainer  from the database
+     * Removes a trainer  from the database together with its aggregate row
      * @param id ID of the trainer we want to delete
      * @throws SQLException If the query execution fails
      */
     @Override
     public void deleteTrainer(int id) throws SQLException {
+        String aggregateSql = "DELETE FROM trainer_pokemon_stats WHERE trainer_id = ?";
         String sql = "DELETE FROM trainers WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+        ChangeSet changes = new ChangeSet().trainer(id);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement aggregatePs = conn.prepareStatement(aggregateSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                changes.pokemons(findPokemonIds(conn, id));
+                aggregatePs.setInt(1, id);
+                aggregatePs.executeUpdate();
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        ChangeBus.getInstance().publish(changes);
     }
 
     /**
-     * Updates a trainer  from the database
+     * Removes many trainers in one transaction with one DELETE per table and chunk of SqlUtils.MAX_IN_LIST IDs
+     * Their Pokémon stay without a trainer.
+     * @param ids IDs of the trainers we want to delete, unknown IDs are skipped
+     * @return Number of deleted trainers
+     * @throws SQLException If the query execution fails, nothing is deleted then
+     */
+    @Override
+    public int deleteTrainers(int[] ids) throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        int deleted = 0;
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (List<Integer> chunk : SqlUtils.chunks(ids)) {
+                    String in = SqlUtils.inList(chunk.size());
+                    try (PreparedStatement findPs = conn.prepareStatement("SELECT id FROM pokemons WHERE trainer_id IN " + in)) {
+                        SqlUtils.bindInts(findPs, 1, chunk);
+                        try (ResultSet rs = findPs.executeQuery()) {
+                            while (rs.next()) changes.pokemon(rs.getInt(1));
+                        }
+                    }
+                    try (PreparedStatement aggregatePs = conn.prepareStatement("DELETE FROM trainer_pokemon_stats WHERE trainer_id IN " + in);
+                         PreparedStatement pstmt = conn.prepareStatement("DELETE FROM trainers WHERE id IN " + in)) {
+                        SqlUtils.bindInts(aggregatePs, 1, chunk);
+                        aggregatePs.executeUpdate();
+                        SqlUtils.bindInts(pstmt, 1, chunk);
+                        deleted += pstmt.executeUpdate();
+                    }
+                    changes.trainers(chunk);
+                }
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+        return deleted;
+    }
+
+    /**
+     * Compares the maintained trainer aggregates with the Pokémon tables
+     * @return IDs of trainers whose aggregates are out of date
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public List<Integer> verifyAggregates() throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            return TrainerAggregates.verify(conn);
+        }
+    }
+
+    /**
+     * Recomputes all trainer aggregates from the Pokémon tables
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public void rebuildAggregates() throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            TrainerAggregates.rebuild(conn);
+        }
+        ChangeSet changes = new ChangeSet();
+        for (Trainer t : getAllTrainers()) changes.trainer(t.getId());
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Finds the Pokémon owned by a trainer, their rows show the trainer name
+     * @param conn Open connection
+     * @param trainerId ID of the trainer
+     * @return IDs of the owned pokémon
+     * @throws SQLException If the query execution fails
+     */
+    private List<Integer> findPokemonIds(Connection conn, int trainerId) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM pokemons WHERE trainer_id = ?")) {
+            ps.setInt(1, trainerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Updates a trainer  from the database without a version check, the version is still raised so that checked edits notice
      * @param id ID of the trainer we want to update
      * @param name New name
      * @param xp New Xp points
@@ -81,51 +229,259 @@ public class MySQLTrainerRepository implements TrainerRepository {
      */
     @Override
     public void updateTrainer(int id, String name, float xp, boolean isGymLeader) throws SQLException {
-        String sql = "UPDATE trainers SET name = ?, xp = ?, is_gym_leader = ? WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, name);
-            pstmt.setFloat(2, xp);
-            pstmt.setBoolean(3, isGymLeader);
-            pstmt.setInt(4, id);
-            pstmt.executeUpdate();
+        String sql = "UPDATE trainers SET name = ?, experience_points = ?, is_gym_leader = ?, version = version + 1 WHERE id = ?";
+        ChangeSet changes = new ChangeSet().trainer(id);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, name);
+                pstmt.setFloat(2, xp);
+                pstmt.setBoolean(3, isGymLeader);
+                pstmt.setInt(4, id);
+                pstmt.executeUpdate();
+                changes.pokemons(findPokemonIds(conn, id));
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Reads one trainer with its version
+     * @param id ID of the trainer
+     * @return Trainer or null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public Trainer findTrainer(int id) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            return findTrainer(conn, id);
+        }
+    }
+
+    /**
+     * Reads one trainer over an open connection
+     * @param conn Open connection
+     * @param id ID of the trainer
+     * @return Trainer or null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    private Trainer findTrainer(Connection conn, int id) throws SQLException {
+        String sql = "SELECT id, name, experience_points, is_gym_leader, version FROM trainers WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new Trainer(rs.getInt(1), rs.getString(2), rs.getFloat(3), rs.getBoolean(4), rs.getInt(5));
+            }
+        }
+    }
+
+    /**
+     * Updates a trainer if nobody changed it since it was read
+     * The version is checked by the UPDATE itself, so just this row is locked and only until the commit.
+     * @param id ID of the trainer we want to update
+     * @param expectedVersion Version the trainer had when it was read
+     * @param name New name
+     * @param xp New Xp points
+     * @param isGymLeader New boolean for if he is gym leader
+     * @return UPDATED with the new version, CONFLICT with the stored trainer or DELETED
+     * @throws SQLException If the query execution fails
+     */
+    @Override
+    public UpdateResult<Trainer> updateTrainerIfUnchanged(int id, int expectedVersion, String name, float xp,
+                                                          boolean isGymLeader) throws SQLException {
+        String sql = "UPDATE trainers SET name = ?, experience_points = ?, is_gym_leader = ?, version = version + 1"
+                + " WHERE id = ? AND version = ?";
+        ChangeSet changes = new ChangeSet().trainer(id);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, name);
+                pstmt.setFloat(2, xp);
+                pstmt.setBoolean(3, isGymLeader);
+                pstmt.setInt(4, id);
+                pstmt.setInt(5, expectedVersion);
+                if (pstmt.executeUpdate() == 0) {
+                    Trainer current = findTrainer(conn, id);
+                    conn.rollback();
+                    return current == null ? UpdateResult.deleted() : UpdateResult.conflict(current);
+                }
+                changes.pokemons(findPokemonIds(conn, id));
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+        return UpdateResult.updated(expectedVersion + 1);
+    }
+
+    /**
+     * Updates many trainers in one transaction with one JDBC batch
+     * Trainers with a version are checked against the locked rows first.
+     * @param trainers New trainer data, unknown IDs are skipped
+     * @throws SQLException If the query execution fails or a checked trainer was changed meanwhile, nothing is changed then
+     */
+    @Override
+    public void applyTrainerUpdates(List<Trainer> trainers) throws SQLException {
+        if (trainers.isEmpty()) return;
+        String sql = "UPDATE trainers SET name = ?, experience_points = ?, is_gym_leader = ?, version = version + 1 WHERE id = ?";
+        List<Integer> ids = new ArrayList<>();
+        for (Trainer t : trainers) ids.add(t.getId());
+        ChangeSet changes = new ChangeSet().trainers(ids);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                checkVersions(conn, trainers);
+                for (Trainer t : trainers) {
+                    pstmt.setString(1, t.getName());
+                    pstmt.setFloat(2, t.getXp());
+                    pstmt.setBoolean(3, t.isLeader());
+                    pstmt.setInt(4, t.getId());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                for (List<Integer> chunk : SqlUtils.chunks(ids)) {
+                    try (PreparedStatement findPs = conn.prepareStatement("SELECT id FROM pokemons WHERE trainer_id IN " + SqlUtils.inList(chunk.size()))) {
+                        SqlUtils.bindInts(findPs, 1, chunk);
+                        try (ResultSet rs = findPs.executeQuery()) {
+                            while (rs.next()) changes.pokemon(rs.getInt(1));
+                        }
+                    }
+                }
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        ChangeBus.getInstance().publish(changes);
+    }
+
+    /**
+     * Locks the trainers which carry a version, in ascending ID order, and compares their versions
+     * @param conn Connection of the running transaction
+     * @param trainers Trainers about to be written
+     * @throws SQLException If the query execution fails or a trainer has another version
+     */
+    private void checkVersions(Connection conn, List<Trainer> trainers) throws SQLException {
+        Map<Integer, Integer> expected = new TreeMap<>();
+        for (Trainer t : trainers) {
+            if (t.getVersion() != UpdateResult.ANY_VERSION) expected.put(t.getId(), t.getVersion());
+        }
+        for (List<Integer> chunk : SqlUtils.chunks(expected.keySet())) {
+            String sql = "SELECT id, version FROM trainers WHERE id IN " + SqlUtils.inList(chunk.size()) + " FOR UPDATE";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                SqlUtils.bindInts(ps, 1, chunk);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getInt(2) != expected.get(rs.getInt(1))) {
+                            throw new SQLException("Trainer " + rs.getInt(1) + " was changed by someone else, the edit was not saved.");
+                        }
+                    }
+                }
+            }
         }
     }
 
     /**
      * Imports the trainers from CSV file
+     * In JDBC mode the file is streamed through TrainerImportPipeline and written in batches of import.batchSize rows,
+     * each committed on its own so a failure keeps the batches before it.
+     * In bulk load mode the whole file is loaded in one transaction through a staging table.
      * @param filePath Path to the CSV file
-     * @throws SQLException If the query execution fails
+     * @param mode Import method, bulk load falls back to JDBC when the server does not allow local files
+     * @param listener Receives progress after every committed batch, may be null
+     * @return Number of imported rows and throughput
+     * @throws SQLException If the query execution fails or the file contains invalid data
      */
     @Override
-    public void importTrainersFromCSV(String filePath) throws SQLException {
+    public ImportResult importTrainersFromCSV(String filePath, ImportMode mode, ImportProgressListener listener) throws SQLException {
         File file = new File(filePath);
         if (!file.exists() || file.length() == 0) {
             throw new SQLException("The trainer file is empty or does not exist.");
         }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            String header = br.readLine();
-            if (header == null) throw new SQLException("Trainer file has no header.");
+        if (mode == ImportMode.BULK_LOAD) {
+            long start = System.currentTimeMillis();
+            int loaded = bulkLoad(file);
+            if (loaded >= 0) {
+                if (loaded == 0) throw new SQLException("No valid trainer records were processed.");
+                if (listener != null) listener.onProgress(file.length(), file.length(), loaded, 0);
+                return new ImportResult(loaded, System.currentTimeMillis() - start);
+            }
+        }
 
-            int count = 0;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(";");
-                if (data.length >= 3) {
-                    String name = data[0].trim();
-                    float xp = Float.parseFloat(data[1].trim());
-                    boolean isGymLeader = Boolean.parseBoolean(data[2].trim());
+        int batchSize = Math.max(1, DatabaseConfig.getInstance().getIntProperty("import.batchSize", 1000));
+        String sql = "INSERT INTO trainers (name, experience_points, is_gym_leader) VALUES (?, ?, ?)";
 
-                    addTrainer(name, xp, isGymLeader);
-                    count++;
-                }
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                TrainerImportPipeline pipeline = new TrainerImportPipeline(file.toPath(), batchSize);
+                return pipeline.run(batch -> {
+                    try {
+                        for (int i = 0; i < batch.size(); i++) {
+                            pstmt.setString(1, batch.getName(i));
+                            pstmt.setFloat(2, batch.getXp(i));
+                            pstmt.setBoolean(3, batch.isGymLeader(i));
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                        ChangeLog.recordTables(conn, ChangeLog.TRAINERS);
+                        conn.commit();
+                    } catch (SQLException e) {
+                        pstmt.clearBatch();
+                        conn.rollback();
+                        throw e;
+                    }
+                }, listener);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Loads the file with LOAD DATA LOCAL INFILE in a single transaction
+     * @param file CSV file
+     * @return Number of imported rows or -1 if local infile is not allowed
+     * @throws SQLException If the query execution fails or the file contains invalid data
+     */
+    private int bulkLoad(File file) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            if (!BulkLoader.isLocalInfileEnabled(conn)) {
+                System.err.println("local_infile is disabled on the server, importing with batched inserts");
+                return -1;
+            }
+            conn.setAutoCommit(false);
+            try {
+                int loaded = BulkLoader.loadTrainers(conn, file);
+                ChangeLog.recordTables(conn, ChangeLog.TRAINERS);
+                conn.commit();
+                return loaded;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (!BulkLoader.isLocalInfileRejected(e)) throw e;
+                System.err.println("Local infile was rejected, importing with batched inserts: " + e.getMessage());
+                return -1;
+            } finally {
+                conn.setAutoCommit(true);
             }
-            if (count == 0) throw new SQLException("No valid trainer records were processed.");
-        } catch (IOException e) {
-            throw new SQLException("File access error: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            throw new SQLException("XP format error: Please ensure experience is a number.");
         }
     }
 
@@ -33,18 +33,46 @@ public class MySQLTypeRepository implements TypeRepository {
     }
 
     /**
-     * Adds a new type to the database
+     * Adds a new type to the database under the lowest free id
+     * The type id is its bit in pokemons.type_mask, so ids of deleted types are used again instead of AUTO_INCREMENT.
+     * Reading the ids with FOR UPDATE locks the table's index, a concurrent addType waits until this one commits.
      * @param typeName Name
-     * @throws SQLException If the query execution fails
+     * @throws SQLException If the query execution fails or all ids fitting into the mask are in use
      */
     @Override
     public void addType(String typeName) throws SQLException {
-        String sql = "INSERT INTO types (type_name) VALUES (?)";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, typeName);
-            pstmt.executeUpdate();
+        String idsSql = "SELECT id FROM types ORDER BY id FOR UPDATE";
+        String sql = "INSERT INTO types (id, type_name) VALUES (?, ?)";
+        ChangeSet changes = new ChangeSet();
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int id = 1;
+                try (PreparedStatement ids = conn.prepareStatement(idsSql);
+                     ResultSet rs = ids.executeQuery()) {
+                    while (rs.next() && rs.getInt(1) == id) id++;
+                }
+                if (id > TypeDictionary.MAX_MASK_TYPE_ID) {
+                    throw new SQLException("All " + TypeDictionary.MAX_MASK_TYPE_ID
+                            + " type ids are in use, delete a type first.");
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    pstmt.setString(2, typeName);
+                    pstmt.executeUpdate();
+                }
+                changes.type(id);
+                ChangeLog.record(conn, changes);
+                conn.commit();
+                TypeDictionary.typeAdded(new Types(id, typeName));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        ChangeBus.getInstance().publish(changes);
     }
 
     /**
@@ -55,10 +83,38 @@ public class MySQLTypeRepository implements TypeRepository {
     @Override
     public void deleteType(int id) throws SQLException {
         String sql = "DELETE FROM types WHERE id = ?";
-        try (Connection conn = DatabaseConfig.getInstance().getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
+        String maskSql = "UPDATE pokemons p JOIN pokemon_types pt ON pt.pokemon_id = p.id"
+                + " SET p.type_mask = p.type_mask & ~?, p.version = p.version + 1 WHERE pt.type_id = ?";
+        ChangeSet changes = new ChangeSet().type(id);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                try (PreparedStatement links = conn.prepareStatement("SELECT pokemon_id FROM pokemon_types WHERE type_id = ?")) {
+                    links.setInt(1, id);
+                    try (ResultSet rs = links.executeQuery()) {
+                        while (rs.next()) changes.pokemon(rs.getInt(1));
+                    }
+                }
+                // the bits are cleared through the links before the cascade deletes them
+                if (id >= 1 && id <= TypeDictionary.MAX_MASK_TYPE_ID) {
+                    try (PreparedStatement maskPs = conn.prepareStatement(maskSql)) {
+                        maskPs.setLong(1, TypeDictionary.bit(id));
+                        maskPs.setInt(2, id);
+                        maskPs.executeUpdate();
+                    }
+                }
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+                ChangeLog.record(conn, changes);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
+        TypeDictionary.typeDeleted(id);
+        ChangeBus.getInstance().publish(changes);
     }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory type-ahead index over a name column like pokemons.nickname or trainers.name
+ * Every word of a name is a key of a sorted skip list, so a lookup is a range scan over the keys starting
+ * with the typed prefix and any word can be found ("ketch" finds "Ash Ketchum"). Case and accents are ignored.
+ * The index is filled by one streaming scan of the source and kept current from the ChangeBus:
+ * the names of changed rows are read again, rows which vanished are removed.
+ * Loads and updates run one after another on a background thread, lookups never block.
+ */
+public class NameIndex {
+
+    /**
+     * Receives the rows of a scan
+     */
+    public interface Sink {
+        void add(int id, String name);
+    }
+
+    /**
+     * Reads names from the repository
+     */
+    public interface Source {
+        /**
+         * @param ids Rows to read or null for all rows
+         * @param sink Receives the rows found, rows without a name are skipped
+         * @throws SQLException If the query execution fails
+         */
+        void scan(Collection<Integer> ids, Sink sink) throws SQLException;
+    }
+
+    /**
+     * A found row
+     */
+    public static class Match {
+        private final int id;
+        private final String name;
+
+        public Match(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (#" + id + ")";
+        }
+    }
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private final String title;
+    private final Source source;
+    private final Function<ChangeSet, Set<Integer>> changedKeys;
+    private final NavigableMap<String, Integer> words = new ConcurrentSkipListMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final LatencyHistogram findLatency;
+    private final ExecutorService updater;
+    private volatile boolean ready;
+
+    /**
+     * Creates an empty index, start() fills it
+     * @param title Name used for the thread and the "NameIndex.<title>.find" metric
+     * @param source Repository method reading the names
+     * @param changedKeys Picks the keys of this index out of a change set
+     */
+    public NameIndex(String title, Source source, Function<ChangeSet, Set<Integer>> changedKeys) {
+        this.title = title;
+        this.source = source;
+        this.changedKeys = changedKeys;
+        this.findLatency = Metrics.getInstance().histogram("NameIndex." + title + ".find");
+        this.updater = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "name-index-" + title);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Loads all names in the background and follows the changes published afterwards
+     */
+    public void start() {
+        ChangeBus.getInstance().addListener(changes -> {
+            Set<Integer> keys = changedKeys.apply(changes);
+            if (!keys.isEmpty()) {
+                List<Integer> copy = new ArrayList<>(keys);
+                updater.execute(() -> update(copy));
+            }
+        });
+        rebuild();
+    }
+
+    /**
+     * Reads all names again in the background, for changes made without a change set like CSV imports
+     */
+    public void rebuild() {
+        updater.execute(() -> {
+            long start = System.nanoTime();
+            Map<Integer, String> fresh = new LinkedHashMap<>();
+            try {
+                source.scan(null, fresh::put);
+            } catch (SQLException e) {
+                System.err.println("Couldn't load the " + title + " name index: " + e.getMessage());
+                return;
+            }
+            for (Integer id : new ArrayList<>(names.keySet())) {
+                if (!fresh.containsKey(id)) remove(id);
+            }
+            fresh.forEach(this::put);
+            ready = true;
+            Metrics.getInstance().record("NameIndex." + title + ".load", System.nanoTime() - start, false);
+        });
+    }
+
+    /**
+     * Checks if the first load has finished, lookups before that see only part of the names
+     * @return True once loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the number of indexed rows
+     * @return Row count
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Finds the rows with a word starting with each word of the text
+     * @param text Typed text, blank text finds nothing
+     * @param limit Maximum number of matches
+     * @return Matches ordered by the matched word, then by id
+     */
+    public List<Match> find(String text, int limit) {
+        long start = System.nanoTime();
+        List<Match> found = new ArrayList<>();
+        List<String> typed = words(text);
+        if (!typed.isEmpty()) {
+            String first = typed.get(0);
+            Set<Integer> seen = new HashSet<>();
+            for (Map.Entry<String, Integer> entry : words.subMap(first, true, first + Character.MAX_VALUE, true).entrySet()) {
+                int id = entry.getValue();
+                String name = names.get(id);
+                if (name == null || !seen.add(id)) continue;
+                if (typed.size() > 1 && !matchesAll(words(name), typed)) continue;
+                found.add(new Match(id, name));
+                if (found.size() == limit) break;
+            }
+        }
+        findLatency.record(System.nanoTime() - start, false);
+        return found;
+    }
+
+    /**
+     * Returns the indexed name of a row
+     * @param id Row ID
+     * @return Name or null if the row is not indexed
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Ends the background thread, later loads and updates are dropped
+     */
+    public void shutdown() {
+        updater.shutdownNow();
+    }
+
+    private void update(List<Integer> ids) {
+        Map<Integer, String> fresh = new LinkedHashMap<>();
+        try {
+            for (List<Integer> chunk : SqlUtils.chunks(ids)) source.scan(chunk, fresh::put);
+        } catch (SQLException e) {
+            System.err.println("Couldn't update the " + title + " name index: " + e.getMessage());
+            return;
+        }
+        for (Integer id : ids) {
+            String name = fresh.get(id);
+            if (name == null) remove(id);
+            else put(id, name);
+        }
+    }
+
+    private void put(int id, String name) {
+        String old = names.put(id, name);
+        if (name.equals(old)) return;
+        if (old != null) {
+            for (String word : words(old)) words.remove(key(word, id));
+        }
+        for (String word : words(name)) words.put(key(word, id), id);
+    }
+
+    private void remove(int id) {
+        String old = names.remove(id);
+        if (old == null) return;
+        for (String word : words(old)) words.remove(key(word, id));
+    }
+
+    private static String key(String word, int id) {
+        return word + KEY_SEPARATOR + id;
+    }
+
+    private static boolean matchesAll(List<String> nameWords, List<String> typed) {
+        for (String prefix : typed) {
+            boolean matched = false;
+            for (String word : nameWords) {
+                if (word.startsWith(prefix)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits a text into lower case words without accents, letters and digits form words
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) return words;
+        String plain = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                plain = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+                break;
+            }
+        }
+        int start = -1;
+        for (int i = 0; i <= plain.length(); i++) {
+            boolean inWord = i < plain.length() && Character.isLetterOrDigit(plain.charAt(i));
+            if (inWord && start < 0) start = i;
+            if (!inWord && start >= 0) {
+                words.add(plain.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,457 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * TableModel which loads the rows of a table or view page by page while the user scrolls
+ * Pages are fetched by keyset (WHERE (sort, id) > (?, ?) ... LIMIT n) instead of OFFSET,
+ * only a bounded number of pages is cached and the row count comes from a separate count query.
+ * All state is owned by the EDT, queries run on the given executor.
+ */
+public class PagedTableModel extends AbstractTableModel {
+
+    /**
+     * Turns a raw column value into the value shown in the table, runs on the loading thread
+     */
+    public interface ColumnDecoder {
+        /**
+         * @param value Value read from the result set, may be null
+         * @return Displayed value
+         * @throws SQLException If decoding needs data which cannot be loaded
+         */
+        Object decode(Object value) throws SQLException;
+    }
+
+    private final String source;
+    private final String keyColumn;
+    private final String countQuery;
+    private final Set<String> sortableColumns;
+    private final int pageSize;
+    private final Executor executor;
+    private ColumnDecoder[] columnDecoders;
+    private final Map<Integer, Object[][]> pages;
+    private final Set<Integer> pendingPages = new HashSet<>();
+
+    private String[] columnNames;
+    private int rowCount;
+    private SortOrder order;
+    private int generation;
+
+    /**
+     * Sort key of the last row before each page, boundaries.get(0) is null
+     */
+    private final List<Object[]> boundaries = new ArrayList<>();
+
+    /**
+     * Creates the model and loads the column names, the row count and the first page
+     * Meant to be called on a background thread
+     * @param source Table or view name
+     * @param keyColumn Unique, not null column used as keyset tie breaker
+     * @param countQuery Query returning the number of rows in the source
+     * @param sortableColumns Not null columns which can be sorted on the server
+     * @param pageSize Rows per page
+     * @param maxCachedPages Pages kept in memory, least recently used pages are dropped
+     * @param executor Executor running the page queries
+     * @throws SQLException If the query execution fails
+     */
+    public PagedTableModel(String source, String keyColumn, String countQuery, Set<String> sortableColumns,
+                           int pageSize, int maxCachedPages, Executor executor) throws SQLException {
+        this(source, keyColumn, countQuery, sortableColumns, Map.of(), pageSize, maxCachedPages, executor);
+    }
+
+    /**
+     * Creates the model with decoders for columns which are stored in a compact form
+     * Decoded columns must not be sortable, the sort keys are compared as read from the database
+     * @param source Table or view name
+     * @param keyColumn Unique, not null column used as keyset tie breaker
+     * @param countQuery Query returning the number of rows in the source
+     * @param sortableColumns Not null columns which can be sorted on the server
+     * @param decoders Column name to decoder
+     * @param pageSize Rows per page
+     * @param maxCachedPages Pages kept in memory, least recently used pages are dropped
+     * @param executor Executor running the page queries
+     * @throws SQLException If the query execution fails
+     */
+    public PagedTableModel(String source, String keyColumn, String countQuery, Set<String> sortableColumns,
+                           Map<String, ColumnDecoder> decoders, int pageSize, int maxCachedPages,
+                           Executor executor) throws SQLException {
+        this.source = source;
+        this.keyColumn = keyColumn;
+        this.countQuery = countQuery;
+        this.sortableColumns = sortableColumns;
+        this.pageSize = pageSize;
+        this.executor = executor;
+        this.order = new SortOrder(keyColumn, true);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+
+        boundaries.add(null);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            rowCount = count(conn);
+            try (PreparedStatement ps = conn.prepareStatement(pageQuery(order, false))) {
+                ps.setInt(1, pageSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    columnNames = new String[meta.getColumnCount()];
+                    columnDecoders = new ColumnDecoder[columnNames.length];
+                    for (int i = 0; i < columnNames.length; i++) {
+                        columnNames[i] = meta.getColumnLabel(i + 1);
+                        columnDecoders[i] = decoders.get(columnNames[i]);
+                    }
+                    storePage(0, readRows(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        String name = columnNames[column];
+        if (name.equals(order.column)) return name + (order.ascending ? " ▲" : " ▼");
+        return name;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int page = rowIndex / pageSize;
+        Object[][] rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = rowIndex % pageSize;
+        return offset < rows.length ? rows[offset][columnIndex] : null;
+    }
+
+    /**
+     * Checks if the column can be sorted on the server
+     * @param column Column index
+     * @return True if sortable
+     */
+    public boolean isSortable(int column) {
+        return sortableColumns.contains(columnNames[column]);
+    }
+
+    /**
+     * Sorts by the column, clicking the same column again flips the direction
+     * The table header has to be repainted by the caller to show the new sort arrow
+     * @param column Column index
+     */
+    public void toggleSort(int column) {
+        if (!isSortable(column)) return;
+        String name = columnNames[column];
+        order = new SortOrder(name, !name.equals(order.column) || !order.ascending);
+        invalidate();
+    }
+
+    /**
+     * Drops all cached pages so they are fetched again when they become visible
+     */
+    public void invalidate() {
+        generation++;
+        pages.clear();
+        pendingPages.clear();
+        boundaries.subList(1, boundaries.size()).clear();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Reloads only the rows with the given keys
+     * Rows which keep their place are replaced in the cached pages, if rows appeared,
+     * vanished or moved in the sort order the row count is reloaded and the cache is dropped
+     * @param keys Key column values of the changed rows
+     */
+    public void refreshRows(Collection<Integer> keys) {
+        if (keys.isEmpty()) return;
+        if (keys.size() > pageSize) {
+            reloadCount(true);
+            return;
+        }
+
+        int requestGeneration = generation;
+        List<Integer> keyList = new ArrayList<>(keys);
+        String sql = "SELECT * FROM " + quote(source) + " WHERE " + quote(keyColumn) + " IN " + SqlUtils.inList(keyList.size());
+
+        executor.execute(() -> {
+            Map<Integer, Object[]> fresh = new HashMap<>();
+            try (Connection conn = DatabaseConfig.getInstance().getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                SqlUtils.bindInts(ps, 1, keyList);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int keyIndex = rs.findColumn(keyColumn) - 1;
+                    for (Object[] row : readRows(rs)) fresh.put(((Number) row[keyIndex]).intValue(), row);
+                }
+            } catch (SQLException e) {
+                System.err.println("Couldn't reload rows of " + source + ": " + e.getMessage());
+                return;
+            }
+            SwingUtilities.invokeLater(() -> applyRows(requestGeneration, keyList, fresh));
+        });
+    }
+
+    /**
+     * Replaces cached rows on the EDT or falls back to a count check
+     */
+    private void applyRows(int requestGeneration, List<Integer> keys, Map<Integer, Object[]> fresh) {
+        if (requestGeneration != generation) return;
+        boolean structural = false;
+        boolean uncertain = false;
+
+        for (Integer key : keys) {
+            Object[] row = fresh.get(key);
+            int[] location = locate(key);
+            if (location == null) {
+                uncertain = true;
+            } else {
+                Object[][] page = pages.get(location[0]);
+                if (row == null || !Arrays.equals(sortKey(page[location[1]]), sortKey(row))) {
+                    structural = true;
+                } else {
+                    page[location[1]] = row;
+                    int index = location[0] * pageSize + location[1];
+                    fireTableRowsUpdated(index, index);
+                }
+            }
+        }
+        if (structural || uncertain) reloadCount(structural);
+    }
+
+    /**
+     * Finds a row in the cached pages
+     * @param key Key column value
+     * @return Page number and offset or null if the row is not cached
+     */
+    private int[] locate(int key) {
+        int keyIndex = columnIndex(keyColumn);
+        for (Map.Entry<Integer, Object[][]> entry : pages.entrySet()) {
+            Object[][] rows = entry.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (((Number) rows[i][keyIndex]).intValue() == key) return new int[]{entry.getKey(), i};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reloads the row count and drops the cached pages if rows were added, removed or moved
+     * @param force Drop the pages even if the count did not change
+     */
+    private void reloadCount(boolean force) {
+        int requestGeneration = generation;
+        executor.execute(() -> {
+            try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+                int newCount = count(conn);
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration != generation) return;
+                    if (force || newCount != rowCount) {
+                        rowCount = newCount;
+                        invalidate();
+                    }
+                });
+            } catch (SQLException e) {
+                System.err.println("Couldn't count rows of " + source + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Starts a background fetch of the page unless it is already on its way
+     * @param page Page number
+     */
+    private void requestPage(int page) {
+        if (!pendingPages.add(page)) return;
+
+        int known = Math.min(page, boundaries.size() - 1);
+        Object[] from = boundaries.get(known);
+        int requestGeneration = generation;
+        SortOrder requestOrder = order;
+
+        executor.execute(() -> {
+            try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+                List<Object[]> found = known < page ? findBoundaries(conn, requestOrder, from, page - known) : List.of();
+                Object[] start = found.isEmpty() ? from : found.get(found.size() - 1);
+                Object[][] rows = known < page && found.size() < page - known
+                        ? new Object[0][] : fetchPage(conn, requestOrder, start);
+                SwingUtilities.invokeLater(() -> applyPage(requestGeneration, page, known, found, rows));
+            } catch (SQLException e) {
+                System.err.println("Couldn't load page " + page + " of " + source + ": " + e.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration == generation) pendingPages.remove(page);
+                });
+            }
+        });
+    }
+
+    /**
+     * Stores a fetched page on the EDT if the model was not re-sorted or invalidated in the meantime
+     */
+    private void applyPage(int requestGeneration, int page, int known, List<Object[]> found, Object[][] rows) {
+        if (requestGeneration != generation) return;
+        pendingPages.remove(page);
+        for (int i = 0; i < found.size(); i++) {
+            if (boundaries.size() == known + 1 + i) boundaries.add(found.get(i));
+        }
+        storePage(page, rows);
+
+        int first = page * pageSize;
+        if (first < rowCount) fireTableRowsUpdated(first, Math.min(rowCount, first + pageSize) - 1);
+    }
+
+    /**
+     * Caches a page and remembers where the next page starts
+     */
+    private void storePage(int page, Object[][] rows) {
+        pages.put(page, rows);
+        if (rows.length == pageSize && boundaries.size() == page + 1) {
+            boundaries.add(sortKey(rows[rows.length - 1]));
+        }
+    }
+
+    /**
+     * Reads the sort key of a row
+     */
+    private Object[] sortKey(Object[] row) {
+        int keyIndex = columnIndex(keyColumn);
+        if (order.isKeyOrder()) return new Object[]{row[keyIndex]};
+        return new Object[]{row[columnIndex(order.column)], row[keyIndex]};
+    }
+
+    private int columnIndex(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Unknown column " + name);
+    }
+
+    /**
+     * Fetches one page starting after the given sort key
+     */
+    private Object[][] fetchPage(Connection conn, SortOrder order, Object[] after) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(pageQuery(order, after != null))) {
+            int index = bindKey(ps, after, 1);
+            ps.setInt(index, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                return readRows(rs);
+            }
+        }
+    }
+
+    /**
+     * Finds the sort keys ending the next pages in one round trip by numbering only the key columns
+     * @param order Sort order the boundaries belong to
+     * @param after Sort key before the first page to look at, null for the start
+     * @param count Number of page boundaries to find
+     * @return Found boundaries, fewer than requested if the source ends earlier
+     */
+    private List<Object[]> findBoundaries(Connection conn, SortOrder order, Object[] after, int count) throws SQLException {
+        String keys = order.isKeyOrder() ? quote(keyColumn) : quote(order.column) + ", " + quote(keyColumn);
+        String sql = "SELECT " + keys + " FROM (SELECT " + keys + ", ROW_NUMBER() OVER (ORDER BY " + order.orderBy() + ") AS rn"
+                + " FROM " + quote(source) + (after != null ? " WHERE " + order.keysetPredicate() : "") + ") b"
+                + " WHERE MOD(rn, ?) = 0 AND rn <= ? ORDER BY rn";
+
+        List<Object[]> found = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = bindKey(ps, after, 1);
+            ps.setInt(index, pageSize);
+            ps.setLong(index + 1, (long) pageSize * count);
+            try (ResultSet rs = ps.executeQuery()) {
+                int width = order.isKeyOrder() ? 1 : 2;
+                while (rs.next()) {
+                    Object[] key = new Object[width];
+                    for (int i = 0; i < width; i++) key[i] = rs.getObject(i + 1);
+                    found.add(key);
+                }
+            }
+        }
+        return found;
+    }
+
+    private int count(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(countQuery)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private String pageQuery(SortOrder order, boolean withKeyset) {
+        return "SELECT * FROM " + quote(source) + (withKeyset ? " WHERE " + order.keysetPredicate() : "")
+                + " ORDER BY " + order.orderBy() + " LIMIT ?";
+    }
+
+    private static int bindKey(PreparedStatement ps, Object[] key, int index) throws SQLException {
+        if (key == null) return index;
+        for (Object value : key) ps.setObject(index++, value);
+        return index;
+    }
+
+    private Object[][] readRows(ResultSet rs) throws SQLException {
+        int columns = rs.getMetaData().getColumnCount();
+        List<Object[]> rows = new ArrayList<>(pageSize);
+        while (rs.next()) {
+            Object[] row = new Object[columns];
+            for (int i = 0; i < columns; i++) {
+                Object value = rs.getObject(i + 1);
+                row[i] = columnDecoders[i] == null ? value : columnDecoders[i].decode(value);
+            }
+            rows.add(row);
+        }
+        return rows.toArray(new Object[0][]);
+    }
+
+    private static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    /**
+     * Immutable sort column and direction, a sort on the key column alone uses a one column keyset
+     */
+    private class SortOrder {
+        final String column;
+        final boolean ascending;
+
+        SortOrder(String column, boolean ascending) {
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        boolean isKeyOrder() {
+            return column.equals(keyColumn);
+        }
+
+        String keysetPredicate() {
+            String op = ascending ? ">" : "<";
+            if (isKeyOrder()) return quote(keyColumn) + " " + op + " ?";
+            return "(" + quote(column) + ", " + quote(keyColumn) + ") " + op + " (?, ?)";
+        }
+
+        String orderBy() {
+            String dir = ascending ? " ASC" : " DESC";
+            if (isKeyOrder()) return quote(keyColumn) + dir;
+            return quote(column) + dir + ", " + quote(keyColumn) + dir;
+        }
+    }
+}
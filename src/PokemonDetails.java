@@ -0,0 +1,69 @@
+/**
+ * One row of view_detailed_pokemons: a Pokémon with its trainer name, stats and types
+ */
+public class PokemonDetails {
+    private final int id;
+    private final String nickname;
+    private final String rarity;
+    private final String trainerName;
+    private final int hp;
+    private final int attack;
+    private final int defense;
+    private final long typeMask;
+    private final int version;
+
+    public PokemonDetails(int id, String nickname, String rarity, String trainerName, int hp, int attack, int defense,
+                          long typeMask, int version) {
+        this.id = id;
+        this.nickname = nickname;
+        this.rarity = rarity;
+        this.trainerName = trainerName;
+        this.hp = hp;
+        this.attack = attack;
+        this.defense = defense;
+        this.typeMask = typeMask;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public String getRarity() {
+        return rarity;
+    }
+
+    public String getTrainerName() {
+        return trainerName;
+    }
+
+    public int getHp() {
+        return hp;
+    }
+
+    public int getAttack() {
+        return attack;
+    }
+
+    public int getDefense() {
+        return defense;
+    }
+
+    /**
+     * @return Type mask, see TypeDictionary.mask
+     */
+    public long getTypeMask() {
+        return typeMask;
+    }
+
+    /**
+     * @return Row version, raised by every change of the Pokémon
+     */
+    public int getVersion() {
+        return version;
+    }
+}
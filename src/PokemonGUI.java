@@ -1,9 +1,37 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableModel;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 /**
  * GUI class for the Pokémon Database Manager
@@ -14,28 +42,206 @@ public class PokemonGUI extends JFrame {
     private JTable typesTable;
     private JTable statsTable;
     private JTable linkTable;
-    private final PokemonRepository pokemonRepo = new MySQLPokemonRepository();
-    private final TrainerRepository trainerRepo = new MySQLTrainerRepository();
-    private final TypeRepository typeRepo = new MySQLTypeRepository();
+    private JTable diagnosticsTable;
+    private JTextArea diagnosticsSummary;
+    private final PokemonRepository pokemonRepo = RepositoryFactory.getInstance().getPokemonRepository();
+    private final TrainerRepository trainerRepo = RepositoryFactory.getInstance().getTrainerRepository();
+    private final TypeRepository typeRepo = RepositoryFactory.getInstance().getTypeRepository();
+    private final InMemoryStore memoryStore = RepositoryFactory.getInstance().getStore();
+    private final WriteBehindQueue writeBehind = RepositoryFactory.getInstance().getWriteBehindQueue();
+    private final boolean saveSnapshotOnExit = RepositoryFactory.getInstance().getSnapshotPath() != null
+            && !RepositoryFactory.getInstance().isReadOnly()
+            && DatabaseConfig.getInstance().getBooleanProperty("snapshot.saveOnExit", false);
+    private final NameIndex trainerIndex = new NameIndex("trainers", trainerRepo::scanTrainerNames, ChangeSet::getTrainerIds);
+    private final NameIndex nicknameIndex = new NameIndex("nicknames", pokemonRepo::scanNicknames, ChangeSet::getPokemonIds);
+    private final ChangeLogPoller changePoller = memoryStore == null
+            ? ChangeLogPoller.fromConfig(() -> SwingUtilities.invokeLater(this::refreshAllData)) : null;
+
+    private static final String KEEP_VALUE = "--- Keep ---";
+    private static final String ANY_VALUE = "--- Any ---";
+    private static final String[] POKEMON_FIELDS = {"Name", "Rarity", "HP", "Attack", "Defense", "Types"};
+    private static final String[] TRAINER_FIELDS = {"Trainer Name", "Experience (XP)", "Gym Leader"};
+    private static final int SUGGESTIONS = 10;
+    private static final String[] SEARCH_COLUMNS = {"id", "nickname", "rarity", "trainer_name", "hp", "attack", "defense", "types"};
+    private static final PokemonQuery.Sort[] SEARCH_SORTS = {PokemonQuery.Sort.ID, PokemonQuery.Sort.NICKNAME, null, null,
+            PokemonQuery.Sort.HP, PokemonQuery.Sort.ATTACK, PokemonQuery.Sort.DEFENSE, null};
+    private static final LatencyHistogram BUILD_LATENCY = Metrics.getInstance().histogram("PokemonGUI.buildTableModel");
+
+    private JTabbedPane tabbedPane;
+    private final Map<JTable, ModelLoader> tableLoaders = new LinkedHashMap<>();
+    private final Map<Component, JTable> tabTables = new HashMap<>();
+    private final Map<JTable, Integer> loadGenerations = new HashMap<>();
+    private final Set<JTable> staleTables = new HashSet<>();
+    private final int searchLimit = DatabaseConfig.getInstance().getIntProperty("search.limit", PokemonQuery.DEFAULT_LIMIT);
+    private final Timer filterDebounce = new Timer(DatabaseConfig.getInstance().getIntProperty("search.debounceMillis", 300),
+            e -> applyPokemonFilter());
 
     /**
-     * Initializes the main window and loads initial data
+     * Criteria of the Pokémon filter bar, null shows all Pokémon, read by the loader threads
+     */
+    private volatile PokemonQuery pokemonFilter;
+    private PokemonQuery.Sort filterSort = PokemonQuery.Sort.ID;
+    private boolean filterAscending = true;
+    private boolean fillingFilterChoices;
+    private JTextField filterNickname;
+    private JComboBox<String> filterRarity;
+    private JTextField filterTrainer;
+    private Integer filterTrainerId;
+    private Integer selectAfterSearch;
+    private JComboBox<Object> filterType;
+    private final JTextField[] filterRanges = new JTextField[6];
+    private JLabel filterStatus;
+
+    private static final String[] STATS_REPORTS = {"Summary", "Top K", "Histogram"};
+    private final int statsBuckets = DatabaseConfig.getInstance().getIntProperty("stats.buckets", 20);
+    private JComboBox<String> statsReportChoice;
+    private JComboBox<StatAnalytics.Stat> statsStatChoice;
+    private JComboBox<StatAnalytics.Grouping> statsGroupingChoice;
+    private JComboBox<String> statsRarityChoice;
+    private JComboBox<Object> statsTypeChoice;
+    private JTextField statsTopK;
+    private JLabel statsStatus;
+
+    /**
+     * Report shown in the Stats tab, replaced on the EDT and read by the loader threads
+     */
+    private volatile StatsRequest statsRequest = new StatsRequest(STATS_REPORTS[0], StatAnalytics.Stat.HP,
+            StatAnalytics.Grouping.NONE, null, null, 10);
+    /**
+     * Stat columns of all Pokémon, loaded by the first report and dropped when a Pokémon changes
+     */
+    private volatile StatAnalytics statAnalytics;
+
+    private final ExecutorService tableLoader = Executors.newFixedThreadPool(5, r -> {
+        Thread t = new Thread(r, "table-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Initializes the main window and loads the visible tab in the background,
+     * the other tabs are loaded when they are opened for the first time
      */
     public PokemonGUI() {
         setTitle("Pokémon Database Manager");
         setSize(1200, 750);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
+        if (writeBehind != null || saveSnapshotOnExit) {
+            setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    exitApplication();
+                }
+            });
+        }
+        if (writeBehind != null) {
+            setTitle(getTitle() + " (write-behind)");
+            writeBehind.addListener((error, lost) -> SwingUtilities.invokeLater(() -> {
+                showError(lost + " queued edit(s) could not be saved and were discarded.\nDetails: " + error.getMessage());
+                refreshAllData();
+            }));
+        }
 
-        JTabbedPane tabbedPane = new JTabbedPane();
-        tabbedPane.addTab("Pokémon", createPokemonPanel());
-        tabbedPane.addTab("Trainers", createTrainerPanel());
-        tabbedPane.addTab("Types", createTypePanel());
-        tabbedPane.addTab("Stats", createStatsPanel());
-        tabbedPane.addTab("Links", createLinkPanel());
+        tabbedPane = new JTabbedPane();
+        if (memoryStore != null) {
+            setTitle(getTitle() + (RepositoryFactory.getInstance().isReadOnly() ? " (read-only snapshot)" : " (in-memory)"));
+            addTableTab("Pokémon", createPokemonPanel(), pokemonTable, filtered(memoryStore::pokemonTable));
+            addTableTab("Trainers", createTrainerPanel(), trainerTable, memoryStore::trainerTable);
+            addTableTab("Types", createTypePanel(), typesTable, memoryStore::typeTable);
+            addTableTab("Stats", createStatsPanel(), statsTable, this::statsReport);
+            addTableTab("Links", createLinkPanel(), linkTable, memoryStore::linkTable);
+        } else {
+            int pageSize = DatabaseConfig.getInstance().getIntProperty("table.pageSize", 200);
+            int cachedPages = DatabaseConfig.getInstance().getIntProperty("table.cachedPages", 50);
+            addTableTab("Pokémon", createPokemonPanel(), pokemonTable, filtered(() -> new PagedTableModel(
+                    "view_detailed_pokemons", "id",
+                    "SELECT COUNT(*) FROM pokemons p JOIN trainers t ON p.trainer_id = t.id JOIN pokemon_stats ps ON p.id = ps.pokemon_id",
+                    Set.of("id", "trainer_name", "hp", "attack", "defense"),
+                    Map.of("types", value -> value == null ? null : TypeDictionary.get().getNames(((Number) value).longValue())),
+                    pageSize, cachedPages, tableLoader)));
+            addTableTab("Trainers", createTrainerPanel(), trainerTable, () -> new PagedTableModel(
+                    "view_trainer_performance", "id", "SELECT COUNT(*) FROM trainers",
+                    Set.of("id", "name", "count_of_pokemon", "average_attack"), pageSize, cachedPages, tableLoader));
+            addTableTab("Types", createTypePanel(), typesTable, () -> buildTableModel("SELECT * FROM types"));
+            addTableTab("Stats", createStatsPanel(), statsTable, this::statsReport);
+            addTableTab("Links", createLinkPanel(), linkTable, () -> buildTableModel("SELECT * FROM pokemon_types"));
+        }
+        tabbedPane.addTab("Diagnostics", createDiagnosticsPanel());
+        installServerSort(pokemonTable);
+        installServerSort(trainerTable);
+        installSearchSort();
+        tabbedPane.addChangeListener(e -> loadVisibleTabIfStale());
 
         add(tabbedPane);
-        refreshAllData();
+        staleTables.addAll(tableLoaders.keySet());
+        InMemoryStore snapshot = RepositoryFactory.getInstance().takeStartupSnapshot();
+        if (snapshot != null) showSnapshot(snapshot);
+        loadVisibleTabIfStale();
+        ChangeBus.getInstance().addListener(changes -> SwingUtilities.invokeLater(() -> applyChanges(changes)));
+        trainerIndex.start();
+        nicknameIndex.start();
+        if (changePoller != null) changePoller.start();
+    }
+
+    /**
+     * Fills the tables from the snapshot read at start, so the window shows data before the database answers
+     * The tables stay stale and are replaced by the database rows when their tab is shown,
+     * without a database the snapshot rows stay visible.
+     * @param snapshot Store with the snapshot
+     */
+    private void showSnapshot(InMemoryStore snapshot) {
+        pokemonTable.setModel(snapshot.pokemonTable());
+        trainerTable.setModel(snapshot.trainerTable());
+        typesTable.setModel(snapshot.typeTable());
+        linkTable.setModel(snapshot.linkTable());
+    }
+
+    /**
+     * Adds a tab whose table is filled by a loader, the loads are timed as "PokemonGUI.load.<title>"
+     * @param title Tab title
+     * @param panel Tab content
+     * @param table Table inside the panel
+     * @param loader Creates the table model, runs on a loader thread
+     */
+    private void addTableTab(String title, JPanel panel, JTable table, ModelLoader loader) {
+        tabbedPane.addTab(title, panel);
+        tabTables.put(panel, table);
+        LatencyHistogram latency = Metrics.getInstance().histogram("PokemonGUI.load." + title);
+        tableLoaders.put(table, () -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                TableModel model = loader.load();
+                failed = false;
+                return model;
+            } finally {
+                latency.record(System.nanoTime() - start, failed);
+            }
+        });
+    }
+
+    /**
+     * Lets header clicks sort a paged table on the server
+     * @param table Table showing a PagedTableModel
+     */
+    private void installServerSort(JTable table) {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (!(table.getModel() instanceof PagedTableModel)) return;
+                PagedTableModel model = (PagedTableModel) table.getModel();
+                int column = table.columnAtPoint(e.getPoint());
+                if (column < 0) return;
+                model.toggleSort(table.convertColumnIndexToModel(column));
+                for (int i = 0; i < table.getColumnCount(); i++) {
+                    TableColumn tableColumn = table.getColumnModel().getColumn(i);
+                    tableColumn.setHeaderValue(model.getColumnName(tableColumn.getModelIndex()));
+                }
+                table.getTableHeader().repaint();
+            }
+        });
     }
 
     /**
@@ -45,40 +251,41 @@ public class PokemonGUI extends JFrame {
     private JPanel createPokemonPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         pokemonTable = new JTable();
+        pokemonTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         panel.add(new JScrollPane(pokemonTable), BorderLayout.CENTER);
+        panel.add(createPokemonFilterBar(), BorderLayout.NORTH);
 
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnRefresh = new JButton("Refresh");
         JButton btnCatch = new JButton("Catch New Pokémon");
         JButton btnEdit = new JButton("Edit Pokémon");
         JButton btnImport = new JButton("Import CSV");
+        JButton btnExport = new JButton("Export");
         JButton btnDelete = new JButton("Release Pokémon");
 
-        btnRefresh.addActionListener(e -> refreshAllData());
+        btnRefresh.addActionListener(e -> refreshData());
         btnCatch.addActionListener(e -> showCatchPokemonDialog());
         btnEdit.addActionListener(e -> showEditPokemonDialog());
+        btnExport.addActionListener(e -> showExportDialog("view_detailed_pokemons"));
         btnImport.addActionListener(e -> {
             JFileChooser chooser = new JFileChooser();
+            JCheckBox bulkLoadBox = new JCheckBox("Bulk load (LOAD DATA)");
+            chooser.setAccessory(bulkLoadBox);
             if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-                try {
-                    pokemonRepo.importPokemonsFromCSV(chooser.getSelectedFile().getAbsolutePath());
-                    refreshAllData();
-                    JOptionPane.showMessageDialog(this, "Pokémons were successfully imported");
-                } catch (SQLException ex) { showError(ex.getMessage()); }
+                ImportMode mode = bulkLoadBox.isSelected() ? ImportMode.BULK_LOAD : ImportMode.JDBC;
+                importPokemonsInBackground(chooser.getSelectedFile().getAbsolutePath(), mode, btnImport);
             }
         } );
         btnDelete.addActionListener(e -> {
-            int row = pokemonTable.getSelectedRow();
-            if (row != -1) {
-                try {
-                    Object value = pokemonTable.getValueAt(row, 0);
-                    int id = Integer.parseInt(value.toString());
-
-                    pokemonRepo.deletePokemon(id);
-                    refreshAllData();
-                    JOptionPane.showMessageDialog(this, "Pokémon was released");
-                } catch (Exception ex) { showError("Please select a Pokémon from the table first"); }
+            int[] ids = selectedIds(pokemonTable);
+            if (ids.length == 0) {
+                showError("Please select a Pokémon from the table first");
+                return;
             }
+            if (ids.length > 1 && JOptionPane.showConfirmDialog(this, "Release " + ids.length + " Pokémon?",
+                    "Release Pokémon", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
+            runBulkInBackground(() -> pokemonRepo.deletePokemons(ids),
+                    released -> released == 1 ? "Pokémon was released" : released + " Pokémon were released");
         });
 
 
@@ -86,68 +293,383 @@ public class PokemonGUI extends JFrame {
         controls.add(btnCatch);
         controls.add(btnEdit);
         controls.add(btnImport);
+        controls.add(btnExport);
         controls.add(btnDelete);
         panel.add(controls, BorderLayout.SOUTH);
         return panel;
     }
 
     /**
-     * Initializes the form for editing new Pokémon
+     * Creates the filter bar above the Pokémon table
+     * Every change restarts the debounce timer, the search runs once the user pauses typing.
+     * The name field suggests nicknames, picking one searches it and selects that Pokémon,
+     * the trainer field suggests trainers and filters by the picked one
+     * @return Filter bar
      */
-    private void showEditPokemonDialog() {
-        int row = pokemonTable.getSelectedRow();
-        if (row == -1) {
-            JOptionPane.showMessageDialog(this, "Select a pokémon to edit!");
-            return;
+    private JPanel createPokemonFilterBar() {
+        JPanel bar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterNickname = new JTextField(10);
+        filterRarity = new JComboBox<>(new String[]{ANY_VALUE, "Common", "Rare", "Legendary"});
+        filterTrainer = new JTextField(10);
+        filterType = new JComboBox<>(new Object[]{ANY_VALUE});
+        filterStatus = new JLabel();
+        JButton btnClear = new JButton("Clear");
+
+        DocumentListener typing = new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { filterDebounce.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { filterDebounce.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { filterDebounce.restart(); }
+        };
+        filterDebounce.setRepeats(false);
+        filterNickname.getDocument().addDocumentListener(typing);
+        for (int i = 0; i < filterRanges.length; i++) {
+            filterRanges[i] = new JTextField(3);
+            filterRanges[i].getDocument().addDocumentListener(typing);
+        }
+        for (JComboBox<?> combo : List.of(filterRarity, filterType)) {
+            combo.addActionListener(e -> {
+                if (!fillingFilterChoices) filterDebounce.restart();
+            });
+        }
+        new SuggestionPopup(filterNickname, nicknameIndex, SUGGESTIONS, match -> {
+            if (match != null) selectAfterSearch = match.getId();
+        });
+        new SuggestionPopup(filterTrainer, trainerIndex, SUGGESTIONS, match -> {
+            filterTrainerId = match == null ? null : match.getId();
+            filterDebounce.restart();
+        });
+        reloadChoicesOnOpen(filterType, () -> {
+            List<Object> types = new ArrayList<>();
+            for (Types t : TypeDictionary.get().getTypes()) types.add(new TypeWrapper(t));
+            return types;
+        });
+        btnClear.addActionListener(e -> {
+            filterNickname.setText("");
+            for (JTextField field : filterRanges) field.setText("");
+            filterTrainer.setText("");
+            filterRarity.setSelectedIndex(0);
+            filterType.setSelectedIndex(0);
+        });
+        pokemonTable.addPropertyChangeListener("model", e -> {
+            updateFilterStatus();
+            selectSearchedPokemon();
+        });
+
+        bar.add(new JLabel("Name:"));
+        bar.add(filterNickname);
+        bar.add(new JLabel("Rarity:"));
+        bar.add(filterRarity);
+        bar.add(new JLabel("Trainer:"));
+        bar.add(filterTrainer);
+        bar.add(new JLabel("Type:"));
+        bar.add(filterType);
+        String[] ranges = {"HP:", "Atk:", "Def:"};
+        for (int i = 0; i < ranges.length; i++) {
+            bar.add(new JLabel(ranges[i]));
+            bar.add(filterRanges[2 * i]);
+            bar.add(new JLabel("-"));
+            bar.add(filterRanges[2 * i + 1]);
         }
+        bar.add(btnClear);
+        bar.add(filterStatus);
+        return bar;
+    }
+
+    /**
+     * Source of the choices of a filter combo box
+     */
+    private interface ChoiceLoader {
+        List<Object> load() throws SQLException;
+    }
 
+    /**
+     * Refills a filter combo box each time it is opened, the first item stays "--- Any ---"
+     * and the selection is kept if the chosen entry still exists
+     * @param combo Combo box of the filter bar
+     * @param loader Current choices
+     */
+    private void reloadChoicesOnOpen(JComboBox<Object> combo, ChoiceLoader loader) {
+        combo.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                String selected = combo.getSelectedItem().toString();
+                try {
+                    List<Object> choices = loader.load();
+                    fillingFilterChoices = true;
+                    combo.removeAllItems();
+                    combo.addItem(ANY_VALUE);
+                    for (Object choice : choices) {
+                        combo.addItem(choice);
+                        if (choice.toString().equals(selected)) combo.setSelectedItem(choice);
+                    }
+                } catch (SQLException ex) {
+                    showError(ex.getMessage());
+                } finally {
+                    fillingFilterChoices = false;
+                }
+            }
+
+            @Override public void popupMenuWillBecomeInvisible(PopupMenuEvent e) { }
+            @Override public void popupMenuCanceled(PopupMenuEvent e) { }
+        });
+    }
+
+    /**
+     * Reads the filter bar and reloads the Pokémon table, called by the debounce timer
+     */
+    private void applyPokemonFilter() {
+        PokemonQuery query = new PokemonQuery()
+                .nicknamePrefix(filterNickname.getText().trim())
+                .sort(filterSort, filterAscending)
+                .limit(searchLimit);
         try {
-            int id = Integer.parseInt(pokemonTable.getValueAt(row, 0).toString());
-            String currentNick = pokemonTable.getValueAt(row, 1).toString();
-            String currentRarity = pokemonTable.getValueAt(row, 2).toString();
-            String currentHP = pokemonTable.getValueAt(row, 4).toString();
-            String currentAtk = pokemonTable.getValueAt(row, 5).toString();
-            String currentDef = pokemonTable.getValueAt(row, 6).toString();
+            query.hp(optionalInt(filterRanges[0]), optionalInt(filterRanges[1]))
+                    .attack(optionalInt(filterRanges[2]), optionalInt(filterRanges[3]))
+                    .defense(optionalInt(filterRanges[4]), optionalInt(filterRanges[5]));
+        } catch (NumberFormatException e) {
+            filterStatus.setText("HP, attack and defense must be whole numbers");
+            return;
+        }
+        if (filterRarity.getSelectedIndex() > 0) query.rarity((String) filterRarity.getSelectedItem());
+        query.trainer(filterTrainerId);
+        if (filterType.getSelectedItem() instanceof TypeWrapper) {
+            query.type(((TypeWrapper) filterType.getSelectedItem()).type.getId());
+        }
+        pokemonFilter = query.isFiltering() ? query : null;
+        loadTables(List.of(pokemonTable));
+    }
 
-            JTextField nickField = new JTextField(currentNick);
-            JComboBox<String> rarityCombo = new JComboBox<>(new String[]{"Common", "Rare", "Legendary"});
-            rarityCombo.setSelectedItem(currentRarity);
-            JTextField hpField = new JTextField(currentHP);
-            JTextField atkField = new JTextField(currentAtk);
-            JTextField defField = new JTextField(currentDef);
+    /**
+     * Wraps the loader of the Pokémon tab so that it searches while the filter bar is in use
+     * @param all Loader showing all Pokémon
+     * @return Loader honouring the filter
+     */
+    private ModelLoader filtered(ModelLoader all) {
+        return () -> {
+            PokemonQuery query = pokemonFilter;
+            return query == null ? all.load() : searchTableModel(query);
+        };
+    }
 
-            List<Types> allTypes = typeRepo.getAllTypes();
-            JComboBox<TypeWrapper> type1Combo = new JComboBox<>();
-            JComboBox<TypeWrapper> type2Combo = new JComboBox<>();
-            type1Combo.addItem(new TypeWrapper(null));
-            type2Combo.addItem(new TypeWrapper(null));
+    /**
+     * Runs a search and builds a table with the columns of view_detailed_pokemons
+     * @param query Search criteria
+     * @return Table of the found Pokémon, the sorted column is marked with an arrow
+     * @throws SQLException If the query execution fails
+     */
+    private DefaultTableModel searchTableModel(PokemonQuery query) throws SQLException {
+        List<PokemonDetails> found = pokemonRepo.findPokemons(query);
+        Object[][] rows = new Object[found.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            PokemonDetails p = found.get(i);
+            rows[i] = new Object[]{p.getId(), p.getNickname(), p.getRarity(), p.getTrainerName(), p.getHp(),
+                    p.getAttack(), p.getDefense(), p.getTypeMask() == 0 ? null : TypeDictionary.get().getNames(p.getTypeMask())};
+        }
+        String[] columns = SEARCH_COLUMNS.clone();
+        for (int i = 0; i < columns.length; i++) {
+            if (SEARCH_SORTS[i] == query.getSort()) columns[i] += query.isAscending() ? " ▲" : " ▼";
+        }
+        return new DefaultTableModel(rows, columns);
+    }
 
-            for (Types t : allTypes) {
-                type1Combo.addItem(new TypeWrapper(t));
-                type2Combo.addItem(new TypeWrapper(t));
+    /**
+     * Lets header clicks sort the search results, the search runs again on the server
+     */
+    private void installSearchSort() {
+        pokemonTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (pokemonFilter == null || pokemonTable.getModel() instanceof PagedTableModel) return;
+                int column = pokemonTable.columnAtPoint(e.getPoint());
+                if (column < 0) return;
+                PokemonQuery.Sort sort = SEARCH_SORTS[pokemonTable.convertColumnIndexToModel(column)];
+                if (sort == null) return;
+                filterAscending = sort != filterSort || !filterAscending;
+                filterSort = sort;
+                applyPokemonFilter();
             }
+        });
+    }
 
-            Object[] message = {
-                    "Name:", nickField,
-                    "Rarity:", rarityCombo,
-                    "HP:", hpField,
-                    "Attack:", atkField,
-                    "Defense:", defField,
-                    "Type 1:", type1Combo,
-                    "Type 2:", type2Combo
-            };
+    /**
+     * Shows how many Pokémon the filter found
+     */
+    private void updateFilterStatus() {
+        if (pokemonFilter == null || pokemonTable.getModel() instanceof PagedTableModel) {
+            filterStatus.setText("");
+            return;
+        }
+        int count = pokemonTable.getModel().getRowCount();
+        filterStatus.setText(count >= searchLimit ? "First " + count + " matches" : count + " matches");
+    }
 
-            int option = JOptionPane.showConfirmDialog(this, message, "Edit Pokémon ID: " + id, JOptionPane.OK_CANCEL_OPTION);
+    /**
+     * Selects the Pokémon picked in the name suggestions once the search shows it
+     */
+    private void selectSearchedPokemon() {
+        if (selectAfterSearch == null || pokemonFilter == null) return;
+        TableModel model = pokemonTable.getModel();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if (selectAfterSearch.equals(model.getValueAt(row, 0))) {
+                int viewRow = pokemonTable.convertRowIndexToView(row);
+                pokemonTable.setRowSelectionInterval(viewRow, viewRow);
+                pokemonTable.scrollRectToVisible(pokemonTable.getCellRect(viewRow, 0, true));
+                selectAfterSearch = null;
+                return;
+            }
+        }
+    }
 
-            if (option == JOptionPane.OK_OPTION) {
-                pokemonRepo.updatePokemon(
-                        id,
-                        nickField.getText(),
-                        (String) rarityCombo.getSelectedItem(),
-                        Integer.parseInt(hpField.getText()),
-                        Integer.parseInt(atkField.getText()),
-                        Integer.parseInt(defField.getText())
-                );
+    /**
+     * Initializes the form for setting rarity and stats of all selected Pokémon, empty fields keep the current values
+     */
+    private void showBulkEditPokemonDialog() {
+        int[] ids = selectedIds(pokemonTable);
+        if (ids.length == 0) return;
+
+        JComboBox<String> rarityCombo = new JComboBox<>(new String[]{KEEP_VALUE, "Common", "Rare", "Legendary"});
+        JTextField hpField = new JTextField();
+        JTextField atkField = new JTextField();
+        JTextField defField = new JTextField();
+        Object[] message = {
+                "Empty fields are not changed",
+                "Rarity:", rarityCombo,
+                "HP:", hpField,
+                "Attack:", atkField,
+                "Defense:", defField
+        };
+
+        int option = JOptionPane.showConfirmDialog(this, message, "Edit " + ids.length + " Pokémon", JOptionPane.OK_CANCEL_OPTION);
+        if (option != JOptionPane.OK_OPTION) return;
+        String rarity = KEEP_VALUE.equals(rarityCombo.getSelectedItem()) ? null : (String) rarityCombo.getSelectedItem();
+        Integer hp, attack, defense;
+        try {
+            hp = optionalInt(hpField);
+            attack = optionalInt(atkField);
+            defense = optionalInt(defField);
+        } catch (NumberFormatException ex) {
+            showError("Invalid Pokémon data");
+            return;
+        }
+        runBulkInBackground(() -> pokemonRepo.updatePokemons(ids, rarity, hp, attack, defense),
+                updated -> updated + " Pokémon were updated");
+    }
+
+    /**
+     * Runs a bulk change of the selected rows on a background thread, so large selections don't freeze the window
+     * The count is reported and the views are refreshed once it is done
+     * @param action Repository call returning the number of changed rows
+     * @param message Builds the report from the count
+     */
+    private void runBulkInBackground(Callable<Integer> action, IntFunction<String> message) {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return action.call();
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                refreshData();
+                try {
+                    JOptionPane.showMessageDialog(PokemonGUI.this, message.apply(get()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    showError(ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Reads an optional number from a form field
+     * @param field Form field
+     * @return Number or null if the field is empty
+     * @throws NumberFormatException If the text is not a number
+     */
+    private static Integer optionalInt(JTextField field) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? null : Integer.valueOf(text);
+    }
+
+    /**
+     * Reads the IDs in the first column of the selected rows
+     * Rows of a paged table whose page is not loaded are skipped
+     * @param table Table with the ID in its first column
+     * @return Selected IDs
+     */
+    private static int[] selectedIds(JTable table) {
+        int[] rows = table.getSelectedRows();
+        int[] ids = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            Object value = table.getValueAt(row, 0);
+            if (value instanceof Number) ids[count++] = ((Number) value).intValue();
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Initializes the form for editing new Pokémon
+     * The form starts from the stored Pokémon instead of the table row and is saved with a version check.
+     * If someone else saved the Pokémon meanwhile, the form opens again with both edits merged.
+     */
+    private void showEditPokemonDialog() {
+        int row = pokemonTable.getSelectedRow();
+        if (row == -1) {
+            JOptionPane.showMessageDialog(this, "Select a pokémon to edit!");
+            return;
+        }
+        if (pokemonTable.getSelectedRowCount() > 1) {
+            showBulkEditPokemonDialog();
+            return;
+        }
+
+        try {
+            int id = Integer.parseInt(pokemonTable.getValueAt(row, 0).toString());
+            PokemonDetails base = pokemonRepo.findPokemon(id);
+            PokemonDetails proposal = base;
+            String notice = null;
+            while (base != null) {
+                JTextField nickField = new JTextField(proposal.getNickname());
+                JComboBox<String> rarityCombo = new JComboBox<>(new String[]{"Common", "Rare", "Legendary"});
+                rarityCombo.setSelectedItem(proposal.getRarity());
+                JTextField hpField = new JTextField(String.valueOf(proposal.getHp()));
+                JTextField atkField = new JTextField(String.valueOf(proposal.getAttack()));
+                JTextField defField = new JTextField(String.valueOf(proposal.getDefense()));
+
+                List<Types> allTypes = TypeDictionary.get().getTypes();
+                JComboBox<TypeWrapper> type1Combo = new JComboBox<>();
+                JComboBox<TypeWrapper> type2Combo = new JComboBox<>();
+                type1Combo.addItem(new TypeWrapper(null));
+                type2Combo.addItem(new TypeWrapper(null));
+
+                for (Types t : allTypes) {
+                    type1Combo.addItem(new TypeWrapper(t));
+                    type2Combo.addItem(new TypeWrapper(t));
+                }
+                long bits = proposal.getTypeMask();
+                selectType(type1Combo, bits == 0 ? null : Long.numberOfTrailingZeros(bits) + 1);
+                bits &= bits - 1;
+                selectType(type2Combo, bits == 0 ? null : Long.numberOfTrailingZeros(bits) + 1);
+
+                List<Object> message = new ArrayList<>();
+                if (notice != null) message.add(notice);
+                message.addAll(Arrays.asList(
+                        "Name:", nickField,
+                        "Rarity:", rarityCombo,
+                        "HP:", hpField,
+                        "Attack:", atkField,
+                        "Defense:", defField,
+                        "Type 1:", type1Combo,
+                        "Type 2:", type2Combo
+                ));
+
+                int option = JOptionPane.showConfirmDialog(this, message.toArray(), "Edit Pokémon ID: " + id, JOptionPane.OK_CANCEL_OPTION);
+                if (option != JOptionPane.OK_OPTION) return;
 
                 TypeWrapper tw1 = (TypeWrapper) type1Combo.getSelectedItem();
                 TypeWrapper tw2 = (TypeWrapper) type2Combo.getSelectedItem();
@@ -155,16 +677,98 @@ public class PokemonGUI extends JFrame {
                 Integer t1Id = (tw1 != null && tw1.type != null) ? tw1.type.getId() : null;
                 Integer t2Id = (tw2 != null && tw2.type != null) ? tw2.type.getId() : null;
 
-                pokemonRepo.updatePokemonTypes(id, t1Id, t2Id);
-
-                refreshAllData();
-                JOptionPane.showMessageDialog(this, "Pokémon and types updated successfully!");
+                PokemonDetails mine = new PokemonDetails(id, nickField.getText(), (String) rarityCombo.getSelectedItem(),
+                        base.getTrainerName(), Integer.parseInt(hpField.getText()), Integer.parseInt(atkField.getText()),
+                        Integer.parseInt(defField.getText()), TypeDictionary.mask(t1Id, t2Id), base.getVersion());
+                UpdateResult<PokemonDetails> result = pokemonRepo.updatePokemonIfUnchanged(id, base.getVersion(),
+                        mine.getNickname(), mine.getRarity(), mine.getHp(), mine.getAttack(), mine.getDefense(), t1Id, t2Id);
+
+                switch (result.getStatus()) {
+                    case CONFLICT:
+                        PokemonDetails theirs = result.getCurrent();
+                        StringBuilder changes = new StringBuilder();
+                        Object[] merged = mergeEdits(POKEMON_FIELDS, pokemonValues(base), pokemonValues(mine),
+                                pokemonValues(theirs), changes);
+                        long mergedMask = merged[5].equals(pokemonValues(mine)[5]) ? mine.getTypeMask() : theirs.getTypeMask();
+                        proposal = new PokemonDetails(id, (String) merged[0], (String) merged[1], theirs.getTrainerName(),
+                                (Integer) merged[2], (Integer) merged[3], (Integer) merged[4], mergedMask, theirs.getVersion());
+                        base = theirs;
+                        notice = "Someone else saved this Pokémon while you were editing it." + changes
+                                + "\nOK saves the merged values, Cancel keeps theirs.";
+                        break;
+                    case DELETED:
+                        base = null;
+                        break;
+                    default:
+                        if (writeBehind == null) JOptionPane.showMessageDialog(this, "Pokémon and types updated successfully!");
+                        return;
+                }
             }
+            showError("Pokémon " + id + " does not exist anymore.");
         } catch (Exception e) {
             showError("Edit error: " + e.getMessage());
         }
     }
 
+    /**
+     * Selects the entry of a type in a type combo box
+     * @param combo Combo box filled with TypeWrapper entries
+     * @param typeId Type ID or null for the empty entry
+     */
+    private static void selectType(JComboBox<TypeWrapper> combo, Integer typeId) {
+        for (int i = 0; i < combo.getItemCount(); i++) {
+            Types type = combo.getItemAt(i).type;
+            if (typeId == null ? type == null : type != null && type.getId() == typeId) {
+                combo.setSelectedIndex(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the values of a Pokémon edited in the form, in the order of POKEMON_FIELDS
+     * @param p Pokémon
+     * @return Nickname, rarity, HP, attack, defense and type names
+     * @throws SQLException If the types can't be loaded
+     */
+    private static Object[] pokemonValues(PokemonDetails p) throws SQLException {
+        String types = TypeDictionary.get().getNames(p.getTypeMask());
+        return new Object[]{p.getNickname() == null ? "" : p.getNickname(), p.getRarity(), p.getHp(), p.getAttack(),
+                p.getDefense(), types.isEmpty() ? "None" : types};
+    }
+
+    /**
+     * Returns the values of a trainer edited in the form, in the order of TRAINER_FIELDS
+     * @param t Trainer
+     * @return Name, experience points and gym leader flag
+     */
+    private static Object[] trainerValues(Trainer t) {
+        return new Object[]{t.getName(), t.getXp(), t.isLeader()};
+    }
+
+    /**
+     * Merges an edit with the values someone else saved meanwhile, field by field
+     * A field changed only by the other side takes their value, a field changed on both sides keeps the edited one.
+     * @param labels Field names
+     * @param base Values when the form was opened
+     * @param mine Values entered in the form
+     * @param theirs Values stored now
+     * @param changes Receives one line per field the other side changed
+     * @return Merged values
+     */
+    private static Object[] mergeEdits(String[] labels, Object[] base, Object[] mine, Object[] theirs, StringBuilder changes) {
+        Object[] merged = new Object[base.length];
+        for (int i = 0; i < base.length; i++) {
+            boolean mineChanged = !Objects.equals(mine[i], base[i]);
+            merged[i] = mineChanged ? mine[i] : theirs[i];
+            if (Objects.equals(theirs[i], base[i]) || Objects.equals(theirs[i], mine[i])) continue;
+            changes.append("\n").append(labels[i]).append(mineChanged
+                    ? ": changed by both, yours is kept (theirs: " + theirs[i] + ")"
+                    : ": taken from theirs (" + theirs[i] + ")");
+        }
+        return merged;
+    }
+
     /**
      * Method for initializing the Trainer panel
      * @return Trainer Panel
@@ -172,6 +776,7 @@ public class PokemonGUI extends JFrame {
     private JPanel createTrainerPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         trainerTable = new JTable();
+        trainerTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         panel.add(new JScrollPane(trainerTable), BorderLayout.CENTER);
 
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -179,48 +784,237 @@ public class PokemonGUI extends JFrame {
         JButton btnAdd = new JButton("New Trainer");
         JButton btnEdit = new JButton("Edit Trainer");
         JButton btnImport = new JButton("Import from CSV");
+        JButton btnExport = new JButton("Export");
         JButton btnDelete = new JButton("Delete Trainer");
+        JButton btnVerify = new JButton("Verify Stats");
 
-        btnRefresh.addActionListener(e -> refreshAllData());
+        btnRefresh.addActionListener(e -> refreshData());
         btnAdd.addActionListener(e -> showAddTrainerDialog());
         btnEdit.addActionListener(e -> showEditTrainerDialog());
+        btnVerify.addActionListener(e -> verifyTrainerAggregates());
+        btnExport.addActionListener(e -> showExportDialog("view_trainer_performance"));
 
         btnImport.addActionListener(e -> {
             JFileChooser chooser = new JFileChooser();
+            JCheckBox bulkLoadBox = new JCheckBox("Bulk load (LOAD DATA)");
+            chooser.setAccessory(bulkLoadBox);
             if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-                try {
-                    trainerRepo.importTrainersFromCSV(chooser.getSelectedFile().getAbsolutePath());
-                    refreshAllData();
-                    JOptionPane.showMessageDialog(this, "Trainers were successfully imported");
-                } catch (SQLException ex) { showError(ex.getMessage()); }
+                ImportMode mode = bulkLoadBox.isSelected() ? ImportMode.BULK_LOAD : ImportMode.JDBC;
+                importTrainersInBackground(chooser.getSelectedFile().getAbsolutePath(), mode);
             }
         });
 
         btnDelete.addActionListener(e -> {
-            int row = trainerTable.getSelectedRow();
-            if (row != -1) {
-                try {
-                    Object value = trainerTable.getValueAt(row, 0);
-                    int id = Integer.parseInt(value.toString());
-
-                    trainerRepo.deleteTrainer(id);
-                    refreshAllData();
-                    JOptionPane.showMessageDialog(this, "Trainer was removed");
-                } catch (Exception ex) { showError("Please select a Trainer from the table first"); }
+            int[] ids = selectedIds(trainerTable);
+            if (ids.length == 0) {
+                showError("Please select a Trainer from the table first");
+                return;
             }
+            if (ids.length > 1 && JOptionPane.showConfirmDialog(this, "Delete " + ids.length + " trainers?",
+                    "Delete Trainer", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
+            runBulkInBackground(() -> trainerRepo.deleteTrainers(ids),
+                    removed -> removed == 1 ? "Trainer was removed" : removed + " trainers were removed");
         });
 
         controls.add(btnRefresh);
         controls.add(btnAdd);
         controls.add(btnEdit);
         controls.add(btnImport);
+        controls.add(btnExport);
         controls.add(btnDelete);
+        controls.add(btnVerify);
         panel.add(controls, BorderLayout.SOUTH);
         return panel;
     }
 
+    /**
+     * Checks the maintained trainer aggregates and offers to rebuild them when they differ
+     */
+    private void verifyTrainerAggregates() {
+        try {
+            List<Integer> mismatched = trainerRepo.verifyAggregates();
+            if (mismatched.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Trainer statistics are up to date.");
+                return;
+            }
+            int answer = JOptionPane.showConfirmDialog(this,
+                    "Statistics of " + mismatched.size() + " trainer(s) are out of date " + mismatched + ". Rebuild them now?",
+                    "Verify Stats", JOptionPane.YES_NO_OPTION);
+            if (answer == JOptionPane.YES_OPTION) {
+                trainerRepo.rebuildAggregates();
+                JOptionPane.showMessageDialog(this, "Trainer statistics were rebuilt.");
+            }
+        } catch (SQLException ex) {
+            showError(ex.getMessage());
+        }
+    }
+
+    /**
+     * Runs the Pokémon import on a background thread
+     * The tables are reloaded afterwards even if the import failed, the chunks committed before the error stay imported
+     * @param filePath Path to the CSV file
+     * @param mode Import method
+     * @param button Button disabled while the import runs
+     */
+    private void importPokemonsInBackground(String filePath, ImportMode mode, JButton button) {
+        button.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<ImportResult, Void>() {
+            @Override
+            protected ImportResult doInBackground() throws Exception {
+                return pokemonRepo.importPokemonsFromCSV(filePath, mode);
+            }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                refreshAllData();
+                try {
+                    JOptionPane.showMessageDialog(PokemonGUI.this, "Pokémons were successfully imported\n" + get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    showError(ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Runs the trainer import on a background thread and shows its progress
+     * @param filePath Path to the CSV file
+     * @param mode Import method
+     */
+    private void importTrainersInBackground(String filePath, ImportMode mode) {
+        ProgressMonitor monitor = new ProgressMonitor(this, "Importing trainers...", "", 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+
+        SwingWorker<ImportResult, String> worker = new SwingWorker<>() {
+            @Override
+            protected ImportResult doInBackground() throws Exception {
+                return trainerRepo.importTrainersFromCSV(filePath, mode, (bytes, total, rows, rowsPerSecond) -> {
+                    setProgress((int) Math.min(100, bytes * 100 / Math.max(1, total)));
+                    publish(String.format("%d trainers (%.0f rows/s)", rows, rowsPerSecond));
+                });
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                monitor.setNote(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                refreshAllData();
+                try {
+                    ImportResult result = get();
+                    JOptionPane.showMessageDialog(PokemonGUI.this, "Trainers were successfully imported\n" + result);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (CancellationException ex) {
+                    showError("Import was cancelled, batches committed before stay imported.");
+                } catch (ExecutionException ex) {
+                    showError(ex.getCause().getMessage());
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) monitor.setProgress((Integer) evt.getNewValue() * 10);
+            if (monitor.isCanceled()) worker.cancel(true);
+        });
+        worker.execute();
+    }
+
+    /**
+     * Asks for the table, format and file of an export and starts it
+     * In in-memory mode only the tables the store keeps are offered, exported from a snapshot
+     * @param table Table selected at first
+     */
+    private void showExportDialog(String table) {
+        Map<String, ModelLoader> snapshots = new LinkedHashMap<>();
+        if (memoryStore != null) {
+            snapshots.put("view_detailed_pokemons", memoryStore::pokemonTable);
+            snapshots.put("view_trainer_performance", memoryStore::trainerTable);
+            snapshots.put("types", memoryStore::typeTable);
+            snapshots.put("pokemon_types", memoryStore::linkTable);
+        }
+        JComboBox<String> tableBox = new JComboBox<>(memoryStore != null
+                ? snapshots.keySet().toArray(new String[0]) : TableExporter.TABLES.toArray(new String[0]));
+        JComboBox<TableExporter.Format> formatBox = new JComboBox<>(TableExporter.Format.values());
+        tableBox.setSelectedItem(table);
+
+        JPanel form = new JPanel(new GridLayout(0, 2));
+        form.add(new JLabel("Table:"));
+        form.add(tableBox);
+        form.add(new JLabel("Format:"));
+        form.add(formatBox);
+        if (JOptionPane.showConfirmDialog(this, form, "Export", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        String chosen = (String) tableBox.getSelectedItem();
+        TableExporter.Format format = (TableExporter.Format) formatBox.getSelectedItem();
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(chosen + "." + format.getExtension()));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        if (file.exists() && JOptionPane.showConfirmDialog(this, file.getName() + " exists. Replace it?",
+                "Export", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) return;
+        exportInBackground(chosen, snapshots.get(chosen), new TableExporter(file.toPath(), format));
+    }
+
+    /**
+     * Runs an export on a background thread and shows its progress, cancelling deletes the partial file
+     * @param table Exported table
+     * @param snapshot Loader of the in-memory snapshot, null to stream from the database
+     * @param exporter Exporter writing the chosen file
+     */
+    private void exportInBackground(String table, ModelLoader snapshot, TableExporter exporter) {
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting " + table + "...", "", 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+
+        SwingWorker<ExportResult, String> worker = new SwingWorker<>() {
+            @Override
+            protected ExportResult doInBackground() throws Exception {
+                if (writeBehind != null) writeBehind.flush();
+                ExportProgressListener listener = (rows, total, bytes) -> {
+                    setProgress((int) Math.min(100, rows * 100 / Math.max(1, total)));
+                    publish(String.format("%d of %d rows (%.1f MB)", rows, total, bytes / (1024.0 * 1024.0)));
+                };
+                return snapshot != null ? exporter.export(snapshot.load(), listener) : exporter.export(table, listener);
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                monitor.setNote(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                try {
+                    ExportResult result = get();
+                    JOptionPane.showMessageDialog(PokemonGUI.this, table + " was exported\n" + result);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (CancellationException ex) {
+                    showError("Export was cancelled, no file was written.");
+                } catch (ExecutionException ex) {
+                    showError(ex.getCause().getMessage());
+                }
+            }
+        };
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) monitor.setProgress((Integer) evt.getNewValue() * 10);
+            if (monitor.isCanceled()) worker.cancel(true);
+        });
+        worker.execute();
+    }
+
     /**
      * Initializes the form for editing new Trainer
+     * The form starts from the stored trainer instead of the table row and is saved with a version check.
+     * If someone else saved the trainer meanwhile, the form opens again with both edits merged.
      */
     private void showEditTrainerDialog() {
         int row = trainerTable.getSelectedRow();
@@ -231,32 +1025,49 @@ public class PokemonGUI extends JFrame {
 
         try {
             int id = Integer.parseInt(trainerTable.getValueAt(row, 0).toString());
-            String currentName = trainerTable.getValueAt(row, 1).toString();
-            float currentXP = Float.parseFloat(trainerTable.getValueAt(row, 2).toString());
-            boolean currentLeader = (boolean) trainerTable.getValueAt(row, 3);
-
-            JTextField nameField = new JTextField(currentName);
-            JTextField xpField = new JTextField(String.valueOf(currentXP));
-            JCheckBox leaderBox = new JCheckBox("Gym Leader", currentLeader);
-
-            Object[] message = {
-                    "Trainer Name:", nameField,
-                    "Experience (XP):", xpField,
-                    "", leaderBox
-            };
-
-            int option = JOptionPane.showConfirmDialog(this, message, "Edit Trainer ID: " + id, JOptionPane.OK_CANCEL_OPTION);
-
-            if (option == JOptionPane.OK_OPTION) {
-                trainerRepo.updateTrainer(
-                        id,
-                        nameField.getText(),
-                        Float.parseFloat(xpField.getText()),
-                        leaderBox.isSelected()
-                );
-                refreshAllData();
-                JOptionPane.showMessageDialog(this, "Trainer updated successfully!");
+            Trainer base = trainerRepo.findTrainer(id);
+            Trainer proposal = base;
+            String notice = null;
+            while (base != null) {
+                JTextField nameField = new JTextField(proposal.getName());
+                JTextField xpField = new JTextField(String.valueOf(proposal.getXp()));
+                JCheckBox leaderBox = new JCheckBox("Gym Leader", proposal.isLeader());
+
+                List<Object> message = new ArrayList<>();
+                if (notice != null) message.add(notice);
+                message.addAll(Arrays.asList(
+                        "Trainer Name:", nameField,
+                        "Experience (XP):", xpField,
+                        "", leaderBox
+                ));
+
+                int option = JOptionPane.showConfirmDialog(this, message.toArray(), "Edit Trainer ID: " + id, JOptionPane.OK_CANCEL_OPTION);
+                if (option != JOptionPane.OK_OPTION) return;
+
+                Trainer mine = new Trainer(id, nameField.getText(), Float.parseFloat(xpField.getText()), leaderBox.isSelected());
+                UpdateResult<Trainer> result = trainerRepo.updateTrainerIfUnchanged(id, base.getVersion(),
+                        mine.getName(), mine.getXp(), mine.isLeader());
+
+                switch (result.getStatus()) {
+                    case CONFLICT:
+                        Trainer theirs = result.getCurrent();
+                        StringBuilder changes = new StringBuilder();
+                        Object[] merged = mergeEdits(TRAINER_FIELDS, trainerValues(base), trainerValues(mine),
+                                trainerValues(theirs), changes);
+                        proposal = new Trainer(id, (String) merged[0], (Float) merged[1], (Boolean) merged[2], theirs.getVersion());
+                        base = theirs;
+                        notice = "Someone else saved this trainer while you were editing it." + changes
+                                + "\nOK saves the merged values, Cancel keeps theirs.";
+                        break;
+                    case DELETED:
+                        base = null;
+                        break;
+                    default:
+                        if (writeBehind == null) JOptionPane.showMessageDialog(this, "Trainer updated successfully!");
+                        return;
+                }
             }
+            showError("Trainer " + id + " does not exist anymore.");
         } catch (Exception e) {
             showError("Edit error: " + e.getMessage());
         }
@@ -275,13 +1086,15 @@ public class PokemonGUI extends JFrame {
         JButton btnRefresh = new JButton("Refresh");
         JButton btnAdd = new JButton("Add type");
         JButton btnDelete = new JButton("Remove type");
+        JButton btnExport = new JButton("Export");
+
+        btnExport.addActionListener(e -> showExportDialog("types"));
 
         btnAdd.addActionListener(e -> {
             String newTypeName = JOptionPane.showInputDialog(this, "Enter new type name:");
             if (newTypeName != null && !newTypeName.trim().isEmpty()) {
                 try {
                     typeRepo.addType(newTypeName.trim());
-                    refreshAllData();
                     JOptionPane.showMessageDialog(this, "Type '" + newTypeName + "' added successfully.");
                 } catch (SQLException ex) {
                     showError("Could not add type: " + ex.getMessage());
@@ -290,11 +1103,8 @@ public class PokemonGUI extends JFrame {
         });
 
         btnRefresh.addActionListener(e -> {
-            try {
-                typesTable.setModel(buildTableModel("SELECT * FROM types"));
-            } catch (SQLException ex) {
-                showError("Error with loading types: " + ex.getMessage());
-            }
+            TypeDictionary.invalidate();
+            loadTables(List.of(typesTable));
         });
 
         btnDelete.addActionListener(e -> {
@@ -310,8 +1120,6 @@ public class PokemonGUI extends JFrame {
 
                     if (confirm == JOptionPane.YES_OPTION) {
                         typeRepo.deleteType(id);
-
-                        refreshAllData();
                         JOptionPane.showMessageDialog(this, "Type was successfully removed from database.");
                     }
                 } catch (SQLException ex) {
@@ -327,12 +1135,14 @@ public class PokemonGUI extends JFrame {
         controls.add(btnRefresh);
         controls.add(btnAdd);
         controls.add(btnDelete);
+        controls.add(btnExport);
         panel.add(controls, BorderLayout.SOUTH);
         return panel;
     }
 
     /**
      * Method for initializing the Stats panel
+     * The reports are computed over the stat columns of all Pokémon, changing a choice runs the report again
      * @return Stats Panel
      */
     private JPanel createStatsPanel() {
@@ -340,16 +1150,167 @@ public class PokemonGUI extends JFrame {
         statsTable = new JTable();
         panel.add(new JScrollPane(statsTable), BorderLayout.CENTER);
 
+        JPanel options = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        statsReportChoice = new JComboBox<>(STATS_REPORTS);
+        statsStatChoice = new JComboBox<>(StatAnalytics.Stat.values());
+        statsGroupingChoice = new JComboBox<>(StatAnalytics.Grouping.values());
+        statsRarityChoice = new JComboBox<>(new String[]{ANY_VALUE, "Common", "Rare", "Legendary"});
+        statsTypeChoice = new JComboBox<>(new Object[]{ANY_VALUE});
+        statsTopK = new JTextField("10", 4);
+        statsStatus = new JLabel();
+
+        for (JComboBox<?> combo : List.of(statsReportChoice, statsStatChoice, statsGroupingChoice, statsRarityChoice, statsTypeChoice)) {
+            combo.addActionListener(e -> {
+                if (!fillingFilterChoices) runStatsReport();
+            });
+        }
+        statsTopK.addActionListener(e -> runStatsReport());
+        reloadChoicesOnOpen(statsTypeChoice, () -> {
+            List<Object> types = new ArrayList<>();
+            for (Types t : TypeDictionary.get().getTypes()) types.add(new TypeWrapper(t));
+            return types;
+        });
+
+        options.add(new JLabel("Report:"));
+        options.add(statsReportChoice);
+        options.add(new JLabel("Stat:"));
+        options.add(statsStatChoice);
+        options.add(new JLabel("Group by:"));
+        options.add(statsGroupingChoice);
+        options.add(new JLabel("Rarity:"));
+        options.add(statsRarityChoice);
+        options.add(new JLabel("Type:"));
+        options.add(statsTypeChoice);
+        options.add(new JLabel("K:"));
+        options.add(statsTopK);
+        panel.add(options, BorderLayout.NORTH);
+
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnRefresh = new JButton("Refresh");
 
-        btnRefresh.addActionListener(e -> refreshAllData());
+        btnRefresh.addActionListener(e -> refreshData());
 
         controls.add(btnRefresh);
+        controls.add(statsStatus);
         panel.add(controls, BorderLayout.SOUTH);
         return panel;
     }
 
+    /**
+     * Reads the choices of the Stats tab and runs the report in the background
+     */
+    private void runStatsReport() {
+        int topK;
+        try {
+            topK = Integer.parseInt(statsTopK.getText().trim());
+            if (topK < 1) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            showError("K must be a positive number");
+            return;
+        }
+        Object type = statsTypeChoice.getSelectedItem();
+        statsRequest = new StatsRequest((String) statsReportChoice.getSelectedItem(),
+                (StatAnalytics.Stat) statsStatChoice.getSelectedItem(),
+                (StatAnalytics.Grouping) statsGroupingChoice.getSelectedItem(),
+                ANY_VALUE.equals(statsRarityChoice.getSelectedItem()) ? null : (String) statsRarityChoice.getSelectedItem(),
+                type instanceof TypeWrapper ? ((TypeWrapper) type).type.getId() : null, topK);
+        loadTables(List.of(statsTable));
+    }
+
+    /**
+     * Computes the current Stats report, loading the stat columns first if they were dropped
+     * @return Report rows
+     * @throws SQLException If the query execution fails
+     */
+    private TableModel statsReport() throws SQLException {
+        StatsRequest request = statsRequest;
+        StatAnalytics analytics = statAnalytics;
+        if (analytics == null) {
+            long start = System.nanoTime();
+            analytics = new StatAnalytics(pokemonRepo.loadStatColumns());
+            Metrics.getInstance().record("StatAnalytics.load", System.nanoTime() - start, false);
+            statAnalytics = analytics;
+        }
+
+        long start = System.nanoTime();
+        DefaultTableModel model;
+        if (STATS_REPORTS[2].equals(request.report)) {
+            StatAnalytics.Histogram histogram = analytics.histogram(request.stat, statsBuckets, request.rarity, request.typeId);
+            Metrics.getInstance().record("StatAnalytics.histogram", System.nanoTime() - start, false);
+            model = readOnlyModel("from", "to", "count", "share");
+            long[] counts = histogram.getCounts();
+            long total = Arrays.stream(counts).sum();
+            long highest = Arrays.stream(counts).max().orElse(0);
+            for (int i = 0; i < counts.length; i++) {
+                int from = histogram.getMin() + i * histogram.getWidth();
+                String bar = "#".repeat((int) (40 * counts[i] / highest));
+                model.addRow(new Object[]{from, from + histogram.getWidth() - 1, counts[i],
+                        String.format("%5.1f%% %s", 100.0 * counts[i] / total, bar)});
+            }
+        } else {
+            boolean top = STATS_REPORTS[1].equals(request.report);
+            List<StatAnalytics.GroupSummary> summaries = analytics.summarize(request.stat, request.grouping,
+                    request.rarity, request.typeId, top ? request.topK : 0);
+            Metrics.getInstance().record("StatAnalytics.summarize", System.nanoTime() - start, false);
+            if (top) {
+                model = readOnlyModel("group", "rank", "id", "nickname", request.stat.name().toLowerCase());
+                for (StatAnalytics.GroupSummary summary : summaries) {
+                    String group = groupLabel(request.grouping, summary.getKey());
+                    for (int i = 0; i < summary.getTopIds().length; i++) {
+                        int id = summary.getTopIds()[i];
+                        model.addRow(new Object[]{group, i + 1, id, nicknameIndex.getName(id), summary.getTopValues()[i]});
+                    }
+                }
+            } else {
+                model = readOnlyModel("group", "count", "min", "mean", "p50", "p90", "p99", "max");
+                for (StatAnalytics.GroupSummary summary : summaries) {
+                    model.addRow(new Object[]{groupLabel(request.grouping, summary.getKey()), summary.getCount(),
+                            summary.getMin(), Math.round(summary.getMean() * 100) / 100.0, summary.getP50(),
+                            summary.getP90(), summary.getP99(), summary.getMax()});
+                }
+            }
+        }
+        String status = String.format("%d Pokémon analysed in %.1f ms", analytics.size(), (System.nanoTime() - start) / 1e6);
+        SwingUtilities.invokeLater(() -> statsStatus.setText(status));
+        return model;
+    }
+
+    /**
+     * Names the group of a report row
+     * @param grouping Grouping of the report
+     * @param key Group key: rarity code, type ID or trainer ID
+     * @return Rarity, type or trainer name, "All" without grouping
+     * @throws SQLException If the type dictionary can't be loaded
+     */
+    private String groupLabel(StatAnalytics.Grouping grouping, int key) throws SQLException {
+        switch (grouping) {
+            case NONE:
+                return "All";
+            case RARITY:
+                return StatColumns.RARITIES[key];
+            case TYPE:
+                String type = TypeDictionary.get().getName(key);
+                return type == null ? "#" + key : type;
+            default:
+                String trainer = trainerIndex.getName(key);
+                return trainer == null ? "#" + key : trainer;
+        }
+    }
+
+    /**
+     * Creates an empty model whose cells can't be edited
+     * @param columns Column names
+     * @return Model
+     */
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
     /**
      * Method for initializing the Link panel
      * @return Link Panel
@@ -361,24 +1322,199 @@ public class PokemonGUI extends JFrame {
 
         JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JButton btnRefresh = new JButton("Refresh");
+        JButton btnExport = new JButton("Export");
 
-        btnRefresh.addActionListener(e -> refreshAllData());
+        btnRefresh.addActionListener(e -> refreshData());
+        btnExport.addActionListener(e -> showExportDialog("pokemon_types"));
 
         controls.add(btnRefresh);
+        controls.add(btnExport);
         panel.add(controls, BorderLayout.SOUTH);
         return panel;
     }
 
+    /**
+     * Method for initializing the Diagnostics panel
+     * Shows call counts and latencies of the repositories and table loads, refreshed every second while visible
+     * @return Diagnostics Panel
+     */
+    private JPanel createDiagnosticsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        diagnosticsTable = new JTable();
+        diagnosticsSummary = new JTextArea(2, 80);
+        diagnosticsSummary.setEditable(false);
+        diagnosticsSummary.setOpaque(false);
+        panel.add(diagnosticsSummary, BorderLayout.NORTH);
+        panel.add(new JScrollPane(diagnosticsTable), BorderLayout.CENTER);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton btnRefresh = new JButton("Refresh");
+        JButton btnReset = new JButton("Reset");
+        JButton btnDump = new JButton("Dump to File");
+        JButton btnSnapshot = new JButton("Save Snapshot");
+        btnSnapshot.setEnabled(RepositoryFactory.getInstance().getSnapshotPath() != null
+                && !RepositoryFactory.getInstance().isReadOnly());
+        btnSnapshot.setToolTipText("Writes all data to snapshot.file for a fast start and offline browsing");
+
+        btnRefresh.addActionListener(e -> refreshDiagnostics());
+        btnSnapshot.addActionListener(e -> saveSnapshotInBackground(btnSnapshot));
+        btnReset.addActionListener(e -> {
+            Metrics.getInstance().reset();
+            refreshDiagnostics();
+        });
+        btnDump.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("metrics.csv"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    Metrics.getInstance().dump(chooser.getSelectedFile().toPath(), diagnosticsSummaryLines());
+                    JOptionPane.showMessageDialog(this, "Metrics were written to " + chooser.getSelectedFile());
+                } catch (IOException ex) { showError("Couldn't write metrics: " + ex.getMessage()); }
+            }
+        });
+
+        Timer timer = new Timer(1000, e -> {
+            if (tabbedPane.getSelectedComponent() == panel) refreshDiagnostics();
+        });
+        timer.start();
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedComponent() == panel) refreshDiagnostics();
+        });
+
+        controls.add(btnRefresh);
+        controls.add(btnReset);
+        controls.add(btnDump);
+        controls.add(btnSnapshot);
+        panel.add(controls, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    /**
+     * Writes snapshot.file on a background thread
+     * @param button Button disabled while the snapshot is written
+     */
+    private void saveSnapshotInBackground(JButton button) {
+        button.setEnabled(false);
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                if (writeBehind != null) writeBehind.flush();
+                return RepositoryFactory.getInstance().saveSnapshot();
+            }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                try {
+                    JOptionPane.showMessageDialog(PokemonGUI.this, String.format("Snapshot (%.1f KB) was written to %s",
+                            get() / 1024.0, RepositoryFactory.getInstance().getSnapshotPath()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    showError(ex.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Shows the current metrics in the Diagnostics tab, keeping the selected row
+     */
+    private void refreshDiagnostics() {
+        DefaultTableModel model = new DefaultTableModel(
+                new Object[]{"operation", "calls", "errors", "mean_ms", "p50_ms", "p99_ms", "max_ms"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (Metrics.MetricStats stats : Metrics.getInstance().getStats()) {
+            model.addRow(new Object[]{stats.getName(), stats.getCalls(), stats.getErrors(),
+                    millis(stats.getMeanMillis()), millis(stats.getP50Millis()),
+                    millis(stats.getP99Millis()), millis(stats.getMaxMillis())});
+        }
+        int selected = diagnosticsTable.getSelectedRow();
+        diagnosticsTable.setModel(model);
+        if (selected >= 0 && selected < model.getRowCount()) diagnosticsTable.setRowSelectionInterval(selected, selected);
+        diagnosticsSummary.setText(String.join("\n", diagnosticsSummaryLines()));
+    }
+
+    /**
+     * Describes the connection pool and statement cache
+     * @return One line per component
+     */
+    private List<String> diagnosticsSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        if (memoryStore != null) {
+            lines.add("Repository: in-memory, the database is not used");
+        } else {
+            ConnectionPool.PoolStats pool = DatabaseConfig.getInstance().getPoolStats();
+            lines.add("Connection pool: " + (pool == null ? "not opened yet" : pool));
+            lines.add("Statement cache: " + DatabaseConfig.getInstance().getStatementCacheStats());
+        }
+        if (writeBehind != null) lines.add("Write-behind queue: " + writeBehind.getPendingCount() + " pending edit(s)");
+        return lines;
+    }
+
+    /**
+     * Writes the queued edits and the snapshot if configured, then closes the application
+     * If something cannot be written, the user decides whether to exit anyway or to stay
+     */
+    private void exitApplication() {
+        if (writeBehind != null) {
+            try {
+                writeBehind.flush();
+            } catch (SQLException e) {
+                refreshAllData();
+                int option = JOptionPane.showConfirmDialog(this,
+                        "Some queued edits could not be saved and were discarded:\n" + e.getMessage() + "\n\nExit anyway?",
+                        "Unsaved edits", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (option != JOptionPane.YES_OPTION) return;
+            }
+        }
+        if (saveSnapshotOnExit) {
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            try {
+                RepositoryFactory.getInstance().saveSnapshot();
+            } catch (SQLException e) {
+                setCursor(Cursor.getDefaultCursor());
+                int option = JOptionPane.showConfirmDialog(this,
+                        "The snapshot could not be saved:\n" + e.getMessage() + "\n\nExit anyway?",
+                        "Snapshot", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (option != JOptionPane.YES_OPTION) return;
+            }
+        }
+        if (writeBehind != null) {
+            try {
+                writeBehind.close();
+            } catch (SQLException e) {
+                System.err.println("Couldn't save the queued edits: " + e.getMessage());
+            }
+        }
+        if (changePoller != null) changePoller.shutdown();
+        dispose();
+        DatabaseConfig.getInstance().shutdown();
+        System.exit(0);
+    }
+
+    /**
+     * Rounds a latency for display
+     * @param value Milliseconds
+     * @return Milliseconds with three decimals
+     */
+    private static String millis(double value) {
+        return String.format("%.3f", value);
+    }
+
     /**
      * Initializes the form for adding new Pokémon
      */
     private void showCatchPokemonDialog() {
         try {
-            List<Trainer> trainers = trainerRepo.getAllTrainers();
-            List<Types> typesList = typeRepo.getAllTypes();
+            List<Types> typesList = TypeDictionary.get().getTypes();
 
-            JComboBox<TrainerWrapper> trainerCombo = new JComboBox<>();
-            for (Trainer t : trainers) trainerCombo.addItem(new TrainerWrapper(t));
+            JTextField trainerField = new JTextField();
+            SuggestionPopup trainerPicker = new SuggestionPopup(trainerField, trainerIndex, SUGGESTIONS, match -> { });
 
             JTextField nickField = new JTextField();
             JComboBox<String> rarityCombo = new JComboBox<>(new String[]{"Common", "Rare", "Legendary"});
@@ -398,7 +1534,7 @@ public class PokemonGUI extends JFrame {
             }
 
             Object[] message = {
-                    "Trainer:", trainerCombo,
+                    "Trainer (type to search):", trainerField,
                     "Nickname:", nickField,
                     "Rarity:", rarityCombo,
                     "HP:", hpField,
@@ -411,22 +1547,24 @@ public class PokemonGUI extends JFrame {
             int option = JOptionPane.showConfirmDialog(this, message, "Catch New Pokémon", JOptionPane.OK_CANCEL_OPTION);
 
             if (option == JOptionPane.OK_OPTION) {
-                Trainer selectedTrainer = ((TrainerWrapper) trainerCombo.getSelectedItem()).trainer;
+                NameIndex.Match selectedTrainer = trainerPicker.getPicked();
+                if (selectedTrainer == null) {
+                    showError("Please pick a trainer from the suggestions");
+                    return;
+                }
                 Pokemon p = new Pokemon(selectedTrainer.getId(), nickField.getText(), (String) rarityCombo.getSelectedItem());
 
                 int hp = Integer.parseInt(hpField.getText());
                 int atk = Integer.parseInt(atkField.getText());
                 int def = Integer.parseInt(defField.getText());
 
-                int newId = pokemonRepo.catchNewPokemon(p, hp, atk, def);
-
+                List<Integer> typeIds = new ArrayList<>();
                 TypeWrapper tw1 = (TypeWrapper) type1Combo.getSelectedItem();
-                if (tw1 != null && tw1.type != null) pokemonRepo.addTypeToPokemon(newId, tw1.type.getId());
-
+                if (tw1 != null && tw1.type != null) typeIds.add(tw1.type.getId());
                 TypeWrapper tw2 = (TypeWrapper) type2Combo.getSelectedItem();
-                if (tw2 != null && tw2.type != null && tw2.type != tw1.type) pokemonRepo.addTypeToPokemon(newId, tw2.type.getId());
+                if (tw2 != null && tw2.type != null) typeIds.add(tw2.type.getId());
 
-                refreshAllData();
+                pokemonRepo.catchNewPokemon(p, hp, atk, def, typeIds);
             }
         } catch (Exception e) {
             showError("Error with adding new pokémon: " + e.getMessage());
@@ -447,22 +1585,161 @@ public class PokemonGUI extends JFrame {
         if (option == JOptionPane.OK_OPTION) {
             try {
                 trainerRepo.addTrainer(nameField.getText(), Float.parseFloat(xpField.getText()), leaderBox.isSelected());
-                refreshAllData();
             } catch (Exception ex) { showError("Invalid trainer data"); }
         }
     }
 
+    /**
+     * Brings the tables up to date, with the change log only the rows changed by other clients are read again
+     */
+    private void refreshData() {
+        if (changePoller != null) {
+            changePoller.pollNow();
+        } else {
+            refreshAllData();
+        }
+    }
+
     /**
      * Reloads the data from database
+     * All tables are queried in parallel on background threads, each over its own pooled connection
      */
     private void refreshAllData() {
-        try {
-            pokemonTable.setModel(buildTableModel("SELECT * FROM view_detailed_pokemons"));
-            trainerTable.setModel(buildTableModel("SELECT * FROM view_trainer_performance"));
-            typesTable.setModel(buildTableModel("SELECT * FROM types"));
-            linkTable.setModel(buildTableModel("SELECT * FROM pokemon_types"));
-            statsTable.setModel(buildTableModel("SELECT * FROM pokemon_stats"));
-        } catch (SQLException e) { showError(e.getMessage()); }
+        statAnalytics = null;
+        loadTables(tableLoaders.keySet());
+        trainerIndex.rebuild();
+        nicknameIndex.rebuild();
+    }
+
+    /**
+     * Loads the table of the selected tab if it was not loaded yet or missed a refresh
+     */
+    private void loadVisibleTabIfStale() {
+        JTable table = tabTables.get(tabbedPane.getSelectedComponent());
+        if (table != null && staleTables.contains(table)) loadTables(List.of(table));
+    }
+
+    /**
+     * Runs the queries of the given tables on the loader threads and swaps each model on the EDT when it arrives
+     * A result is dropped if a newer load of the same table was started in the meantime
+     * @param tables Tables to reload
+     */
+    private void loadTables(Collection<JTable> tables) {
+        AtomicBoolean errorShown = new AtomicBoolean();
+        for (JTable table : tables) {
+            staleTables.remove(table);
+            ModelLoader loader = tableLoaders.get(table);
+            int generation = loadGenerations.merge(table, 1, Integer::sum);
+
+            tableLoader.execute(() -> {
+                try {
+                    TableModel model = loader.load();
+                    SwingUtilities.invokeLater(() -> {
+                        if (loadGenerations.get(table) == generation) table.setModel(model);
+                    });
+                } catch (SQLException | RuntimeException e) {
+                    // a failed load keeps the old model, the table is loaded again on the next visit
+                    String message = e instanceof SQLException ? e.getMessage() : "Couldn't load the table: " + e;
+                    SwingUtilities.invokeLater(() -> {
+                        staleTables.add(table);
+                        if (errorShown.compareAndSet(false, true)) showError(message);
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Patches the rows touched by a repository operation instead of reloading whole tables:
+     * the Pokémon rows with their stats and type links, the owning trainers and changed types
+     * @param changes Changed keys
+     */
+    private void applyChanges(ChangeSet changes) {
+        if (!changes.getPokemonIds().isEmpty() || !changes.getTrainerIds().isEmpty() || !changes.getTypeIds().isEmpty()) {
+            // the stat columns are a copy of all Pokémon, load them again with the next report
+            statAnalytics = null;
+            staleTables.add(statsTable);
+        }
+        if (memoryStore != null) {
+            // snapshots of the in-memory store are cheap, reload instead of patching
+            staleTables.addAll(tableLoaders.keySet());
+            loadVisibleTabIfStale();
+            return;
+        }
+        Set<Integer> pokemonIds = changes.getPokemonIds();
+        if (pokemonFilter != null && (!pokemonIds.isEmpty() || !changes.getTrainerIds().isEmpty())) {
+            // search results are small, run the search again instead of patching
+            staleTables.add(pokemonTable);
+            loadVisibleTabIfStale();
+        }
+        if (!pokemonIds.isEmpty()) {
+            refreshPagedRows(pokemonTable, pokemonIds);
+            patchRows(linkTable, "pokemon_types", "pokemon_id", pokemonIds);
+        }
+        refreshPagedRows(trainerTable, changes.getTrainerIds());
+        patchRows(typesTable, "types", "id", changes.getTypeIds());
+        loadVisibleTabIfStale();
+    }
+
+    /**
+     * Reloads rows of a paged table
+     * @param table Table showing a PagedTableModel
+     * @param keys Changed keys
+     */
+    private void refreshPagedRows(JTable table, Set<Integer> keys) {
+        if (!keys.isEmpty() && table.getModel() instanceof PagedTableModel) {
+            ((PagedTableModel) table.getModel()).refreshRows(keys);
+        }
+    }
+
+    /**
+     * Replaces the rows with the given keys in a fully loaded table, keeping the rows ordered by key
+     * @param table Table showing a DefaultTableModel
+     * @param tableName Database table behind it
+     * @param keyColumn Column holding the changed keys
+     * @param keys Changed keys
+     */
+    private void patchRows(JTable table, String tableName, String keyColumn, Set<Integer> keys) {
+        if (keys.isEmpty() || staleTables.contains(table) || !(table.getModel() instanceof DefaultTableModel)) return;
+        DefaultTableModel model = (DefaultTableModel) table.getModel();
+        if (model.findColumn(keyColumn) < 0) return;
+
+        tableLoader.execute(() -> {
+            List<Object[]> rows = new ArrayList<>();
+            try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+                for (List<Integer> chunk : SqlUtils.chunks(keys)) {
+                    String sql = "SELECT * FROM " + tableName + " WHERE " + keyColumn + " IN " + SqlUtils.inList(chunk.size());
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        SqlUtils.bindInts(ps, 1, chunk);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            int count = rs.getMetaData().getColumnCount();
+                            while (rs.next()) {
+                                Object[] row = new Object[count];
+                                for (int i = 0; i < count; i++) row[i] = rs.getObject(i + 1);
+                                rows.add(row);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> staleTables.add(table));
+                return;
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                if (table.getModel() != model) return;
+                int keyIndex = model.findColumn(keyColumn);
+                for (int i = model.getRowCount() - 1; i >= 0; i--) {
+                    if (keys.contains(((Number) model.getValueAt(i, keyIndex)).intValue())) model.removeRow(i);
+                }
+                for (Object[] row : rows) {
+                    int key = ((Number) row[keyIndex]).intValue();
+                    int position = model.getRowCount();
+                    while (position > 0 && ((Number) model.getValueAt(position - 1, keyIndex)).intValue() > key) position--;
+                    model.insertRow(position, row);
+                }
+            });
+        });
     }
 
     /**
@@ -474,35 +1751,67 @@ public class PokemonGUI extends JFrame {
     }
 
     /**
-     * Builds a table from sql query
+     * Builds a table from sql query, timed as "PokemonGUI.buildTableModel"
      * @param query SQL query
      * @return New table
      * @throws SQLException If the query execution fails
      */
     public static DefaultTableModel buildTableModel(String query) throws SQLException {
-        Connection conn = DatabaseConfig.getInstance().getConnection();
-        Statement stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery(query);
-        ResultSetMetaData metaData = rs.getMetaData();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            DefaultTableModel model = queryTableModel(query);
+            failed = false;
+            return model;
+        } finally {
+            BUILD_LATENCY.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static DefaultTableModel queryTableModel(String query) throws SQLException {
         Vector<String> columnNames = new Vector<>();
-        int count = metaData.getColumnCount();
-        for (int i = 1; i <= count; i++) columnNames.add(metaData.getColumnName(i));
         Vector<Vector<Object>> data = new Vector<>();
-        while (rs.next()) {
-            Vector<Object> row = new Vector<>();
-            for (int i = 1; i <= count; i++) row.add(rs.getObject(i));
-            data.add(row);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int count = metaData.getColumnCount();
+            for (int i = 1; i <= count; i++) columnNames.add(metaData.getColumnName(i));
+            while (rs.next()) {
+                Vector<Object> row = new Vector<>();
+                for (int i = 1; i <= count; i++) row.add(rs.getObject(i));
+                data.add(row);
+            }
         }
         return new DefaultTableModel(data, columnNames);
     }
 
     /**
-     *
+     * Creates a table model, called on a loader thread
+     */
+    private interface ModelLoader {
+        TableModel load() throws SQLException;
+    }
+
+    /**
+     * Choices of one Stats report
      */
-    private static class TrainerWrapper {
-        Trainer trainer;
-        TrainerWrapper(Trainer t) { this.trainer = t; }
-        @Override public String toString() { return trainer.getName(); }
+    private static class StatsRequest {
+        final String report;
+        final StatAnalytics.Stat stat;
+        final StatAnalytics.Grouping grouping;
+        final String rarity;
+        final Integer typeId;
+        final int topK;
+
+        StatsRequest(String report, StatAnalytics.Stat stat, StatAnalytics.Grouping grouping, String rarity, Integer typeId, int topK) {
+            this.report = report;
+            this.stat = stat;
+            this.grouping = grouping;
+            this.rarity = rarity;
+            this.typeId = typeId;
+            this.topK = topK;
+        }
     }
 
     private static class TypeWrapper {
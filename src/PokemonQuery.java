@@ -0,0 +1,174 @@
+/**
+ * Search criteria for PokemonRepository.findPokemons
+ * Every criterion is optional, unset criteria match everything. Ranges are inclusive.
+ * Results are sorted by the chosen column with the id as tie breaker and cut at the limit.
+ */
+public class PokemonQuery {
+
+    /**
+     * Columns the results can be sorted by
+     */
+    public enum Sort {
+        ID("p.id"),
+        NICKNAME("p.nickname"),
+        HP("ps.hp"),
+        ATTACK("ps.attack"),
+        DEFENSE("ps.defense");
+
+        private final String column;
+
+        Sort(String column) {
+            this.column = column;
+        }
+
+        /**
+         * @return Qualified column of the search query
+         */
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    public static final int DEFAULT_LIMIT = 500;
+
+    private String nicknamePrefix;
+    private String rarity;
+    private Integer trainerId;
+    private Integer typeId;
+    private Integer minHp;
+    private Integer maxHp;
+    private Integer minAttack;
+    private Integer maxAttack;
+    private Integer minDefense;
+    private Integer maxDefense;
+    private Sort sort = Sort.ID;
+    private boolean ascending = true;
+    private int limit = DEFAULT_LIMIT;
+
+    /**
+     * Matches nicknames starting with the prefix, ignoring case, an empty prefix is ignored
+     * @param prefix Start of the nickname or null
+     * @return This query
+     */
+    public PokemonQuery nicknamePrefix(String prefix) {
+        nicknamePrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+        return this;
+    }
+
+    public PokemonQuery rarity(String rarity) {
+        this.rarity = rarity;
+        return this;
+    }
+
+    public PokemonQuery trainer(Integer trainerId) {
+        this.trainerId = trainerId;
+        return this;
+    }
+
+    /**
+     * Matches Pokémon having the type as first or second type
+     * @param typeId Type ID or null
+     * @return This query
+     */
+    public PokemonQuery type(Integer typeId) {
+        this.typeId = typeId;
+        return this;
+    }
+
+    public PokemonQuery hp(Integer min, Integer max) {
+        minHp = min;
+        maxHp = max;
+        return this;
+    }
+
+    public PokemonQuery attack(Integer min, Integer max) {
+        minAttack = min;
+        maxAttack = max;
+        return this;
+    }
+
+    public PokemonQuery defense(Integer min, Integer max) {
+        minDefense = min;
+        maxDefense = max;
+        return this;
+    }
+
+    public PokemonQuery sort(Sort sort, boolean ascending) {
+        this.sort = sort;
+        this.ascending = ascending;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of results
+     * @param limit Positive row count
+     * @return This query
+     */
+    public PokemonQuery limit(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be positive: " + limit);
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Checks if any criterion is set, sort and limit do not count
+     * @return True if the query filters
+     */
+    public boolean isFiltering() {
+        return nicknamePrefix != null || rarity != null || trainerId != null || typeId != null
+                || minHp != null || maxHp != null || minAttack != null || maxAttack != null
+                || minDefense != null || maxDefense != null;
+    }
+
+    public String getNicknamePrefix() {
+        return nicknamePrefix;
+    }
+
+    public String getRarity() {
+        return rarity;
+    }
+
+    public Integer getTrainerId() {
+        return trainerId;
+    }
+
+    public Integer getTypeId() {
+        return typeId;
+    }
+
+    public Integer getMinHp() {
+        return minHp;
+    }
+
+    public Integer getMaxHp() {
+        return maxHp;
+    }
+
+    public Integer getMinAttack() {
+        return minAttack;
+    }
+
+    public Integer getMaxAttack() {
+        return maxAttack;
+    }
+
+    public Integer getMinDefense() {
+        return minDefense;
+    }
+
+    public Integer getMaxDefense() {
+        return maxDefense;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
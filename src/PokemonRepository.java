@@ -1,4 +1,6 @@
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Interface defining the data access layer for Pokémon entities
@@ -6,13 +8,35 @@ import java.sql.SQLException;
 public interface PokemonRepository {
     int catchNewPokemon(Pokemon p, int hp, int attack, int defense) throws SQLException;
 
+    int catchNewPokemon(Pokemon p, int hp, int attack, int defense, List<Integer> typeIds) throws SQLException;
+
     void addTypeToPokemon(int pokemonId, int typeId) throws SQLException;
 
     void deletePokemon(int id) throws SQLException;
 
-    void importPokemonsFromCSV(String filePath) throws SQLException;
+    int deletePokemons(int[] ids) throws SQLException;
+
+    ImportResult importPokemonsFromCSV(String filePath, ImportMode mode) throws SQLException;
 
     void updatePokemon(int id, String nickname, String rarity, int hp, int attack, int defense) throws SQLException;
 
+    UpdateResult<PokemonDetails> updatePokemonIfUnchanged(int id, int expectedVersion, String nickname, String rarity,
+                                                          int hp, int attack, int defense,
+                                                          Integer type1Id, Integer type2Id) throws SQLException;
+
+    int updatePokemons(int[] ids, String rarity, Integer hp, Integer attack, Integer defense) throws SQLException;
+
     void updatePokemonTypes(int pokemonId, Integer type1Id, Integer type2Id) throws SQLException;
+
+    void applyPokemonUpdates(List<PokemonUpdate> updates) throws SQLException;
+
+    List<Integer> findPokemonIdsWithAnyType(int... typeIds) throws SQLException;
+
+    PokemonDetails findPokemon(int id) throws SQLException;
+
+    List<PokemonDetails> findPokemons(PokemonQuery query) throws SQLException;
+
+    void scanNicknames(Collection<Integer> ids, NameIndex.Sink sink) throws SQLException;
+
+    StatColumns loadStatColumns() throws SQLException;
 }
@@ -0,0 +1,145 @@
+/**
+ * Pending change of one Pokémon: its details (nickname, rarity, stats), its types or both
+ * Used by the write-behind queue, which merges repeated edits of the same Pokémon into one update
+ */
+public class PokemonUpdate {
+    private final int id;
+    private final boolean detailsChanged;
+    private final String nickname;
+    private final String rarity;
+    private final int hp;
+    private final int attack;
+    private final int defense;
+    private final boolean typesChanged;
+    private final Integer type1Id;
+    private final Integer type2Id;
+    private final int expectedVersion;
+
+    private PokemonUpdate(int id, boolean detailsChanged, String nickname, String rarity, int hp, int attack, int defense,
+                          boolean typesChanged, Integer type1Id, Integer type2Id, int expectedVersion) {
+        this.id = id;
+        this.detailsChanged = detailsChanged;
+        this.nickname = nickname;
+        this.rarity = rarity;
+        this.hp = hp;
+        this.attack = attack;
+        this.defense = defense;
+        this.typesChanged = typesChanged;
+        this.type1Id = type1Id;
+        this.type2Id = type2Id;
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * Creates an update of nickname, rarity and stats
+     * @return Update leaving the types unchanged
+     */
+    public static PokemonUpdate details(int id, String nickname, String rarity, int hp, int attack, int defense) {
+        return new PokemonUpdate(id, true, nickname, rarity, hp, attack, defense, false, null, null, UpdateResult.ANY_VERSION);
+    }
+
+    /**
+     * Creates an update of the types
+     * @return Update leaving the details unchanged
+     */
+    public static PokemonUpdate types(int id, Integer type1Id, Integer type2Id) {
+        return new PokemonUpdate(id, false, null, null, 0, 0, 0, true, type1Id, type2Id, UpdateResult.ANY_VERSION);
+    }
+
+    /**
+     * Creates an update of details and types which is only written if the Pokémon still has the expected version
+     * @return Update of everything
+     */
+    public static PokemonUpdate checked(int id, int expectedVersion, String nickname, String rarity, int hp, int attack,
+                                        int defense, Integer type1Id, Integer type2Id) {
+        return new PokemonUpdate(id, true, nickname, rarity, hp, attack, defense, true, type1Id, type2Id, expectedVersion);
+    }
+
+    /**
+     * Combines this update with a later one of the same Pokémon, the later values win
+     * The version check of the later update wins as well, an unchecked one keeps the check of this update.
+     * @param later Update made after this one
+     * @return Update with the changes of both
+     */
+    public PokemonUpdate mergedWith(PokemonUpdate later) {
+        PokemonUpdate details = later.detailsChanged ? later : this;
+        PokemonUpdate types = later.typesChanged ? later : this;
+        int version = later.expectedVersion != UpdateResult.ANY_VERSION ? later.expectedVersion : expectedVersion;
+        return new PokemonUpdate(id, details.detailsChanged, details.nickname, details.rarity,
+                details.hp, details.attack, details.defense, types.typesChanged, types.type1Id, types.type2Id, version);
+    }
+
+    /**
+     * Shows the stored Pokémon as it will be once this update is written
+     * The version is the expected one of a checked update, so an edit started from the result is checked
+     * against the same version as this update when both are written together.
+     * @param stored Pokémon as it is stored now
+     * @return Pokémon with the pending changes
+     */
+    public PokemonDetails appliedTo(PokemonDetails stored) {
+        long typeMask = stored.getTypeMask();
+        if (typesChanged) {
+            try {
+                typeMask = TypeDictionary.mask(type1Id, type2Id);
+            } catch (IllegalArgumentException e) {
+                // the flush rejects the update, show the stored types until then
+            }
+        }
+        return new PokemonDetails(id,
+                detailsChanged ? nickname : stored.getNickname(),
+                detailsChanged ? rarity : stored.getRarity(),
+                stored.getTrainerName(),
+                detailsChanged ? hp : stored.getHp(),
+                detailsChanged ? attack : stored.getAttack(),
+                detailsChanged ? defense : stored.getDefense(),
+                typeMask,
+                expectedVersion != UpdateResult.ANY_VERSION ? expectedVersion : stored.getVersion());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isDetailsChanged() {
+        return detailsChanged;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public String getRarity() {
+        return rarity;
+    }
+
+    public int getHp() {
+        return hp;
+    }
+
+    public int getAttack() {
+        return attack;
+    }
+
+    public int getDefense() {
+        return defense;
+    }
+
+    public boolean isTypesChanged() {
+        return typesChanged;
+    }
+
+    public Integer getType1Id() {
+        return type1Id;
+    }
+
+    public Integer getType2Id() {
+        return type2Id;
+    }
+
+    /**
+     * @return Version the Pokémon must have when the update is written, or UpdateResult.ANY_VERSION
+     */
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+}
@@ -0,0 +1,60 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Dynamic proxy letting only the reading methods of a repository interface through
+ * Methods starting with get, find, scan, load or verify are passed on, every other call fails with an SQLException.
+ * Used for the repositories over a snapshot opened without a database.
+ */
+public class ReadOnlyProxy implements InvocationHandler {
+
+    private static final List<String> READ_PREFIXES = List.of("get", "find", "scan", "load", "verify");
+
+    private final Object target;
+    private final String reason;
+
+    private ReadOnlyProxy(Object target, String reason) {
+        this.target = target;
+        this.reason = reason;
+    }
+
+    /**
+     * Wraps an implementation so that it can't be changed
+     * @param type Interface to expose
+     * @param target Implementation receiving the reading calls
+     * @param reason Message of the SQLException thrown by the other calls
+     * @return Proxy implementing the interface
+     */
+    public static <T> T wrap(Class<T> type, T target, String reason) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new ReadOnlyProxy(target, reason)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "ReadOnly" + target;
+            }
+        }
+        boolean reading = false;
+        for (String prefix : READ_PREFIXES) {
+            if (method.getName().startsWith(prefix)) reading = true;
+        }
+        if (!reading) throw new SQLException(reason);
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Singleton choosing the repository implementations from the "repository" config property
+ * mysql (default) uses the database, memory keeps everything in an InMemoryStore filled with the sample data
+ * or with snapshot.file if it exists, snapshot browses snapshot.file read-only without a database
+ * Unless metrics.enabled is false, every repository call is timed through a MetricsProxy
+ * With writeBehind.enabled the Pokémon and trainer edits go through a WriteBehindQueue
+ */
+public class RepositoryFactory {
+
+    private static RepositoryFactory instance;
+
+    private PokemonRepository pokemonRepository;
+    private TrainerRepository trainerRepository;
+    private TypeRepository typeRepository;
+    private final InMemoryStore store;
+    private WriteBehindQueue writeBehindQueue;
+    private final Path snapshotPath;
+    private InMemoryStore startupSnapshot;
+    private boolean readOnly;
+
+    /**
+     * Creates the repositories for the configured mode
+     */
+    private RepositoryFactory() {
+        String mode = DatabaseConfig.getInstance().getProperty("repository", "mysql");
+        String snapshot = DatabaseConfig.getInstance().getProperty("snapshot.file", "");
+        snapshotPath = snapshot.isEmpty() ? null : Path.of(snapshot);
+        if (mode.equalsIgnoreCase("snapshot")) {
+            readOnly = true;
+            InMemoryStore loaded = loadSnapshot();
+            store = loaded == null ? new InMemoryStore() : loaded;
+            String reason = "The snapshot is opened read-only, start with repository=mysql to change data.";
+            pokemonRepository = ReadOnlyProxy.wrap(PokemonRepository.class, new InMemoryPokemonRepository(store), reason);
+            trainerRepository = ReadOnlyProxy.wrap(TrainerRepository.class, new InMemoryTrainerRepository(store), reason);
+            typeRepository = ReadOnlyProxy.wrap(TypeRepository.class, new InMemoryTypeRepository(store), reason);
+        } else if (mode.equalsIgnoreCase("memory")) {
+            InMemoryStore loaded = loadSnapshot();
+            store = loaded == null ? InMemoryStore.withSampleData() : loaded;
+            pokemonRepository = new InMemoryPokemonRepository(store);
+            trainerRepository = new InMemoryTrainerRepository(store);
+            typeRepository = new InMemoryTypeRepository(store);
+        } else {
+            if (!mode.equalsIgnoreCase("mysql")) System.err.println("Unknown repository " + mode + ", using mysql");
+            store = null;
+            startupSnapshot = loadSnapshot();
+            pokemonRepository = new MySQLPokemonRepository();
+            trainerRepository = new MySQLTrainerRepository();
+            typeRepository = new MySQLTypeRepository();
+        }
+        if (DatabaseConfig.getInstance().getBooleanProperty("metrics.enabled", true)) {
+            pokemonRepository = MetricsProxy.wrap(PokemonRepository.class, pokemonRepository);
+            trainerRepository = MetricsProxy.wrap(TrainerRepository.class, trainerRepository);
+            typeRepository = MetricsProxy.wrap(TypeRepository.class, typeRepository);
+        }
+        if (!readOnly && DatabaseConfig.getInstance().getBooleanProperty("writeBehind.enabled", false)) {
+            writeBehindQueue = new WriteBehindQueue(pokemonRepository, trainerRepository,
+                    DatabaseConfig.getInstance().getIntProperty("writeBehind.intervalMillis", 2000),
+                    DatabaseConfig.getInstance().getIntProperty("writeBehind.maxPending", 100));
+            pokemonRepository = writeBehindQueue.wrap(pokemonRepository);
+            trainerRepository = writeBehindQueue.wrap(trainerRepository);
+        }
+        TypeDictionary.setSource(typeRepository);
+    }
+
+    /**
+     * Reads snapshot.file if it is set and exists
+     * @return Store with the snapshot or null
+     */
+    private InMemoryStore loadSnapshot() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) return null;
+        try {
+            return InMemoryStore.fromSnapshot(snapshotPath);
+        } catch (SQLException e) {
+            System.err.println("Couldn't load the snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the current data to snapshot.file, from the store or in mysql mode from the database
+     * @return Size of the written file in bytes
+     * @throws SQLException If snapshot.file is not set, the repositories are read-only,
+     * the query execution fails or the file can't be written
+     */
+    public long saveSnapshot() throws SQLException {
+        if (snapshotPath == null) throw new SQLException("Set snapshot.file in the configuration to save snapshots.");
+        if (readOnly) throw new SQLException("The snapshot is opened read-only.");
+        SnapshotFile.Writer writer = new SnapshotFile.Writer();
+        if (store != null) store.copyTo(writer);
+        else SnapshotFile.copyDatabase(writer);
+        return writer.write(snapshotPath);
+    }
+
+    /**
+     * Returns the single instance of the factory
+     * @return Instance of the factory
+     */
+    public static synchronized RepositoryFactory getInstance() {
+        if (instance == null) {
+            instance = new RepositoryFactory();
+        }
+        return instance;
+    }
+
+    public PokemonRepository getPokemonRepository() {
+        return pokemonRepository;
+    }
+
+    public TrainerRepository getTrainerRepository() {
+        return trainerRepository;
+    }
+
+    public TypeRepository getTypeRepository() {
+        return typeRepository;
+    }
+
+    /**
+     * Returns the queue of the delayed edits
+     * @return Queue or null when writeBehind.enabled is false
+     */
+    public WriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    /**
+     * Returns the snapshot file
+     * @return Path or null when snapshot.file is not set
+     */
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    /**
+     * Hands out the snapshot read at start in mysql mode, shown until the tables are loaded from the database
+     * The factory drops its reference, so the snapshot is freed once the caller is done with it.
+     * @return Store with the snapshot or null if there was none or it was taken already
+     */
+    public synchronized InMemoryStore takeStartupSnapshot() {
+        InMemoryStore snapshot = startupSnapshot;
+        startupSnapshot = null;
+        return snapshot;
+    }
+
+    /**
+     * Checks if the repositories only allow reading
+     * @return True in snapshot mode
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Returns the store behind the in-memory repositories
+     * @return Store or null when the MySQL repositories are used
+     */
+    public InMemoryStore getStore() {
+        return store;
+    }
+}
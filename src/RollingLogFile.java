@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only text log that is rotated when it grows over a size limit
+ * The current file keeps its name, older ones are renamed to name.1 (newest) up to name.N (oldest)
+ */
+public class RollingLogFile {
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private Writer writer;
+    private long size;
+
+    /**
+     * Creates the log, the file is opened on the first write
+     * @param file Current log file
+     * @param maxBytes Size after which the file is rotated
+     * @param maxFiles Rotated files kept besides the current one
+     */
+    public RollingLogFile(Path file, long maxBytes, int maxFiles) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Appends lines as one entry, the entry is never split across two files
+     * @param text Entry text, a line break is added
+     */
+    public synchronized void append(String text) {
+        try {
+            if (writer == null) open();
+            String entry = text + System.lineSeparator();
+            writer.write(entry);
+            writer.flush();
+            size += entry.getBytes(StandardCharsets.UTF_8).length;
+            if (size >= maxBytes) rotate();
+        } catch (IOException e) {
+            System.err.println("Couldn't write " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the current file
+     */
+    public synchronized void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Couldn't close " + file + ": " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void open() throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        size = Files.exists(file) ? Files.size(file) : 0;
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void rotate() throws IOException {
+        close();
+        Files.deleteIfExists(rotated(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (maxFiles > 0) Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        else Files.deleteIfExists(file);
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
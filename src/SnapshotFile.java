@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the whole database: types, trainers and Pokémon as fixed-width records plus a string table
+ * Layout, all numbers big-endian:
+ * <pre>
+ * header    magic, version, created (millis), type count, trainer count, Pokémon count, string bytes,
+ *           CRC32 of everything after the header, reserved (48 bytes)
+ * types     id, name                                                       (8 bytes each)
+ * trainers  id, name, experience_points, is_gym_leader, created_at         (24 bytes each)
+ * pokemons  id, trainer_id (0 = none), nickname, rarity (-1 = none), hp, attack, defense, type_mask (36 bytes each)
+ * strings   length + UTF-8 bytes, names are offsets into this table, -1 is null
+ * </pre>
+ * The stats and the type links of a Pokémon are part of its record, the links as the type mask like in the
+ * pokemons table. Equal strings are stored once. Records are ordered by id.
+ * Reading maps the file into memory and walks the records without copying the file first.
+ */
+public class SnapshotFile {
+
+    /**
+     * Receives the records of a snapshot, in the order types, trainers, Pokémon, each ordered by id
+     */
+    public interface Sink {
+        void type(int id, String name) throws SQLException;
+
+        void trainer(int id, String name, float xp, boolean gymLeader, long createdAt) throws SQLException;
+
+        /**
+         * @param trainerId Owner or 0 for none
+         * @param rarity Index into StatColumns.RARITIES or StatColumns.NO_RARITY
+         * @param typeMask Type mask, see TypeDictionary.mask
+         */
+        void pokemon(int id, int trainerId, String nickname, byte rarity, int hp, int attack, int defense, long typeMask)
+                throws SQLException;
+    }
+
+    private static final int MAGIC = 0x504B534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 48;
+    private static final int TYPE_RECORD = 8;
+    private static final int TRAINER_RECORD = 24;
+    private static final int POKEMON_RECORD = 36;
+    private static final int NULL_STRING = -1;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Reads a snapshot file
+     * @param file Snapshot written by Writer
+     * @param sink Receives the records
+     * @return Time the snapshot was written, in milliseconds since the epoch
+     * @throws SQLException If the file can't be read, is not a snapshot, is damaged or the sink rejects a record
+     */
+    public static long read(Path file, Sink sink) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new SQLException(file + " is not a snapshot file.");
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (map.getInt(0) != MAGIC) throw new SQLException(file + " is not a snapshot file.");
+            if (map.getInt(4) != VERSION) {
+                throw new SQLException(file + " has snapshot version " + map.getInt(4) + ", expected " + VERSION + ".");
+            }
+            long created = map.getLong(8);
+            int types = map.getInt(16);
+            int trainers = map.getInt(20);
+            int pokemons = map.getInt(24);
+            int stringBytes = map.getInt(28);
+            long expectedSize = HEADER_SIZE + (long) types * TYPE_RECORD + (long) trainers * TRAINER_RECORD
+                    + (long) pokemons * POKEMON_RECORD + stringBytes;
+            if (types < 0 || trainers < 0 || pokemons < 0 || stringBytes < 0 || expectedSize != size) {
+                throw new SQLException(file + " is truncated or damaged.");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(map.slice(HEADER_SIZE, (int) (size - HEADER_SIZE)));
+            if (crc.getValue() != map.getLong(32)) throw new SQLException(file + " is damaged, the checksum does not match.");
+
+            int stringStart = (int) (size - stringBytes);
+            Strings strings = new Strings(map, stringStart);
+            int pos = HEADER_SIZE;
+            for (int i = 0; i < types; i++, pos += TYPE_RECORD) {
+                sink.type(map.getInt(pos), strings.get(map.getInt(pos + 4)));
+            }
+            for (int i = 0; i < trainers; i++, pos += TRAINER_RECORD) {
+                sink.trainer(map.getInt(pos), strings.get(map.getInt(pos + 4)), map.getFloat(pos + 8),
+                        map.getInt(pos + 12) != 0, map.getLong(pos + 16));
+            }
+            for (int i = 0; i < pokemons; i++, pos += POKEMON_RECORD) {
+                sink.pokemon(map.getInt(pos), map.getInt(pos + 4), strings.get(map.getInt(pos + 8)), map.get(pos + 12),
+                        map.getInt(pos + 16), map.getInt(pos + 20), map.getInt(pos + 24), map.getLong(pos + 28));
+            }
+            failed = false;
+            return created;
+        } catch (IOException | IndexOutOfBoundsException e) {
+            throw new SQLException("Couldn't read the snapshot " + file + ": " + e.getMessage());
+        } finally {
+            Metrics.getInstance().record("SnapshotFile.read", System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Streams the types, trainers and Pokémon of the database into a sink, all read in one transaction
+     * so the records are consistent with each other
+     * @param sink Receives the records
+     * @throws SQLException If the query execution fails
+     */
+    public static void copyDatabase(Sink sink) throws SQLException {
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = streaming(conn);
+                     ResultSet rs = stmt.executeQuery("SELECT id, type_name FROM types ORDER BY id")) {
+                    while (rs.next()) sink.type(rs.getInt(1), rs.getString(2));
+                }
+                try (Statement stmt = streaming(conn);
+                     ResultSet rs = stmt.executeQuery(
+                             "SELECT id, name, experience_points, is_gym_leader, created_at FROM trainers ORDER BY id")) {
+                    while (rs.next()) {
+                        Timestamp created = rs.getTimestamp(5);
+                        sink.trainer(rs.getInt(1), rs.getString(2), rs.getFloat(3), rs.getBoolean(4),
+                                created == null ? 0 : created.getTime());
+                    }
+                }
+                try (Statement stmt = streaming(conn);
+                     ResultSet rs = stmt.executeQuery("SELECT p.id, p.trainer_id, p.nickname, p.rarity, ps.hp, ps.attack,"
+                             + " ps.defense, p.type_mask FROM pokemons p LEFT JOIN pokemon_stats ps ON ps.pokemon_id = p.id"
+                             + " ORDER BY p.id")) {
+                    while (rs.next()) {
+                        sink.pokemon(rs.getInt(1), rs.getInt(2), rs.getString(3), StatColumns.rarityCode(rs.getString(4)),
+                                rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getLong(8));
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Statement streaming(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    /**
+     * Decodes strings of the string table, each offset only once
+     */
+    private static class Strings {
+        private final ByteBuffer map;
+        private final int start;
+        private final Map<Integer, String> decoded = new HashMap<>();
+        private byte[] scratch = new byte[64];
+
+        Strings(ByteBuffer map, int start) {
+            this.map = map;
+            this.start = start;
+        }
+
+        String get(int offset) {
+            if (offset == NULL_STRING) return null;
+            String value = decoded.get(offset);
+            if (value != null) return value;
+            int length = map.getInt(start + offset);
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            map.get(start + offset + 4, scratch, 0, length);
+            value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            decoded.put(offset, value);
+            return value;
+        }
+    }
+
+    /**
+     * Collects records and writes them as a snapshot file
+     * The records must arrive ordered by id, the sections are kept in memory until write().
+     */
+    public static class Writer implements Sink {
+        private ByteBuffer types = ByteBuffer.allocate(TYPE_RECORD * 64);
+        private ByteBuffer trainers = ByteBuffer.allocate(TRAINER_RECORD * 1024);
+        private ByteBuffer pokemons = ByteBuffer.allocate(POKEMON_RECORD * 1024);
+        private ByteBuffer strings = ByteBuffer.allocate(1 << 16);
+        private final Map<String, Integer> offsets = new HashMap<>();
+        private int typeCount;
+        private int trainerCount;
+        private int pokemonCount;
+
+        @Override
+        public void type(int id, String name) {
+            types = ensure(types, TYPE_RECORD);
+            types.putInt(id).putInt(string(name));
+            typeCount++;
+        }
+
+        @Override
+        public void trainer(int id, String name, float xp, boolean gymLeader, long createdAt) {
+            trainers = ensure(trainers, TRAINER_RECORD);
+            trainers.putInt(id).putInt(string(name)).putFloat(xp).putInt(gymLeader ? 1 : 0).putLong(createdAt);
+            trainerCount++;
+        }
+
+        @Override
+        public void pokemon(int id, int trainerId, String nickname, byte rarity, int hp, int attack, int defense, long typeMask) {
+            pokemons = ensure(pokemons, POKEMON_RECORD);
+            pokemons.putInt(id).putInt(trainerId).putInt(string(nickname)).put(rarity).put((byte) 0).putShort((short) 0)
+                    .putInt(hp).putInt(attack).putInt(defense).putLong(typeMask);
+            pokemonCount++;
+        }
+
+        /**
+         * Writes the collected records, the file is written next to the target and then moved over it
+         * @param file Target file, replaced if it exists
+         * @return Size of the written file in bytes
+         * @throws SQLException If the file can't be written
+         */
+        public long write(Path file) throws SQLException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            Path part = file.resolveSibling(file.getFileName() + ".part");
+            try {
+                ByteBuffer[] sections = {null, types.flip(), trainers.flip(), pokemons.flip(), strings.flip()};
+                CRC32 crc = new CRC32();
+                for (int i = 1; i < sections.length; i++) crc.update(sections[i].duplicate());
+                sections[0] = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis())
+                        .putInt(typeCount).putInt(trainerCount).putInt(pokemonCount).putInt(strings.limit())
+                        .putLong(crc.getValue()).putLong(0).flip();
+                long size = 0;
+                for (ByteBuffer section : sections) size += section.remaining();
+
+                try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    long written = 0;
+                    while (written < size) written += channel.write(sections);
+                    channel.force(false);
+                }
+                try {
+                    Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+                failed = false;
+                return size;
+            } catch (IOException e) {
+                throw new SQLException("Couldn't write the snapshot " + file + ": " + e.getMessage());
+            } finally {
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException e) {
+                    System.err.println("Couldn't delete " + part + ": " + e.getMessage());
+                }
+                Metrics.getInstance().record("SnapshotFile.write", System.nanoTime() - start, failed);
+            }
+        }
+
+        private int string(String value) {
+            if (value == null) return NULL_STRING;
+            Integer offset = offsets.get(value);
+            if (offset != null) return offset;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings = ensure(strings, 4 + bytes.length);
+            offset = strings.position();
+            strings.putInt(bytes.length).put(bytes);
+            offsets.put(value, offset);
+            return offset;
+        }
+
+        private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+            if (buffer.remaining() >= bytes) return buffer;
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            return larger.put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,384 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps connections so that every statement is timed
+ * Each execution is recorded in Metrics as "SQL <shape>", where the shape is the SQL with literals
+ * replaced by ? and IN lists collapsed. Executions slower than the threshold are written to a rolling log
+ * with their bind count, execution time, rows and fetch time, optionally followed by their EXPLAIN plan.
+ */
+public class SqlTracer {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern VALUES_ROWS = Pattern.compile("(\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))(?:\\s*,\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EXPLAINABLE = Pattern.compile("(?i)^\\s*(SELECT|INSERT|UPDATE|DELETE|REPLACE|WITH)\\b.*", Pattern.DOTALL);
+    private static final long EXPLAIN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Opens untraced connections for EXPLAIN
+     */
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final ConnectionSource explainSource;
+    private final long slowNanos;
+    private final boolean logAll;
+    private final RollingLogFile log;
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ExecutorService explainer;
+
+    /**
+     * Creates a tracer
+     * @param explainSource Connections for EXPLAIN, null disables EXPLAIN
+     * @param slowMillis Executions at least this long are logged as slow
+     * @param logAll If faster executions are logged too
+     * @param log Trace log
+     */
+    public SqlTracer(ConnectionSource explainSource, int slowMillis, boolean logAll, RollingLogFile log) {
+        this.explainSource = explainSource;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.logAll = logAll;
+        this.log = log;
+        this.explainer = explainSource == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "sql-explain");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Wraps a connection, statements created by it are traced
+     * @param connection Connection to wrap
+     * @return Traced connection, closing it closes the wrapped one
+     */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Stops the EXPLAIN thread and closes the log
+     */
+    public void shutdown() {
+        if (explainer != null) explainer.shutdownNow();
+        log.close();
+    }
+
+    /**
+     * Reduces SQL to its shape, so executions with different values are grouped together
+     * @param sql SQL text
+     * @return SQL without literals, with IN lists and multi-row VALUES collapsed and whitespace normalized
+     */
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?, ...)");
+        return VALUES_ROWS.matcher(shape).replaceAll("$1, ...");
+    }
+
+    /**
+     * Records a finished execution, logs it if it was slow and schedules its EXPLAIN
+     * @param trace Finished execution
+     */
+    private void finish(Trace trace) {
+        long total = trace.execNanos + trace.fetchNanos;
+        String shape = shape(trace.sql);
+        histograms.computeIfAbsent(shape, s -> Metrics.getInstance().histogram("SQL " + s)).record(total, trace.failed);
+
+        boolean slow = total >= slowNanos;
+        if (!slow && !logAll) return;
+        log.append(String.format(Locale.ROOT, "%s %s exec=%.2fms fetch=%.2fms rows=%d binds=%d batch=%d%s sql=%s",
+                LocalDateTime.now(), slow ? "SLOW" : "SQL", trace.execNanos / 1_000_000.0, trace.fetchNanos / 1_000_000.0,
+                trace.rows, trace.binds.size(), trace.batch, trace.failed ? " FAILED" : "", shape));
+        if (slow && explainer != null && EXPLAINABLE.matcher(trace.sql).matches() && shouldExplain(shape)) {
+            try {
+                explainer.execute(() -> explain(trace, shape));
+            } catch (RejectedExecutionException e) {
+                // tracer is shutting down
+            }
+        }
+    }
+
+    /**
+     * Limits EXPLAIN to once a minute per shape, a slow import statement would otherwise be explained for every row
+     * @param shape Statement shape
+     * @return If the shape should be explained now
+     */
+    private boolean shouldExplain(String shape) {
+        long now = System.nanoTime();
+        Long last = lastExplained.get(shape);
+        if (last != null && now - last < EXPLAIN_INTERVAL_NANOS) return false;
+        return last == null ? lastExplained.putIfAbsent(shape, now) == null : lastExplained.replace(shape, last, now);
+    }
+
+    /**
+     * Runs EXPLAIN with the bind values of the slow execution on a separate connection and logs the plan
+     * @param trace Slow execution
+     * @param shape Statement shape
+     */
+    private void explain(Trace trace, String shape) {
+        StringBuilder plan = new StringBuilder(LocalDateTime.now() + " EXPLAIN sql=" + shape);
+        try (Connection conn = explainSource.get();
+             PreparedStatement ps = conn.prepareStatement("EXPLAIN " + trace.sql)) {
+            for (int i = 0; i < trace.binds.size(); i++) ps.setObject(i + 1, trace.binds.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                while (rs.next()) {
+                    plan.append(System.lineSeparator()).append("   ");
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        Object value = rs.getObject(i);
+                        if (value != null) plan.append(' ').append(metaData.getColumnLabel(i)).append('=').append(value);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plan.append(System.lineSeparator()).append("    failed: ").append(e.getMessage());
+        }
+        log.append(plan.toString());
+    }
+
+    /**
+     * One execution of a statement
+     */
+    private static class Trace {
+        final String sql;
+        final List<Object> binds;
+        final int batch;
+        long execNanos;
+        long fetchNanos;
+        long rows;
+        boolean failed;
+        boolean finished;
+
+        Trace(String sql, List<Object> binds, int batch) {
+            this.sql = sql;
+            this.binds = binds;
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * Hands out traced statements
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced" + connection;
+                default:
+                    Object result = forward(connection, method, args);
+                    if (result instanceof Statement && method.getReturnType().isInterface()) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{method.getReturnType()},
+                                new StatementHandler((Statement) result, proxy, sql));
+                    }
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Times executions and collects bind values of one statement
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Object connection;
+        private final String preparedSql;
+        private List<Object> binds = new ArrayList<>();
+        private int batch;
+        private Trace open;
+
+        StatementHandler(Statement statement, Object connection, String preparedSql) {
+            this.statement = statement;
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                    && method.getParameterTypes()[0] == int.class) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return forward(statement, method, args);
+            }
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced" + statement;
+                case "getConnection":
+                    return connection;
+                case "clearParameters":
+                    binds = new ArrayList<>();
+                    return forward(statement, method, args);
+                case "addBatch":
+                    batch++;
+                    return forward(statement, method, args);
+                case "clearBatch":
+                    batch = 0;
+                    return forward(statement, method, args);
+                case "close":
+                    complete();
+                    return forward(statement, method, args);
+                case "getResultSet":
+                    ResultSet rs = (ResultSet) forward(statement, method, args);
+                    return rs == null || open == null ? rs : wrapResultSet(rs, proxy, open);
+                default:
+                    return name.startsWith("execute") ? execute(proxy, method, args) : forward(statement, method, args);
+            }
+        }
+
+        private void bind(int index, Object value) {
+            while (binds.size() < index) binds.add(null);
+            binds.set(index - 1, value);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            complete();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            Trace trace = new Trace(sql == null ? "" : sql, new ArrayList<>(binds), batch);
+            if (method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")) batch = 0;
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = forward(statement, method, args);
+            } catch (SQLException | RuntimeException e) {
+                trace.execNanos = System.nanoTime() - start;
+                trace.failed = true;
+                finishOnce(trace);
+                throw e;
+            }
+            trace.execNanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet) {
+                open = trace;
+                return wrapResultSet((ResultSet) result, proxy, trace);
+            }
+            if (Boolean.TRUE.equals(result)) {
+                open = trace;
+                return result;
+            }
+            trace.rows = Boolean.FALSE.equals(result) ? Math.max(0, statement.getUpdateCount()) : updateCount(result);
+            finishOnce(trace);
+            return result;
+        }
+
+        /**
+         * Finishes the execution whose result set is still open
+         */
+        private void complete() {
+            if (open != null) finishOnce(open);
+            open = null;
+        }
+    }
+
+    /**
+     * Counts rows and the time spent in next()
+     */
+    private class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Object statement;
+        private final Trace trace;
+
+        ResultSetHandler(ResultSet resultSet, Object statement, Trace trace) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.trace = trace;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    long start = System.nanoTime();
+                    Object result = forward(resultSet, method, args);
+                    trace.fetchNanos += System.nanoTime() - start;
+                    if (Boolean.TRUE.equals(result)) trace.rows++;
+                    return result;
+                case "close":
+                    finishOnce(trace);
+                    return forward(resultSet, method, args);
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced" + resultSet;
+                default:
+                    return forward(resultSet, method, args);
+            }
+        }
+    }
+
+    private ResultSet wrapResultSet(ResultSet resultSet, Object statement, Trace trace) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new ResultSetHandler(resultSet, statement, trace));
+    }
+
+    private void finishOnce(Trace trace) {
+        if (trace.finished) return;
+        trace.finished = true;
+        finish(trace);
+    }
+
+    private static long updateCount(Object result) {
+        if (result instanceof Number) return ((Number) result).longValue();
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) if (count > 0) rows += count;
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) if (count > 0) rows += count;
+        }
+        return rows;
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for building statements with IN lists and LIKE patterns
+ */
+public final class SqlUtils {
+
+    /**
+     * Largest number of keys bound into one IN list
+     */
+    public static final int MAX_IN_LIST = 1000;
+
+    private SqlUtils() {
+    }
+
+    /**
+     * Builds the placeholder list for an IN clause
+     * @param count Number of placeholders
+     * @return Text like "(?, ?, ?)"
+     */
+    public static String inList(int count) {
+        StringBuilder sb = new StringBuilder(count * 3 + 2).append('(');
+        for (int i = 0; i < count; i++) sb.append(i == 0 ? "?" : ", ?");
+        return sb.append(')').toString();
+    }
+
+    /**
+     * Escapes the wildcards of a LIKE pattern so that the text matches literally
+     * @param text Text searched for
+     * @return Text with backslashes, % and _ escaped by a backslash
+     */
+    public static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Binds integer keys starting at the given parameter index
+     * @param ps Statement
+     * @param index First parameter index
+     * @param keys Keys to bind
+     * @return Next free parameter index
+     * @throws SQLException If binding fails
+     */
+    public static int bindInts(PreparedStatement ps, int index, Collection<Integer> keys) throws SQLException {
+        for (int key : keys) ps.setInt(index++, key);
+        return index;
+    }
+
+    /**
+     * Splits keys into chunks no larger than MAX_IN_LIST, dropping duplicates
+     * @param keys Keys to split
+     * @return Chunks in ascending key order
+     */
+    public static List<List<Integer>> chunks(int[] keys) {
+        return chunks(Arrays.stream(keys).sorted().distinct().boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Splits keys into chunks no larger than MAX_IN_LIST
+     * @param keys Keys to split
+     * @return Chunks in iteration order
+     */
+    public static List<List<Integer>> chunks(Collection<Integer> keys) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> current = new ArrayList<>(Math.min(keys.size(), MAX_IN_LIST));
+        for (int key : keys) {
+            current.add(key);
+            if (current.size() == MAX_IN_LIST) {
+                chunks.add(current);
+                current = new ArrayList<>(MAX_IN_LIST);
+            }
+        }
+        if (!current.isEmpty()) chunks.add(current);
+        return chunks;
+    }
+}
@@ -0,0 +1,440 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Aggregations, percentiles, top-K and histograms over StatColumns
+ * The rows are split into chunks which are processed in parallel on the common fork-join pool,
+ * each chunk is one tight loop over the primitive columns writing only its own slots.
+ * Summaries group the rows by counting them per chunk and group, scattering (value, row) pairs
+ * into one array partitioned by group and sorting every partition, so percentiles are exact.
+ */
+public class StatAnalytics {
+
+    /**
+     * Stat column analysed
+     */
+    public enum Stat {
+        HP, ATTACK, DEFENSE
+    }
+
+    /**
+     * Grouping of the rows, with TYPE a Pokémon counts for each of its types
+     */
+    public enum Grouping {
+        NONE, RARITY, TYPE, TRAINER
+    }
+
+    /**
+     * Statistics of one group
+     */
+    public static class GroupSummary {
+        private final int key;
+        private final int count;
+        private final int min;
+        private final int max;
+        private final double mean;
+        private final int p50;
+        private final int p90;
+        private final int p99;
+        private final int[] topIds;
+        private final int[] topValues;
+
+        public GroupSummary(int key, int count, int min, int max, double mean, int p50, int p90, int p99,
+                            int[] topIds, int[] topValues) {
+            this.key = key;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.topIds = topIds;
+            this.topValues = topValues;
+        }
+
+        /**
+         * @return Rarity code, type ID or trainer ID depending on the grouping, 0 without grouping
+         */
+        public int getKey() {
+            return key;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public int getP50() {
+            return p50;
+        }
+
+        public int getP90() {
+            return p90;
+        }
+
+        public int getP99() {
+            return p99;
+        }
+
+        /**
+         * @return Pokémon IDs with the highest values, highest first
+         */
+        public int[] getTopIds() {
+            return topIds;
+        }
+
+        public int[] getTopValues() {
+            return topValues;
+        }
+    }
+
+    /**
+     * Counts of equally wide value ranges
+     */
+    public static class Histogram {
+        private final int min;
+        private final int width;
+        private final long[] counts;
+
+        public Histogram(int min, int width, long[] counts) {
+            this.min = min;
+            this.width = width;
+            this.counts = counts;
+        }
+
+        /**
+         * @return Lowest value of the first bucket
+         */
+        public int getMin() {
+            return min;
+        }
+
+        /**
+         * @return Values per bucket, bucket i holds min + i * width up to min + (i + 1) * width - 1
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        public long[] getCounts() {
+            return counts;
+        }
+    }
+
+    private static final int MIN_CHUNK_ROWS = 1 << 14;
+    private static final int MAX_COUNT_CELLS = 1 << 22;
+
+    private final StatColumns columns;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final int[] trainerKeys;
+    private final int[] trainerGroups;
+
+    /**
+     * Prepares the analytics, the columns must not change afterwards
+     * @param columns Loaded stats
+     */
+    public StatAnalytics(StatColumns columns) {
+        this.columns = columns;
+        int[] owners = columns.getTrainerIds();
+        trainerKeys = Arrays.stream(owners, 0, columns.size())
+                .filter(id -> id != StatColumns.NO_TRAINER).sorted().distinct().toArray();
+        trainerGroups = new int[columns.size()];
+        int chunks = chunkCount(1);
+        forEachChunk(chunks, chunk -> {
+            for (int row = chunkStart(chunk, chunks), end = chunkStart(chunk + 1, chunks); row < end; row++) {
+                trainerGroups[row] = owners[row] == StatColumns.NO_TRAINER ? -1 : Arrays.binarySearch(trainerKeys, owners[row]);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of analysed Pokémon
+     * @return Row count
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Computes count, min, max, mean, percentiles and the top-K Pokémon of every group
+     * @param stat Analysed column
+     * @param grouping Grouping of the rows, Pokémon without trainer or rarity are left out of those groupings
+     * @param rarity Only Pokémon with this rarity or null for all
+     * @param typeId Only Pokémon with this type or null for all
+     * @param topK Number of top Pokémon kept per group, may be 0
+     * @return Summaries of the non-empty groups ordered by group key
+     */
+    public List<GroupSummary> summarize(Stat stat, Grouping grouping, String rarity, Integer typeId, int topK) {
+        int[] values = values(stat);
+        int groupCount = groupCount(grouping);
+        int chunks = chunkCount(groupCount);
+        byte rarityCode = rarity == null ? StatColumns.NO_RARITY : StatColumns.rarityCode(rarity);
+        long typeBit = typeId == null ? 0 : TypeDictionary.bit(typeId);
+        byte[] rarities = columns.getRarities();
+        long[] masks = columns.getTypeMasks();
+
+        // pass 1: rows per chunk and group
+        int[][] counts = new int[chunks][groupCount];
+        forEachChunk(chunks, chunk -> {
+            int[] local = counts[chunk];
+            for (int row = chunkStart(chunk, chunks), end = chunkStart(chunk + 1, chunks); row < end; row++) {
+                if (rarity != null && rarities[row] != rarityCode) continue;
+                if (typeBit != 0 && (masks[row] & typeBit) == 0) continue;
+                countRow(grouping, row, local);
+            }
+        });
+
+        // every chunk gets its own slots inside each group partition
+        int[] groupStart = new int[groupCount + 1];
+        int[][] offsets = new int[chunks][groupCount];
+        int position = 0;
+        for (int group = 0; group < groupCount; group++) {
+            groupStart[group] = position;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                offsets[chunk][group] = position;
+                position += counts[chunk][group];
+            }
+        }
+        groupStart[groupCount] = position;
+
+        // pass 2: scatter (value, row) pairs, the value in the high bits sorts the pairs by value
+        long[] entries = new long[position];
+        forEachChunk(chunks, chunk -> {
+            int[] next = offsets[chunk];
+            for (int row = chunkStart(chunk, chunks), end = chunkStart(chunk + 1, chunks); row < end; row++) {
+                if (rarity != null && rarities[row] != rarityCode) continue;
+                if (typeBit != 0 && (masks[row] & typeBit) == 0) continue;
+                long entry = ((long) values[row] << 32) | row;
+                switch (grouping) {
+                    case NONE:
+                        entries[next[0]++] = entry;
+                        break;
+                    case RARITY:
+                        if (rarities[row] != StatColumns.NO_RARITY) entries[next[rarities[row]]++] = entry;
+                        break;
+                    case TYPE:
+                        for (long bits = masks[row]; bits != 0; bits &= bits - 1) {
+                            entries[next[Long.numberOfTrailingZeros(bits)]++] = entry;
+                        }
+                        break;
+                    default:
+                        if (trainerGroups[row] >= 0) entries[next[trainerGroups[row]]++] = entry;
+                        break;
+                }
+            }
+        });
+
+        // pass 3: sort every partition and read the statistics
+        GroupSummary[] summaries = new GroupSummary[groupCount];
+        int[] ids = columns.getIds();
+        if (groupCount < pool.getParallelism()) {
+            for (int group = 0; group < groupCount; group++) {
+                Arrays.parallelSort(entries, groupStart[group], groupStart[group + 1]);
+                summaries[group] = summary(groupKey(grouping, group), entries, groupStart[group], groupStart[group + 1], topK, ids);
+            }
+        } else {
+            forEachChunk(groupCount, group -> {
+                Arrays.sort(entries, groupStart[group], groupStart[group + 1]);
+                summaries[group] = summary(groupKey(grouping, group), entries, groupStart[group], groupStart[group + 1], topK, ids);
+            });
+        }
+        List<GroupSummary> result = new ArrayList<>();
+        for (GroupSummary summary : summaries) {
+            if (summary != null) result.add(summary);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the values in equally wide buckets between the smallest and largest value
+     * @param stat Analysed column
+     * @param buckets Maximum number of buckets
+     * @param rarity Only Pokémon with this rarity or null for all
+     * @param typeId Only Pokémon with this type or null for all
+     * @return Histogram, without buckets if no Pokémon matches
+     */
+    public Histogram histogram(Stat stat, int buckets, String rarity, Integer typeId) {
+        int[] values = values(stat);
+        int chunks = chunkCount(1);
+        byte rarityCode = rarity == null ? StatColumns.NO_RARITY : StatColumns.rarityCode(rarity);
+        long typeBit = typeId == null ? 0 : TypeDictionary.bit(typeId);
+        byte[] rarities = columns.getRarities();
+        long[] masks = columns.getTypeMasks();
+
+        int[] mins = new int[chunks];
+        int[] maxs = new int[chunks];
+        forEachChunk(chunks, chunk -> {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int row = chunkStart(chunk, chunks), end = chunkStart(chunk + 1, chunks); row < end; row++) {
+                if (rarity != null && rarities[row] != rarityCode) continue;
+                if (typeBit != 0 && (masks[row] & typeBit) == 0) continue;
+                min = Math.min(min, values[row]);
+                max = Math.max(max, values[row]);
+            }
+            mins[chunk] = min;
+            maxs[chunk] = max;
+        });
+        int min = Arrays.stream(mins).min().orElse(Integer.MAX_VALUE);
+        int max = Arrays.stream(maxs).max().orElse(Integer.MIN_VALUE);
+        if (min > max) return new Histogram(0, 1, new long[0]);
+
+        long range = (long) max - min + 1;
+        int width = (int) ((range + buckets - 1) / buckets);
+        int bucketCount = (int) ((range + width - 1) / width);
+        long[][] counts = new long[chunks][bucketCount];
+        forEachChunk(chunks, chunk -> {
+            long[] local = counts[chunk];
+            for (int row = chunkStart(chunk, chunks), end = chunkStart(chunk + 1, chunks); row < end; row++) {
+                if (rarity != null && rarities[row] != rarityCode) continue;
+                if (typeBit != 0 && (masks[row] & typeBit) == 0) continue;
+                local[(int) (((long) values[row] - min) / width)]++;
+            }
+        });
+        long[] total = new long[bucketCount];
+        for (long[] local : counts) {
+            for (int i = 0; i < bucketCount; i++) total[i] += local[i];
+        }
+        return new Histogram(min, width, total);
+    }
+
+    private void countRow(Grouping grouping, int row, int[] local) {
+        switch (grouping) {
+            case NONE:
+                local[0]++;
+                break;
+            case RARITY:
+                byte rarity = columns.getRarities()[row];
+                if (rarity != StatColumns.NO_RARITY) local[rarity]++;
+                break;
+            case TYPE:
+                for (long bits = columns.getTypeMasks()[row]; bits != 0; bits &= bits - 1) {
+                    local[Long.numberOfTrailingZeros(bits)]++;
+                }
+                break;
+            default:
+                if (trainerGroups[row] >= 0) local[trainerGroups[row]]++;
+                break;
+        }
+    }
+
+    private static GroupSummary summary(int key, long[] entries, int from, int to, int topK, int[] ids) {
+        int count = to - from;
+        if (count == 0) return null;
+        long sum = 0;
+        for (int i = from; i < to; i++) sum += (int) (entries[i] >> 32);
+        int top = Math.min(topK, count);
+        int[] topIds = new int[top];
+        int[] topValues = new int[top];
+        for (int i = 0; i < top; i++) {
+            long entry = entries[to - 1 - i];
+            topIds[i] = ids[(int) entry];
+            topValues[i] = (int) (entry >> 32);
+        }
+        return new GroupSummary(key, count, (int) (entries[from] >> 32), (int) (entries[to - 1] >> 32), (double) sum / count,
+                percentile(entries, from, count, 0.50), percentile(entries, from, count, 0.90),
+                percentile(entries, from, count, 0.99), topIds, topValues);
+    }
+
+    /**
+     * Nearest rank percentile of a sorted partition
+     */
+    private static int percentile(long[] entries, int from, int count, double fraction) {
+        int rank = (int) Math.ceil(fraction * count);
+        return (int) (entries[from + Math.max(rank, 1) - 1] >> 32);
+    }
+
+    private int[] values(Stat stat) {
+        switch (stat) {
+            case HP:
+                return columns.getHp();
+            case ATTACK:
+                return columns.getAttack();
+            default:
+                return columns.getDefense();
+        }
+    }
+
+    private int groupCount(Grouping grouping) {
+        switch (grouping) {
+            case NONE:
+                return 1;
+            case RARITY:
+                return StatColumns.RARITIES.length;
+            case TYPE:
+                return TypeDictionary.MAX_MASK_TYPE_ID;
+            default:
+                return trainerKeys.length;
+        }
+    }
+
+    private int groupKey(Grouping grouping, int group) {
+        switch (grouping) {
+            case NONE:
+            case RARITY:
+                return group;
+            case TYPE:
+                return group + 1;
+            default:
+                return trainerKeys[group];
+        }
+    }
+
+    /**
+     * Number of row chunks, a few per worker but never so many that the per chunk counters get large
+     */
+    private int chunkCount(int groupCount) {
+        int chunks = Math.min(columns.size() / MIN_CHUNK_ROWS, pool.getParallelism() * 4);
+        return Math.max(1, Math.min(chunks, MAX_COUNT_CELLS / Math.max(1, groupCount)));
+    }
+
+    private int chunkStart(int chunk, int chunks) {
+        return (int) ((long) columns.size() * chunk / chunks);
+    }
+
+    private void forEachChunk(int chunks, IntConsumer body) {
+        if (chunks == 1) body.accept(0);
+        else if (chunks > 1) pool.invoke(new ChunkTask(0, chunks, body));
+    }
+
+    /**
+     * Splits a range of chunks in halves until single chunks are left
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        ChunkTask(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                body.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, middle, body), new ChunkTask(middle, to, body));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * Column oriented copy of the Pokémon stats with the attributes the analytics group and filter by
+ * Row i of every array belongs to the same Pokémon. Filled once by add() and only read afterwards.
+ */
+public class StatColumns {
+
+    public static final String[] RARITIES = {"Common", "Rare", "Legendary"};
+    public static final byte NO_RARITY = -1;
+    public static final int NO_TRAINER = 0;
+
+    private int size;
+    private int[] ids;
+    private int[] trainerIds;
+    private byte[] rarities;
+    private long[] typeMasks;
+    private int[] hp;
+    private int[] attack;
+    private int[] defense;
+
+    /**
+     * Creates empty columns
+     * @param capacity Expected number of rows, the columns grow when needed
+     */
+    public StatColumns(int capacity) {
+        int initial = Math.max(16, capacity);
+        ids = new int[initial];
+        trainerIds = new int[initial];
+        rarities = new byte[initial];
+        typeMasks = new long[initial];
+        hp = new int[initial];
+        attack = new int[initial];
+        defense = new int[initial];
+    }
+
+    /**
+     * Appends one Pokémon
+     * @param trainerId Owning trainer or NO_TRAINER
+     * @param rarity Index into RARITIES or NO_RARITY
+     * @param typeMask Type mask, see TypeDictionary.mask
+     */
+    public void add(int id, int trainerId, byte rarity, long typeMask, int hpValue, int attackValue, int defenseValue) {
+        if (size == ids.length) grow();
+        ids[size] = id;
+        trainerIds[size] = trainerId;
+        rarities[size] = rarity;
+        typeMasks[size] = typeMask;
+        hp[size] = hpValue;
+        attack[size] = attackValue;
+        defense[size] = defenseValue;
+        size++;
+    }
+
+    /**
+     * Converts a rarity name to its code
+     * @param rarity Name like "Rare" or null
+     * @return Index into RARITIES or NO_RARITY if the name is null or unknown
+     */
+    public static byte rarityCode(String rarity) {
+        for (byte i = 0; i < RARITIES.length; i++) {
+            if (RARITIES[i].equalsIgnoreCase(rarity)) return i;
+        }
+        return NO_RARITY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] getIds() {
+        return ids;
+    }
+
+    public int[] getTrainerIds() {
+        return trainerIds;
+    }
+
+    public byte[] getRarities() {
+        return rarities;
+    }
+
+    public long[] getTypeMasks() {
+        return typeMasks;
+    }
+
+    public int[] getHp() {
+        return hp;
+    }
+
+    public int[] getAttack() {
+        return attack;
+    }
+
+    public int[] getDefense() {
+        return defense;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        trainerIds = Arrays.copyOf(trainerIds, capacity);
+        rarities = Arrays.copyOf(rarities, capacity);
+        typeMasks = Arrays.copyOf(typeMasks, capacity);
+        hp = Arrays.copyOf(hp, capacity);
+        attack = Arrays.copyOf(attack, capacity);
+        defense = Arrays.copyOf(defense, capacity);
+    }
+}
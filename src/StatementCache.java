@@ -0,0 +1,257 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of prepared statements belonging to one physical connection
+ * Statements are handed out as proxies whose close() puts the statement back into the cache,
+ * so repeated SQL skips the parse and prepare round trip. A statement is never shared:
+ * while it is in use it is not in the cache, and a second request for the same SQL prepares a new one.
+ * Evicted statements and all cached statements of a closed connection are closed for real.
+ */
+public class StatementCache {
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final AtomicInteger CACHED = new AtomicInteger();
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Map<Key, PreparedStatement> idle;
+    private final Map<PreparedStatement, Key> inUse = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty cache
+     * @param physical Connection the statements are prepared on
+     * @param maxSize Idle statements kept per connection, 0 disables caching
+     */
+    public StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.idle = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) return false;
+                EVICTIONS.increment();
+                CACHED.decrementAndGet();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement or prepares a new one
+     * @param connection Connection proxy returned by getConnection() of the statement
+     * @param sql SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return Statement proxy which goes back to the cache when closed
+     * @throws SQLException If the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(Connection connection, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement statement = idle.remove(key);
+        if (statement != null) {
+            HITS.increment();
+            CACHED.decrementAndGet();
+        } else {
+            MISSES.increment();
+            statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        inUse.put(statement, key);
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new StatementHandler(connection, statement));
+    }
+
+    /**
+     * Puts a statement back after its proxy was closed
+     * Parameters, batches and limits are cleared so the next user starts from a fresh statement
+     * @param statement Physical statement
+     */
+    private synchronized void giveBack(PreparedStatement statement) {
+        Key key = inUse.remove(statement);
+        if (key == null) return;
+        try {
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setMaxRows(0);
+            statement.setFetchSize(0);
+            statement.setQueryTimeout(0);
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        if (maxSize == 0 || idle.containsKey(key)) {
+            closeQuietly(statement);
+        } else {
+            idle.put(key, statement);
+            CACHED.incrementAndGet();
+        }
+    }
+
+    /**
+     * Closes statements the caller forgot to close when the connection goes back to the pool
+     * They are not cached because their proxies may still be used
+     */
+    public synchronized void closeLeaked() {
+        for (PreparedStatement statement : inUse.keySet()) closeQuietly(statement);
+        inUse.clear();
+    }
+
+    /**
+     * Closes every statement, called before the physical connection is closed
+     */
+    public synchronized void closeAll() {
+        List<PreparedStatement> all = new ArrayList<>(idle.values());
+        all.addAll(inUse.keySet());
+        CACHED.addAndGet(-idle.size());
+        idle.clear();
+        inUse.clear();
+        for (PreparedStatement statement : all) closeQuietly(statement);
+    }
+
+    /**
+     * Returns a snapshot of the counters of all caches
+     * @return Cache statistics
+     */
+    public static CacheStats getStats() {
+        return new CacheStats(HITS.sum(), MISSES.sum(), EVICTIONS.sum(), CACHED.get());
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // the statement is not used anymore
+        }
+    }
+
+    /**
+     * SQL text together with the generated keys flag, both change the prepared statement
+     */
+    private static class Key {
+        final String sql;
+        final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys);
+        }
+    }
+
+    /**
+     * Forwards calls to the physical statement until the proxy is closed
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private boolean closed;
+
+        StatementHandler(Connection connection, PreparedStatement statement) {
+            this.connection = connection;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack(statement);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + statement;
+                default:
+                    if (closed) throw new SQLException("Statement is already closed.");
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the statement cache counters
+     */
+    public static class CacheStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int cached;
+
+        public CacheStats(long hits, long misses, long evictions, int cached) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.cached = cached;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getCached() {
+            return cached;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRatio=%.1f%% evictions=%d cached=%d",
+                    hits, misses, getHitRatio() * 100, evictions, cached);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Drop-down list under a text field showing the NameIndex matches of the typed text
+ * Up and Down move in the list, Enter or a click picks a match and Escape closes the list.
+ * Picking puts the name into the field, typing something else clears the pick again.
+ */
+public class SuggestionPopup {
+
+    /**
+     * Receives the picked match, or null when the text no longer belongs to the picked match
+     */
+    public interface Listener {
+        void picked(NameIndex.Match match);
+    }
+
+    private final JTextField field;
+    private final NameIndex index;
+    private final int limit;
+    private final Listener listener;
+    private final JPopupMenu popup = new JPopupMenu();
+    private final JList<NameIndex.Match> list = new JList<>();
+    private NameIndex.Match picked;
+    private boolean picking;
+
+    /**
+     * Attaches the list to a text field
+     * @param field Field the user types in
+     * @param index Index searched while typing
+     * @param limit Number of matches shown
+     * @param listener Informed when a match is picked or the pick is cleared
+     */
+    public SuggestionPopup(JTextField field, NameIndex index, int limit, Listener listener) {
+        this.field = field;
+        this.index = index;
+        this.limit = limit;
+        this.listener = listener;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void removeUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void changedUpdate(DocumentEvent e) { textChanged(); }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) return;
+                int size = list.getModel().getSize();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        list.setSelectedIndex(Math.min(size - 1, list.getSelectedIndex() + 1));
+                        break;
+                    case KeyEvent.VK_UP:
+                        list.setSelectedIndex(Math.max(0, list.getSelectedIndex() - 1));
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        if (list.getSelectedValue() != null) pick(list.getSelectedValue());
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        break;
+                    default:
+                        return;
+                }
+                list.ensureIndexIsVisible(list.getSelectedIndex());
+                e.consume();
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = list.locationToIndex(e.getPoint());
+                if (row >= 0) pick(list.getModel().getElementAt(row));
+            }
+        });
+    }
+
+    /**
+     * Returns the picked match
+     * @return Match whose name is in the field or null
+     */
+    public NameIndex.Match getPicked() {
+        return picked;
+    }
+
+    /**
+     * Puts a match into the field as if the user picked it
+     * @param match Match to show
+     */
+    public void pick(NameIndex.Match match) {
+        picking = true;
+        try {
+            field.setText(match.getName());
+        } finally {
+            picking = false;
+        }
+        popup.setVisible(false);
+        picked = match;
+        listener.picked(match);
+    }
+
+    private void textChanged() {
+        if (picking) return;
+        if (picked != null) {
+            picked = null;
+            listener.picked(null);
+        }
+        // the document is locked while it notifies, so the list is updated afterwards
+        SwingUtilities.invokeLater(this::showMatches);
+    }
+
+    private void showMatches() {
+        List<NameIndex.Match> matches = index.find(field.getText(), limit);
+        if (matches.isEmpty() || !field.isShowing() || picked != null) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setListData(matches.toArray(new NameIndex.Match[0]));
+        list.setSelectedIndex(0);
+        list.setVisibleRowCount(Math.min(matches.size(), 10));
+        popup.setPopupSize(Math.max(field.getWidth(), 250), list.getPreferredScrollableViewportSize().height + 6);
+        if (!popup.isVisible()) popup.show(field, 0, field.getHeight());
+        else popup.pack();
+        field.requestFocusInWindow();
+    }
+}
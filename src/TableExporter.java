@@ -0,0 +1,381 @@
+import javax.swing.table.TableModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming export of a view or table into a CSV or JSON Lines file
+ * Rows come from a forward-only result set fetched row by row (fetch size Integer.MIN_VALUE), are encoded into
+ * one reused direct buffer and written to a file channel, so memory stays the same for any number of rows.
+ * The CSV has a header line and ';' separated columns, fields containing ';' or quotes are quoted,
+ * JSON Lines has one object per row with the column names as keys.
+ * The tables write their raw columns. pokemons_import and trainers_import write the layout the importers read
+ * (stats joined, types as names), so those CSV files can be imported again; Pokémon without a trainer are left out.
+ * The file is written next to the target and only replaces it once the export is complete.
+ */
+public class TableExporter {
+
+    /**
+     * Layout of the written file
+     */
+    public enum Format {
+        CSV("csv"), JSON_LINES("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Views and tables that can be exported
+     */
+    public static final List<String> TABLES = List.of("view_detailed_pokemons", "view_trainer_performance",
+            "pokemons_import", "trainers_import",
+            "pokemons", "pokemon_stats", "pokemon_types", "trainers", "types", "trainer_pokemon_stats");
+
+    /**
+     * Queries of the exports in the importers' column order, see the README for the layouts
+     */
+    private static final Map<String, String> IMPORT_LAYOUTS = Map.of(
+            "pokemons_import", "SELECT p.trainer_id, p.nickname, p.rarity, ps.hp, ps.attack, ps.defense,"
+                    + " p.type_mask AS type1, p.type_mask AS type2"
+                    + " FROM pokemons p JOIN pokemon_stats ps ON ps.pokemon_id = p.id"
+                    + " WHERE p.trainer_id IS NOT NULL ORDER BY p.id",
+            "trainers_import", "SELECT name, COALESCE(experience_points, 0) AS experience_points,"
+                    + " IF(is_gym_leader, 'true', 'false') AS is_gym_leader FROM trainers ORDER BY id");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_ROWS = 5000;
+
+    private static final int TEXT = 0;
+    private static final int NUMBER = 1;
+    private static final int BOOLEAN = 2;
+    private static final int TYPE_NAMES = 3;
+    private static final int FIRST_TYPE = 4;
+    private static final int SECOND_TYPE = 5;
+
+    private final Path target;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private CharBuffer chars = CharBuffer.allocate(1024);
+    private FileChannel channel;
+    private long bytes;
+
+    /**
+     * Prepares an export into one file
+     * @param target File to write, replaced if it exists
+     * @param format Layout of the file
+     */
+    public TableExporter(Path target, Format format) {
+        this.target = target;
+        this.format = format;
+    }
+
+    /**
+     * Streams a view or table of the database into the file
+     * The types column of view_detailed_pokemons is written as type names, the import layouts write one name per column.
+     * @param table One of TABLES
+     * @param listener Progress callback, may be null
+     * @return Number of written rows and bytes
+     * @throws SQLException If the query execution or writing fails, or the calling thread was interrupted
+     */
+    public ExportResult export(String table, ExportProgressListener listener) throws SQLException {
+        if (!TABLES.contains(table)) throw new SQLException("Unknown table " + table + ".");
+        long start = System.nanoTime();
+        boolean failed = true;
+        String query = IMPORT_LAYOUTS.getOrDefault(table, "SELECT * FROM " + table);
+        try (Connection conn = DatabaseConfig.getInstance().getConnection()) {
+            long total;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM (" + query + ") AS q")) {
+                total = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = stmt.executeQuery(query)) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    String[] columns = new String[meta.getColumnCount()];
+                    int[] kinds = new int[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i] = meta.getColumnLabel(i + 1);
+                        kinds[i] = kind(meta.getColumnType(i + 1));
+                        if (table.equals("view_detailed_pokemons") && columns[i].equals("types")) kinds[i] = TYPE_NAMES;
+                        if (table.equals("pokemons_import") && columns[i].equals("type1")) kinds[i] = FIRST_TYPE;
+                        if (table.equals("pokemons_import") && columns[i].equals("type2")) kinds[i] = SECOND_TYPE;
+                    }
+                    TypeDictionary types = TypeDictionary.get();
+                    String[] values = new String[columns.length];
+
+                    ExportResult result = write(columns, total, listener, () -> {
+                        if (!rs.next()) return false;
+                        for (int i = 0; i < values.length; i++) values[i] = read(rs, i + 1, kinds[i], types);
+                        return true;
+                    }, values, kinds, start);
+                    failed = false;
+                    return result;
+                }
+            }
+        } finally {
+            Metrics.getInstance().record("TableExporter.export", System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Writes a table snapshot into the file, used for the in-memory store whose tables are snapshots anyway
+     * @param model Snapshot, its column names become the header
+     * @param listener Progress callback, may be null
+     * @return Number of written rows and bytes
+     * @throws SQLException If writing fails or the calling thread was interrupted
+     */
+    public ExportResult export(TableModel model, ExportProgressListener listener) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String[] columns = new String[model.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) columns[i] = model.getColumnName(i);
+            String[] values = new String[columns.length];
+            int[] kinds = new int[columns.length];
+            int[] row = {-1};
+
+            ExportResult result = write(columns, model.getRowCount(), listener, () -> {
+                if (++row[0] >= model.getRowCount()) return false;
+                for (int i = 0; i < values.length; i++) {
+                    Object value = model.getValueAt(row[0], i);
+                    kinds[i] = value instanceof Number ? NUMBER : value instanceof Boolean ? BOOLEAN : TEXT;
+                    values[i] = value == null ? null : value.toString();
+                }
+                return true;
+            }, values, kinds, start);
+            failed = false;
+            return result;
+        } finally {
+            Metrics.getInstance().record("TableExporter.export", System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Source of the rows, fills the shared values array
+     */
+    private interface RowReader {
+        boolean next() throws SQLException;
+    }
+
+    /**
+     * Writes the header and all rows into a temporary file and moves it over the target
+     */
+    private ExportResult write(String[] columns, long total, ExportProgressListener listener, RowReader reader,
+                               String[] values, int[] kinds, long start) throws SQLException {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        long rows = 0;
+        try {
+            channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            buffer.clear();
+            bytes = 0;
+            if (format == Format.CSV) {
+                line.setLength(0);
+                for (int i = 0; i < columns.length; i++) {
+                    if (i > 0) line.append(';');
+                    appendCsv(columns[i]);
+                }
+                writeLine();
+            }
+            while (reader.next()) {
+                line.setLength(0);
+                if (format == Format.CSV) appendCsvRow(values);
+                else appendJsonRow(columns, values, kinds);
+                writeLine();
+                if (++rows % PROGRESS_ROWS == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new SQLException("Export was cancelled after " + rows + " rows.");
+                    }
+                    if (listener != null) listener.onProgress(rows, Math.max(total, rows), bytes + buffer.position());
+                }
+            }
+            drain();
+            channel.close();
+            move(part);
+        } catch (ClosedByInterruptException e) {
+            throw new SQLException("Export was cancelled after " + rows + " rows.");
+        } catch (IOException e) {
+            throw new SQLException("Writing error: " + e.getMessage() + " after " + rows + " rows.");
+        } finally {
+            if (channel != null && channel.isOpen()) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // the partial file is deleted below
+                }
+            }
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                System.err.println("Couldn't delete " + part + ": " + e.getMessage());
+            }
+        }
+        if (listener != null) listener.onProgress(rows, rows, bytes);
+        return new ExportResult(rows, bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void move(Path part) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int kind(int sqlType) {
+        // java.sql.Types is written out, Types is the type entity of this project
+        switch (sqlType) {
+            case java.sql.Types.TINYINT:
+            case java.sql.Types.SMALLINT:
+            case java.sql.Types.INTEGER:
+            case java.sql.Types.BIGINT:
+            case java.sql.Types.DECIMAL:
+            case java.sql.Types.NUMERIC:
+            case java.sql.Types.REAL:
+            case java.sql.Types.FLOAT:
+            case java.sql.Types.DOUBLE:
+                return NUMBER;
+            case java.sql.Types.BIT:
+            case java.sql.Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                return TEXT;
+        }
+    }
+
+    /**
+     * Reads a column as text, booleans as true/false like the trainer import expects
+     */
+    private static String read(ResultSet rs, int column, int kind, TypeDictionary types) throws SQLException {
+        switch (kind) {
+            case BOOLEAN:
+                boolean flag = rs.getBoolean(column);
+                return rs.wasNull() ? null : Boolean.toString(flag);
+            case TYPE_NAMES:
+                long mask = rs.getLong(column);
+                return rs.wasNull() || mask == 0 ? null : types.getNames(mask);
+            case FIRST_TYPE:
+            case SECOND_TYPE:
+                long bits = rs.getLong(column);
+                if (kind == SECOND_TYPE) bits &= bits - 1;
+                return bits == 0 ? null : types.getName(Long.numberOfTrailingZeros(bits) + 1);
+            default:
+                return rs.getString(column);
+        }
+    }
+
+    private void appendCsvRow(String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(';');
+            if (values[i] != null) appendCsv(values[i]);
+        }
+    }
+
+    /**
+     * Appends a CSV field, quoted only if it contains the separator, a quote or a line break
+     */
+    private void appendCsv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ';' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') line.append('"');
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJsonRow(String[] columns, String[] values, int[] kinds) {
+        line.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(',');
+            appendJsonString(columns[i]);
+            line.append(':');
+            if (values[i] == null) line.append("null");
+            else if (kinds[i] == NUMBER || kinds[i] == BOOLEAN) line.append(values[i]);
+            else appendJsonString(values[i]);
+        }
+        line.append('}');
+    }
+
+    private void appendJsonString(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Encodes the current line plus a line break into the buffer, writing the buffer whenever it fills up
+     */
+    private void writeLine() throws IOException {
+        line.append('\n');
+        int length = line.length();
+        if (chars.capacity() < length) chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        chars.clear();
+        line.getChars(0, length, chars.array(), 0);
+        chars.limit(length);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) drain();
+            else break;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) bytes += channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -6,12 +6,18 @@ public class Trainer {
     private String name;
     private float experiencePoints;
     private boolean isGymLeader;
+    private int version;
 
     public Trainer(int id, String name, float xp, boolean isLeader) {
+        this(id, name, xp, isLeader, UpdateResult.ANY_VERSION);
+    }
+
+    public Trainer(int id, String name, float xp, boolean isLeader, int version) {
         this.id = id;
         this.name = name;
         this.experiencePoints = xp;
         this.isGymLeader = isLeader;
+        this.version = version;
     }
 
     public int getId() {
@@ -29,4 +35,11 @@ public class Trainer {
     public boolean isLeader() {
         return isGymLeader;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return Row version, raised by every change of the trainer, or UpdateResult.ANY_VERSION if unknown
+     */
+    public int getVersion() {
+        return version;
+    }
+}
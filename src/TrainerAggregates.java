@@ -0,0 +1,118 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the trainer_pokemon_stats table (pokemon count and attack sum per trainer)
+ * The repositories call it inside their own transactions, so the aggregates change
+ * together with the Pokémon rows and view_trainer_performance never has to scan all Pokémon
+ */
+public final class TrainerAggregates {
+
+    private static final String ADJUST_SQL = "INSERT INTO trainer_pokemon_stats (trainer_id, pokemon_count, attack_sum)"
+            + " VALUES (?, ?, ?) AS d"
+            + " ON DUPLICATE KEY UPDATE pokemon_count = trainer_pokemon_stats.pokemon_count + d.pokemon_count,"
+            + " attack_sum = trainer_pokemon_stats.attack_sum + d.attack_sum";
+
+    private static final String COMPUTED_SQL = "SELECT p.trainer_id, COUNT(*) AS pokemon_count, SUM(ps.attack) AS attack_sum"
+            + " FROM pokemons p JOIN pokemon_stats ps ON ps.pokemon_id = p.id"
+            + " WHERE p.trainer_id IS NOT NULL GROUP BY p.trainer_id";
+
+    private TrainerAggregates() {
+    }
+
+    /**
+     * Adds the deltas to the aggregate row of a trainer, creating it when missing
+     * @param conn Connection of the running transaction
+     * @param trainerId Trainer ID, nothing is done for null (pokémon without trainer)
+     * @param countDelta Change of the pokémon count
+     * @param attackDelta Change of the attack sum
+     * @throws SQLException If the query execution fails
+     */
+    public static void adjust(Connection conn, Integer trainerId, int countDelta, long attackDelta) throws SQLException {
+        if (trainerId == null || (countDelta == 0 && attackDelta == 0)) return;
+        try (PreparedStatement ps = conn.prepareStatement(ADJUST_SQL)) {
+            ps.setInt(1, trainerId);
+            ps.setInt(2, countDelta);
+            ps.setLong(3, attackDelta);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the deltas of many trainers with one JDBC batch
+     * @param conn Connection of the running transaction
+     * @param deltas Trainer ID to {count delta, attack delta}
+     * @throws SQLException If the query execution fails
+     */
+    public static void adjustAll(Connection conn, Map<Integer, long[]> deltas) throws SQLException {
+        if (deltas.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement(ADJUST_SQL)) {
+            for (Map.Entry<Integer, long[]> e : deltas.entrySet()) {
+                ps.setInt(1, e.getKey());
+                ps.setInt(2, (int) e.getValue()[0]);
+                ps.setLong(3, e.getValue()[1]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Adds the aggregates of Pokémon that were just inserted from a staging table
+     * @param conn Connection of the running transaction
+     * @param from FROM clause yielding trainer_id and attack columns of the new rows
+     * @throws SQLException If the query execution fails
+     */
+    public static void adjustFrom(Connection conn, String from) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("INSERT INTO trainer_pokemon_stats (trainer_id, pokemon_count, attack_sum)"
+                    + " SELECT * FROM (SELECT trainer_id, COUNT(*) AS pokemon_count, SUM(attack) AS attack_sum"
+                    + " FROM " + from + " GROUP BY trainer_id) AS d"
+                    + " ON DUPLICATE KEY UPDATE pokemon_count = trainer_pokemon_stats.pokemon_count + d.pokemon_count,"
+                    + " attack_sum = trainer_pokemon_stats.attack_sum + d.attack_sum");
+        }
+    }
+
+    /**
+     * Recomputes all aggregates from the Pokémon tables in one transaction
+     * @param conn Open connection
+     * @throws SQLException If the query execution fails
+     */
+    public static void rebuild(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM trainer_pokemon_stats");
+            stmt.executeUpdate("INSERT INTO trainer_pokemon_stats (trainer_id, pokemon_count, attack_sum) " + COMPUTED_SQL);
+            ChangeLog.recordTables(conn, ChangeLog.TRAINERS);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Compares the maintained aggregates with freshly computed ones
+     * @param conn Open connection
+     * @return IDs of trainers whose aggregates differ, empty if everything matches
+     * @throws SQLException If the query execution fails
+     */
+    public static List<Integer> verify(Connection conn) throws SQLException {
+        String sql = "SELECT t.id FROM trainers t"
+                + " LEFT JOIN trainer_pokemon_stats a ON a.trainer_id = t.id"
+                + " LEFT JOIN (" + COMPUTED_SQL + ") c ON c.trainer_id = t.id"
+                + " WHERE COALESCE(a.pokemon_count, 0) <> COALESCE(c.pokemon_count, 0)"
+                + " OR COALESCE(a.attack_sum, 0) <> COALESCE(c.attack_sum, 0)"
+                + " ORDER BY t.id";
+        List<Integer> mismatched = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) mismatched.add(rs.getInt(1));
+        }
+        return mismatched;
+    }
+}
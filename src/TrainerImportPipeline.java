@@ -0,0 +1,384 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streaming import of the trainer CSV format (name;experience_points;is_gym_leader)
+ * The file flows through three stages joined by bounded queues:
+ * a reader filling recycled direct buffers, a parser turning bytes into column batches
+ * without splitting lines into Strings, and a writer which runs on the calling thread.
+ * Buffers and batches are reused, so memory stays the same for any file size.
+ */
+public class TrainerImportPipeline {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BUFFER_COUNT = 4;
+    private static final int BATCH_COUNT = 4;
+
+    /**
+     * Writer stage receiving parsed batches
+     */
+    public interface BatchWriter {
+        /**
+         * Writes and commits one batch
+         * @param batch Parsed trainers
+         * @throws SQLException If the batch could not be written
+         */
+        void write(TrainerBatch batch) throws SQLException;
+    }
+
+    /**
+     * Reusable column buffers holding one batch of parsed trainers
+     */
+    public static class TrainerBatch {
+        final String[] names;
+        final float[] xp;
+        final boolean[] gymLeader;
+        int size;
+        long endOffset;
+        SQLException failure;
+        boolean last;
+
+        TrainerBatch(int capacity) {
+            names = new String[capacity];
+            xp = new float[capacity];
+            gymLeader = new boolean[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getName(int i) {
+            return names[i];
+        }
+
+        public float getXp(int i) {
+            return xp[i];
+        }
+
+        public boolean isGymLeader(int i) {
+            return gymLeader[i];
+        }
+
+        void reset() {
+            for (int i = 0; i < size; i++) names[i] = null;
+            size = 0;
+            failure = null;
+            last = false;
+        }
+    }
+
+    private final Path path;
+    private final int batchSize;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<TrainerBatch> freeBatches = new ArrayBlockingQueue<>(BATCH_COUNT);
+    private final BlockingQueue<TrainerBatch> filledBatches = new ArrayBlockingQueue<>(BATCH_COUNT);
+    private volatile IOException readFailure;
+    private volatile boolean cancelled;
+
+    /**
+     * Marker put on the buffer queue after the last chunk
+     */
+    private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+
+    /**
+     * Prepares the pipeline for one file
+     * @param path CSV file
+     * @param batchSize Rows per written batch
+     */
+    public TrainerImportPipeline(Path path, int batchSize) {
+        this.path = path;
+        this.batchSize = batchSize;
+        for (int i = 0; i < BUFFER_COUNT; i++) freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        for (int i = 0; i < BATCH_COUNT; i++) freeBatches.add(new TrainerBatch(batchSize));
+    }
+
+    /**
+     * Runs the import, blocking until the whole file is written or a stage fails
+     * @param writer Writer stage
+     * @param listener Progress callback, may be null
+     * @return Number of imported rows and throughput
+     * @throws SQLException If reading, parsing or writing fails; batches written before stay committed
+     */
+    public ImportResult run(BatchWriter writer, ImportProgressListener listener) throws SQLException {
+        long start = System.currentTimeMillis();
+        long totalBytes;
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            totalBytes = channel.size();
+        } catch (IOException e) {
+            throw new SQLException("File access error: " + e.getMessage());
+        }
+
+        Thread reader = new Thread(() -> readStage(channel), "trainer-import-reader");
+        Thread parser = new Thread(this::parseStage, "trainer-import-parser");
+        reader.setDaemon(true);
+        parser.setDaemon(true);
+        reader.start();
+        parser.start();
+
+        int rows = 0;
+        try {
+            while (true) {
+                TrainerBatch batch = filledBatches.take();
+                try {
+                    if (batch.size > 0) {
+                        try {
+                            writer.write(batch);
+                        } catch (SQLException e) {
+                            throw new SQLException("Import stopped: " + e.getMessage() + " "
+                                    + rows + " trainers from the previous batches were imported.",
+                                    e.getSQLState(), e.getErrorCode(), e);
+                        }
+                        rows += batch.size;
+                        if (listener != null) {
+                            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                            listener.onProgress(batch.endOffset, totalBytes, rows, rows * 1000.0 / elapsed);
+                        }
+                    }
+                    if (batch.failure != null) {
+                        throw new SQLException(batch.failure.getMessage() + " " + rows + " trainers from the previous lines were imported.");
+                    }
+                    if (batch.last) break;
+                } finally {
+                    batch.reset();
+                    freeBatches.put(batch);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import was interrupted after " + rows + " trainers.");
+        } finally {
+            cancelled = true;
+            reader.interrupt();
+            parser.interrupt();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to read
+            }
+        }
+
+        if (rows == 0) throw new SQLException("No valid trainer records were processed.");
+        return new ImportResult(rows, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Reader stage: fills free buffers from the file channel
+     * @param channel Open file
+     */
+    private void readStage(FileChannel channel) {
+        try {
+            while (!cancelled) {
+                ByteBuffer buffer = freeBuffers.take();
+                buffer.clear();
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    freeBuffers.put(buffer);
+                    break;
+                }
+                buffer.flip();
+                filledBuffers.put(buffer);
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            return;
+        }
+        try {
+            filledBuffers.put(END_OF_FILE);
+        } catch (InterruptedException ignored) {
+            // the pipeline is being torn down
+        }
+    }
+
+    /**
+     * Parser stage: cuts buffers into lines and lines into batch columns
+     */
+    private void parseStage() {
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long offset = 0;
+        int lineNumber = 0;
+        TrainerBatch batch = null;
+
+        try {
+            batch = freeBatches.take();
+            while (true) {
+                ByteBuffer buffer = filledBuffers.take();
+                if (buffer == END_OF_FILE) break;
+
+                int pos = buffer.position();
+                int limit = buffer.limit();
+                while (pos < limit) {
+                    int end = pos;
+                    while (end < limit && buffer.get(end) != '\n') end++;
+
+                    int len = end - pos;
+                    if (lineLength + len > line.length) {
+                        line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + len));
+                    }
+                    buffer.get(pos, line, lineLength, len);
+                    lineLength += len;
+                    offset += len;
+                    pos = end;
+
+                    if (end < limit) {
+                        pos++;
+                        offset++;
+                        lineNumber++;
+                        if (lineNumber > 1) {
+                            try {
+                                parseLine(line, lineLength, batch);
+                            } catch (NumberFormatException e) {
+                                batch.endOffset = offset;
+                                batch.failure = new SQLException("XP format error on line " + lineNumber + ": Please ensure experience is a number.");
+                                batch.last = true;
+                                filledBatches.put(batch);
+                                freeBuffers.put(buffer);
+                                return;
+                            }
+                            if (batch.size == batchSize) {
+                                batch.endOffset = offset;
+                                filledBatches.put(batch);
+                                batch = freeBatches.take();
+                            }
+                        }
+                        lineLength = 0;
+                    }
+                }
+                freeBuffers.put(buffer);
+            }
+
+            if (readFailure != null) {
+                batch.failure = new SQLException("File access error: " + readFailure.getMessage());
+            } else if (lineLength > 0 && ++lineNumber > 1) {
+                try {
+                    parseLine(line, lineLength, batch);
+                } catch (NumberFormatException e) {
+                    batch.failure = new SQLException("XP format error on line " + lineNumber + ": Please ensure experience is a number.");
+                }
+            }
+            if (lineNumber == 0 && batch.failure == null) {
+                batch.failure = new SQLException("Trainer file has no header.");
+            }
+            batch.endOffset = offset;
+            batch.last = true;
+            filledBatches.put(batch);
+        } catch (InterruptedException ignored) {
+            // the writer gave up, nobody is waiting for more batches
+        }
+    }
+
+    /**
+     * Parses one line into the next batch slot, lines with fewer than three fields are skipped
+     * The name may be quoted like TableExporter writes it, then it can contain ';' and doubled quotes.
+     * @param line Line bytes without the line break
+     * @param length Number of valid bytes
+     * @param batch Batch receiving the row
+     */
+    private static void parseLine(byte[] line, int length, TrainerBatch batch) {
+        if (length > 0 && line[length - 1] == '\r') length--;
+
+        int nameStart = skipSpaces(line, 0, length);
+        int quoteEnd = nameStart < length && line[nameStart] == '"' ? closingQuote(line, nameStart + 1, length) : -1;
+        int first = indexOf(line, quoteEnd < 0 ? 0 : quoteEnd + 1, length);
+        if (first < 0) return;
+        int second = indexOf(line, first + 1, length);
+        if (second < 0) return;
+        int third = indexOf(line, second + 1, length);
+        if (third < 0) third = length;
+
+        int i = batch.size;
+        batch.xp[i] = parseFloat(line, skipSpaces(line, first + 1, second), trimSpaces(line, first + 1, second));
+        batch.gymLeader[i] = isTrue(line, skipSpaces(line, second + 1, third), trimSpaces(line, second + 1, third));
+        if (quoteEnd < 0) {
+            int nameEnd = trimSpaces(line, nameStart, first);
+            batch.names[i] = new String(line, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+        } else {
+            batch.names[i] = new String(line, nameStart + 1, quoteEnd - nameStart - 1, StandardCharsets.UTF_8).replace("\"\"", "\"");
+        }
+        batch.size++;
+    }
+
+    /**
+     * Finds the quote closing a quoted field, doubled quotes are part of the field
+     * @return Index of the closing quote or to if the field is not closed
+     */
+    private static int closingQuote(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] != '"') continue;
+            if (i + 1 < to && line[i + 1] == '"') i++;
+            else return i;
+        }
+        return to;
+    }
+
+    private static int indexOf(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == ';') return i;
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] line, int from, int to) {
+        while (from < to && line[from] <= ' ') from++;
+        return from;
+    }
+
+    private static int trimSpaces(byte[] line, int from, int to) {
+        while (to > from && line[to - 1] <= ' ') to--;
+        return to;
+    }
+
+    /**
+     * Same result as Boolean.parseBoolean on the trimmed field
+     */
+    private static boolean isTrue(byte[] line, int from, int to) {
+        if (to - from != 4) return false;
+        return (line[from] | 0x20) == 't' && (line[from + 1] | 0x20) == 'r'
+                && (line[from + 2] | 0x20) == 'u' && (line[from + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Parses a plain decimal number without creating a String,
+     * anything unusual (exponents, NaN, too many digits) goes through Float.parseFloat
+     */
+    private static float parseFloat(byte[] line, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean dot = false;
+        for (; i < to; i++) {
+            byte c = line[i];
+            if (c >= '0' && c <= '9' && digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (dot) scale++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Float.parseFloat(new String(line, from, to - from, StandardCharsets.US_ASCII));
+            }
+        }
+        if (digits == 0) throw new NumberFormatException("Empty number");
+        double value = mantissa / Math.pow(10, scale);
+        return (float) (negative ? -value : value);
+    }
+}
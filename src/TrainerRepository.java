@@ -1,4 +1,5 @@
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -7,11 +8,26 @@ import java.util.List;
 public interface TrainerRepository {
     List<Trainer> getAllTrainers() throws SQLException;
 
+    void scanTrainerNames(Collection<Integer> ids, NameIndex.Sink sink) throws SQLException;
+
     void addTrainer(String name, float xp, boolean isLeader) throws SQLException;
 
+    Trainer findTrainer(int id) throws SQLException;
+
     void updateTrainer(int id, String name, float xp, boolean isGymLeader) throws SQLException;
 
+    UpdateResult<Trainer> updateTrainerIfUnchanged(int id, int expectedVersion, String name, float xp,
+                                                   boolean isGymLeader) throws SQLException;
+
+    void applyTrainerUpdates(List<Trainer> trainers) throws SQLException;
+
     void deleteTrainer(int id) throws SQLException;
 
-    void importTrainersFromCSV(String filePath) throws SQLException;
+    int deleteTrainers(int[] ids) throws SQLException;
+
+    ImportResult importTrainersFromCSV(String filePath, ImportMode mode, ImportProgressListener listener) throws SQLException;
+
+    List<Integer> verifyAggregates() throws SQLException;
+
+    void rebuildAggregates() throws SQLException;
 }
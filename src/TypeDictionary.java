@@ -0,0 +1,200 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable, process-wide dictionary of Pokémon types
+ * It is loaded from the database once and replaced atomically when types are added or deleted,
+ * so dialogs and imports can resolve type ids and names without a query
+ */
+public final class TypeDictionary {
+
+    /**
+     * Highest type id which fits into the pokemons.type_mask column
+     */
+    public static final int MAX_MASK_TYPE_ID = 63;
+
+    private static final AtomicReference<TypeDictionary> CURRENT = new AtomicReference<>();
+    private static volatile TypeRepository source = new MySQLTypeRepository();
+
+    private final String[] namesById;
+    private final Map<String, Integer> idsByName;
+    private final List<Types> types;
+
+    /**
+     * Builds a dictionary from a list of types
+     * @param allTypes All types
+     */
+    private TypeDictionary(List<Types> allTypes) {
+        int maxId = 0;
+        for (Types t : allTypes) maxId = Math.max(maxId, t.getId());
+
+        namesById = new String[maxId + 1];
+        idsByName = new HashMap<>(allTypes.size() * 2);
+        List<Types> sorted = new ArrayList<>(allTypes);
+        sorted.sort(Comparator.comparing(Types::getTypeName, String.CASE_INSENSITIVE_ORDER));
+        for (Types t : sorted) {
+            namesById[t.getId()] = t.getTypeName();
+            idsByName.put(normalize(t.getTypeName()), t.getId());
+        }
+        types = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Returns the current dictionary, loading it on first use
+     * @return Type dictionary
+     * @throws SQLException If the types cannot be loaded
+     */
+    public static TypeDictionary get() throws SQLException {
+        TypeDictionary dictionary = CURRENT.get();
+        if (dictionary == null) {
+            CURRENT.compareAndSet(null, new TypeDictionary(source.getAllTypes()));
+            dictionary = CURRENT.get();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Replaces the repository the dictionary is loaded from and drops the loaded dictionary
+     * @param repository Type repository
+     */
+    public static void setSource(TypeRepository repository) {
+        source = repository;
+        CURRENT.set(null);
+    }
+
+    /**
+     * Drops the loaded dictionary so the next get() reads the types again
+     */
+    public static void invalidate() {
+        CURRENT.set(null);
+    }
+
+    /**
+     * Swaps in a dictionary containing the new type, does nothing if the dictionary is not loaded yet
+     * @param type Added type
+     */
+    public static void typeAdded(Types type) {
+        CURRENT.updateAndGet(d -> {
+            if (d == null) return null;
+            List<Types> updated = new ArrayList<>(d.types);
+            updated.removeIf(t -> t.getId() == type.getId());
+            updated.add(type);
+            return new TypeDictionary(updated);
+        });
+    }
+
+    /**
+     * Swaps in a dictionary without the type, does nothing if the dictionary is not loaded yet
+     * @param id ID of the deleted type
+     */
+    public static void typeDeleted(int id) {
+        CURRENT.updateAndGet(d -> {
+            if (d == null) return null;
+            List<Types> updated = new ArrayList<>(d.types);
+            updated.removeIf(t -> t.getId() == id);
+            return new TypeDictionary(updated);
+        });
+    }
+
+    /**
+     * Returns the name of a type
+     * @param id Type ID
+     * @return Type name or null if the id is unknown
+     */
+    public String getName(int id) {
+        return id >= 0 && id < namesById.length ? namesById[id] : null;
+    }
+
+    /**
+     * Returns the id of a type, ignoring case and surrounding spaces
+     * @param name Type name
+     * @return Type ID or null if the name is unknown
+     */
+    public Integer getId(String name) {
+        return name == null ? null : idsByName.get(normalize(name));
+    }
+
+    /**
+     * Decodes a pokemons.type_mask value into type names ordered by type id
+     * @param mask Bit set of type ids
+     * @return Comma separated type names, ids missing from the dictionary are skipped
+     */
+    public String getNames(long mask) {
+        StringBuilder names = new StringBuilder();
+        while (mask != 0) {
+            int id = Long.numberOfTrailingZeros(mask) + 1;
+            mask &= mask - 1;
+            String name = getName(id);
+            if (name == null) continue;
+            if (names.length() > 0) names.append(", ");
+            names.append(name);
+        }
+        return names.toString();
+    }
+
+    /**
+     * Returns the type_mask bit of a type
+     * @param typeId Type ID between 1 and MAX_MASK_TYPE_ID
+     * @return Mask with the single bit of the type
+     * @throws IllegalArgumentException If the id does not fit into the mask
+     */
+    public static long bit(int typeId) {
+        if (typeId < 1 || typeId > MAX_MASK_TYPE_ID) {
+            throw new IllegalArgumentException("Type id " + typeId + " does not fit into the type mask.");
+        }
+        return 1L << (typeId - 1);
+    }
+
+    /**
+     * Builds the type_mask of a set of types, null ids are ignored
+     * @param typeIds Type IDs
+     * @return Combined mask
+     */
+    public static long mask(Integer... typeIds) {
+        long mask = 0;
+        for (Integer id : typeIds) {
+            if (id != null) mask |= bit(id);
+        }
+        return mask;
+    }
+
+    /**
+     * Builds the type_mask of type names as written in the CSV import
+     * @param names Type names, null and blank names are ignored
+     * @return Combined mask
+     * @throws IllegalArgumentException If a name is unknown or its id does not fit into the mask
+     */
+    public long maskOf(String... names) {
+        long mask = 0;
+        for (String name : names) {
+            if (name == null || name.isBlank()) continue;
+            Integer id = getId(name);
+            if (id == null) throw new IllegalArgumentException("Unknown type '" + name.trim() + "'.");
+            mask |= bit(id);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns all types ordered by name
+     * @return Unmodifiable list of types
+     */
+    public List<Types> getTypes() {
+        return types;
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
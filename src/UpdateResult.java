@@ -0,0 +1,70 @@
+/**
+ * Represents the outcome of a version checked update of one row
+ * @param <T> Row type, PokemonDetails or Trainer
+ */
+public class UpdateResult<T> {
+
+    /**
+     * Expected version which skips the check, the update overwrites whatever is stored
+     */
+    public static final int ANY_VERSION = -1;
+
+    public enum Status {
+        /** The row was changed, getVersion returns its new version */
+        UPDATED,
+        /** The change waits in the write-behind queue, the version is checked when it is written */
+        QUEUED,
+        /** Someone else changed the row since it was read, getCurrent returns the stored row */
+        CONFLICT,
+        /** The row does not exist anymore */
+        DELETED
+    }
+
+    private final Status status;
+    private final int version;
+    private final T current;
+
+    private UpdateResult(Status status, int version, T current) {
+        this.status = status;
+        this.version = version;
+        this.current = current;
+    }
+
+    public static <T> UpdateResult<T> updated(int version) {
+        return new UpdateResult<>(Status.UPDATED, version, null);
+    }
+
+    public static <T> UpdateResult<T> queued() {
+        return new UpdateResult<>(Status.QUEUED, ANY_VERSION, null);
+    }
+
+    /**
+     * Creates the result of a failed version check
+     * @param current Row as it is stored now
+     * @return Conflict result
+     */
+    public static <T> UpdateResult<T> conflict(T current) {
+        return new UpdateResult<>(Status.CONFLICT, ANY_VERSION, current);
+    }
+
+    public static <T> UpdateResult<T> deleted() {
+        return new UpdateResult<>(Status.DELETED, ANY_VERSION, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public T getCurrent() {
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.UPDATED ? "UPDATED to version " + version : status.toString();
+    }
+}
@@ -0,0 +1,321 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue collecting Pokémon and trainer edits and writing them later in batches
+ * Pending edits are keyed by entity ID, so repeated edits of the same Pokémon or trainer are merged into one write.
+ * A background thread flushes every writeBehind.intervalMillis, or as soon as writeBehind.maxPending entities are waiting.
+ * Every other repository call flushes first, so deletes, imports and reads always see the queued edits.
+ * findPokemon and findTrainer are the exception: the edit dialogs call them on every open, so they return the stored row
+ * with the waiting edit applied instead of flushing, and repeated edits of one row are still merged into one write.
+ * Version checked edits are queued with their expected version and answered with UpdateResult.queued(),
+ * a conflict found while writing them fails the flush like any other rejected edit.
+ */
+public class WriteBehindQueue {
+
+    /**
+     * Receives the errors of background flushes, called on the flushing thread
+     */
+    public interface Listener {
+        void flushFailed(SQLException error, int lostUpdates);
+    }
+
+    private final PokemonRepository pokemonTarget;
+    private final TrainerRepository trainerTarget;
+    private final int maxPending;
+    private final Map<Integer, PokemonUpdate> pendingPokemons = new LinkedHashMap<>();
+    private final Map<Integer, Trainer> pendingTrainers = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram flushLatency = Metrics.getInstance().histogram("WriteBehindQueue.flush");
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "write-behind-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Creates the queue and starts the background flusher
+     * @param pokemonTarget Repository receiving the Pokémon edits
+     * @param trainerTarget Repository receiving the trainer edits
+     * @param intervalMillis Time between two background flushes
+     * @param maxPending Number of waiting entities which triggers a flush before the interval ends
+     */
+    public WriteBehindQueue(PokemonRepository pokemonTarget, TrainerRepository trainerTarget, long intervalMillis, int maxPending) {
+        this.pokemonTarget = pokemonTarget;
+        this.trainerTarget = trainerTarget;
+        this.maxPending = Math.max(1, maxPending);
+        flusher.scheduleWithFixedDelay(this::flushAndReport, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushAndReport, "write-behind-exit"));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a Pokémon edit, merged with a still waiting edit of the same Pokémon
+     * @param update Edit of details or types
+     */
+    public void enqueue(PokemonUpdate update) {
+        boolean full;
+        synchronized (this) {
+            pendingPokemons.merge(update.getId(), update, PokemonUpdate::mergedWith);
+            full = pendingCount() >= maxPending;
+        }
+        if (full) flusher.execute(this::flushAndReport);
+    }
+
+    /**
+     * Queues a trainer edit, it replaces a still waiting edit of the same trainer
+     * @param trainer New trainer data
+     */
+    public void enqueue(Trainer trainer) {
+        boolean full;
+        synchronized (this) {
+            pendingTrainers.put(trainer.getId(), trainer);
+            full = pendingCount() >= maxPending;
+        }
+        if (full) flusher.execute(this::flushAndReport);
+    }
+
+    /**
+     * Returns the number of entities with edits not written yet
+     * @return Waiting Pokémon and trainers
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount();
+    }
+
+    /**
+     * Writes all waiting edits, Pokémon in one transaction and trainers in another
+     * If a transaction fails its edits are retried one by one, so only the invalid ones are lost.
+     * Timed as "WriteBehindQueue.flush".
+     * @throws SQLException The first error, after all edits were tried
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            List<PokemonUpdate> pokemons;
+            List<Trainer> trainers;
+            synchronized (this) {
+                if (pendingCount() == 0) return;
+                pokemons = new ArrayList<>(pendingPokemons.values());
+                trainers = new ArrayList<>(pendingTrainers.values());
+                pendingPokemons.clear();
+                pendingTrainers.clear();
+            }
+            long start = System.nanoTime();
+            FlushErrors errors = new FlushErrors();
+            try {
+                if (!pokemons.isEmpty()) {
+                    try {
+                        pokemonTarget.applyPokemonUpdates(pokemons);
+                    } catch (SQLException e) {
+                        for (PokemonUpdate update : pokemons) {
+                            try {
+                                pokemonTarget.applyPokemonUpdates(List.of(update));
+                            } catch (SQLException single) {
+                                errors.add(single);
+                            }
+                        }
+                    }
+                }
+                if (!trainers.isEmpty()) {
+                    try {
+                        trainerTarget.applyTrainerUpdates(trainers);
+                    } catch (SQLException e) {
+                        for (Trainer trainer : trainers) {
+                            try {
+                                trainerTarget.applyTrainerUpdates(List.of(trainer));
+                            } catch (SQLException single) {
+                                errors.add(single);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                flushLatency.record(System.nanoTime() - start, errors.first != null);
+            }
+            errors.throwIfAny();
+        }
+    }
+
+    /**
+     * Reads a Pokémon with its waiting edit applied, without writing the queue
+     * The flush lock is held while reading, so the edit cannot be written in between and applied twice.
+     * @param id ID of the pokémon
+     * @return Pokémon as it will be after the next flush, null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    public PokemonDetails findPokemon(int id) throws SQLException {
+        synchronized (flushLock) {
+            PokemonUpdate pending;
+            synchronized (this) {
+                pending = pendingPokemons.get(id);
+            }
+            PokemonDetails stored = pokemonTarget.findPokemon(id);
+            return stored == null || pending == null ? stored : pending.appliedTo(stored);
+        }
+    }
+
+    /**
+     * Reads a trainer with its waiting edit applied, without writing the queue
+     * The version is the expected one of a waiting checked edit, like in PokemonUpdate.appliedTo.
+     * @param id ID of the trainer
+     * @return Trainer as it will be after the next flush, null if it does not exist
+     * @throws SQLException If the query execution fails
+     */
+    public Trainer findTrainer(int id) throws SQLException {
+        synchronized (flushLock) {
+            Trainer pending;
+            synchronized (this) {
+                pending = pendingTrainers.get(id);
+            }
+            Trainer stored = trainerTarget.findTrainer(id);
+            if (stored == null || pending == null) return stored;
+            return new Trainer(id, pending.getName(), pending.getXp(), pending.isLeader(),
+                    pending.getVersion() != UpdateResult.ANY_VERSION ? pending.getVersion() : stored.getVersion());
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes the waiting edits, called on exit
+     * @throws SQLException If some edits could not be written
+     */
+    public void close() throws SQLException {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Wraps a Pokémon repository so that updatePokemon, updatePokemonIfUnchanged and updatePokemonTypes are queued
+     * @param target Repository receiving all other calls
+     * @return Proxy implementing the interface
+     */
+    public PokemonRepository wrap(PokemonRepository target) {
+        return wrap(PokemonRepository.class, target);
+    }
+
+    /**
+     * Wraps a trainer repository so that updateTrainer and updateTrainerIfUnchanged are queued
+     * @param target Repository receiving all other calls
+     * @return Proxy implementing the interface
+     */
+    public TrainerRepository wrap(TrainerRepository target) {
+        return wrap(TrainerRepository.class, target);
+    }
+
+    private <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new QueueingHandler(target)));
+    }
+
+    private int pendingCount() {
+        return pendingPokemons.size() + pendingTrainers.size();
+    }
+
+    private void flushAndReport() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            int lost = e instanceof FlushException ? ((FlushException) e).count : 1;
+            System.err.println("Write-behind flush failed, " + lost + " update(s) lost: " + e.getMessage());
+            for (Listener listener : listeners) listener.flushFailed(e, lost);
+        }
+    }
+
+    /**
+     * Collects the errors of one flush, the first one is thrown with the count of all
+     */
+    private static class FlushErrors {
+        private SQLException first;
+        private int count;
+
+        void add(SQLException e) {
+            if (first == null) first = e;
+            count++;
+        }
+
+        void throwIfAny() throws SQLException {
+            if (first != null) throw new FlushException(first, count);
+        }
+    }
+
+    private static class FlushException extends SQLException {
+        private final int count;
+
+        FlushException(SQLException cause, int count) {
+            super(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+            this.count = count;
+        }
+    }
+
+    /**
+     * Queues the edit calls, answers the single row reads from the queue and flushes before forwarding any other call
+     */
+    private class QueueingHandler implements InvocationHandler {
+        private final Object target;
+
+        QueueingHandler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "WriteBehind" + target;
+                }
+            }
+            switch (method.getName()) {
+                case "updatePokemon":
+                    enqueue(PokemonUpdate.details((Integer) args[0], (String) args[1], (String) args[2],
+                            (Integer) args[3], (Integer) args[4], (Integer) args[5]));
+                    return null;
+                case "updatePokemonTypes":
+                    enqueue(PokemonUpdate.types((Integer) args[0], (Integer) args[1], (Integer) args[2]));
+                    return null;
+                case "updatePokemonIfUnchanged":
+                    enqueue(PokemonUpdate.checked((Integer) args[0], (Integer) args[1], (String) args[2], (String) args[3],
+                            (Integer) args[4], (Integer) args[5], (Integer) args[6], (Integer) args[7], (Integer) args[8]));
+                    return UpdateResult.queued();
+                case "updateTrainer":
+                    enqueue(new Trainer((Integer) args[0], (String) args[1], (Float) args[2], (Boolean) args[3]));
+                    return null;
+                case "updateTrainerIfUnchanged":
+                    enqueue(new Trainer((Integer) args[0], (String) args[2], (Float) args[3], (Boolean) args[4], (Integer) args[1]));
+                    return UpdateResult.queued();
+                case "findPokemon":
+                    return findPokemon((Integer) args[0]);
+                case "findTrainer":
+                    return findTrainer((Integer) args[0]);
+                default:
+                    flushAndReport();
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}